@@ -19,6 +19,7 @@ const Api = {
     getVideoByVideoId: "/ucenter/getVideoByVideoId",
     loadUcenterVideoList: "/ucenter/loadVideoList",
     getUcenterVideoCountInfo: "/ucenter/getVideoCountInfo",
+    getTransferProgress: "/ucenter/getTransferProgress",
     uploadImage: "/file/uploadImage",
     //个人中心
     ucLoadAllVideo: "/ucenter/loadAllVideo",
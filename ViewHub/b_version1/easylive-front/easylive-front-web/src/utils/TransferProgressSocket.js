@@ -0,0 +1,89 @@
+//转码进度 WebSocket（/ws/transferProgress，握手时用 cookie 中的 token 校验登录，只允许配置的前端来源）
+//服务端端点开启了 SockJS，原生 WebSocket 需要连接 SockJS 的 /websocket 地址
+//断线后按 1s、2s、4s... 最长 30s 重连；连接断开期间由调用方轮询
+const HEARTBEAT_INTERVAL = 30 * 1000;
+const MAX_RECONNECT_DELAY = 30 * 1000;
+
+const getSocketUrl = () => {
+    const protocol = location.protocol === "https:" ? "wss:" : "ws:";
+    return `${protocol}//${location.host}/api/ws/transferProgress/websocket`;
+};
+
+/**
+ * @param onProgress 收到进度（TransferProgressDto）
+ * @param onStatusChange 连接建立 true / 断开 false
+ * @returns close() 关闭连接，不再重连
+ */
+const connect = ({ onProgress, onStatusChange }) => {
+    let socket = null;
+    let heartbeatTimer = null;
+    let reconnectTimer = null;
+    let reconnectDelay = 1000;
+    let closed = false;
+
+    const stopHeartbeat = () => {
+        if (heartbeatTimer !== null) {
+            clearInterval(heartbeatTimer);
+            heartbeatTimer = null;
+        }
+    };
+
+    const open = () => {
+        if (closed) {
+            return;
+        }
+        if (typeof WebSocket === "undefined") {
+            onStatusChange(false);
+            return;
+        }
+        socket = new WebSocket(getSocketUrl());
+        socket.onopen = () => {
+            reconnectDelay = 1000;
+            heartbeatTimer = setInterval(() => {
+                socket.send(JSON.stringify({ type: "ping" }));
+            }, HEARTBEAT_INTERVAL);
+            onStatusChange(true);
+        };
+        socket.onmessage = (event) => {
+            let message;
+            try {
+                message = JSON.parse(event.data);
+            } catch (e) {
+                return;
+            }
+            if (message.type === "transferProgress" && message.data) {
+                onProgress(message.data);
+            }
+        };
+        socket.onclose = () => {
+            stopHeartbeat();
+            socket = null;
+            if (closed) {
+                return;
+            }
+            onStatusChange(false);
+            reconnectTimer = setTimeout(open, reconnectDelay);
+            reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+        };
+    };
+    open();
+
+    return {
+        close: () => {
+            closed = true;
+            stopHeartbeat();
+            if (reconnectTimer !== null) {
+                clearTimeout(reconnectTimer);
+                reconnectTimer = null;
+            }
+            if (socket !== null) {
+                socket.close();
+                socket = null;
+            }
+        },
+    };
+};
+
+export default {
+    connect,
+};
@@ -20,6 +20,8 @@ export default defineConfig({
             "/api": {
                 target: "http://localhost:80/",
                 changeOrigin: true,
+                //转码进度 WebSocket
+                ws: true,
             }
         }
     },
@@ -1,5 +1,7 @@
 package com.easylive.admin.controller;
 
+import com.easylive.component.ImageProcessor;
+import com.easylive.component.MediaResourceWriter;
 import com.easylive.entity.config.AppConfig;
 import com.easylive.entity.constant.Constants;
 import com.easylive.entity.enums.DateTimePatternEnum;
@@ -8,8 +10,8 @@ import com.easylive.entity.po.VideoInfoFilePost;
 import com.easylive.entity.vo.ResponseVO;
 import com.easylive.exception.BusinessException;
 import com.easylive.service.VideoInfoFilePostService;
+import com.easylive.storage.FileStorage;
 import com.easylive.utils.DateUtil;
-import com.easylive.utils.FFmpegUtils;
 import com.easylive.utils.StringTools;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.validation.annotation.Validated;
@@ -19,13 +21,12 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.Date;
 
 @Validated
@@ -37,7 +38,11 @@ public class FileController extends ABaseController {
 
     private final AppConfig appConfig;
 
-    private final FFmpegUtils fFmpegUtils;
+    private final ImageProcessor imageProcessor;
+
+    private final FileStorage fileStorage;
+
+    private final MediaResourceWriter mediaResourceWriter;
 
     private final VideoInfoFilePostService videoInfoFilePostService;
 
@@ -57,51 +62,68 @@ public class FileController extends ABaseController {
         file.transferTo(new File(filePath));
         if (createThumbnail) {
             //生成缩略图
-            fFmpegUtils.createImageThumbnail(filePath);
+            imageProcessor.createThumbnails(filePath);
+        }
+        //原图和缩略图存入存储（本地存储时就是当前目录）
+        File[] imageFiles = folderFile.listFiles((dir, name) -> name.startsWith(realFileName));
+        if (imageFiles != null) {
+            for (File imageFile : imageFiles) {
+                fileStorage.put(Constants.FILE_COVER + day + "/" + imageFile.getName(), imageFile);
+            }
         }
         return getSuccessResponseVO(Constants.FILE_COVER + day + "/" + realFileName);
     }
 
 
     @RequestMapping("/getResource")
-    public void getResource(HttpServletResponse response, @NotEmpty String sourceName) {
+    public void getResource(HttpServletRequest request, HttpServletResponse response, @NotEmpty String sourceName) {
         if (!StringTools.pathIsOk(sourceName)) {
             throw new BusinessException(ResponseCodeEnum.CODE_600);
         }
         String suffix = StringTools.getFileSuffix(sourceName);
         response.setContentType("image/" + suffix.replace(".", ""));
         response.setHeader("Cache-Control", "max-age=2592000");
-        readFile(response, sourceName);
+        readFile(request, response, sourceName);
     }
 
-    protected void readFile(HttpServletResponse response, String filePath) {
-        File file = new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER + filePath);
-        if (!file.exists()) {
-            return;
-        }
-        try (OutputStream out = response.getOutputStream(); FileInputStream in = new FileInputStream(file)) {
-            byte[] byteData = new byte[1024];
-            int len = 0;
-            while ((len = in.read(byteData)) != -1) {
-                out.write(byteData, 0, len);
-            }
-            out.flush();
-        } catch (Exception e) {
-            log.error("读取文件异常", e);
-        }
+    //读文件：支持 Range、304，本地文件走 sendfile
+    protected void readFile(HttpServletRequest request, HttpServletResponse response, String filePath) {
+        mediaResourceWriter.write(request, response, filePath);
     }
 
     @RequestMapping("/videoResource/{fileId}")
-    public void getVideoResource(HttpServletResponse response, @PathVariable @NotEmpty String fileId) {
+    public void getVideoResource(HttpServletRequest request, HttpServletResponse response, @PathVariable @NotEmpty String fileId) {
         VideoInfoFilePost videoInfoFilePost = videoInfoFilePostService.getVideoInfoFilePostByFileId(fileId);
         String filePath = videoInfoFilePost.getFilePath();
-        readFile(response, filePath + "/" + Constants.M3U8_NAME);
+        readFile(request, response, filePath + "/" + getPlaylistName(filePath));
     }
 
     @RequestMapping("/videoResource/{fileId}/{ts}")
-    public void getVideoResourceTs(HttpServletResponse response, @PathVariable @NotEmpty String fileId, @PathVariable @NotNull String ts) {
+    public void getVideoResourceTs(HttpServletRequest request, HttpServletResponse response, @PathVariable @NotEmpty String fileId, @PathVariable @NotNull String ts) {
+        VideoInfoFilePost videoInfoFilePost = videoInfoFilePostService.getVideoInfoFilePostByFileId(fileId);
+        String filePath = videoInfoFilePost.getFilePath() + "";
+        readFile(request, response, filePath + "/" + ts);
+    }
+
+    //多码率档位的子播放列表和切片
+    @RequestMapping("/videoResource/{fileId}/{rendition}/{ts}")
+    public void getVideoResourceRenditionTs(HttpServletRequest request, HttpServletResponse response, @PathVariable @NotEmpty String fileId, @PathVariable @NotEmpty String rendition,
+                                            @PathVariable @NotNull String ts) {
+        if (!StringTools.pathIsOk(rendition) || !StringTools.pathIsOk(ts)) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
         VideoInfoFilePost videoInfoFilePost = videoInfoFilePostService.getVideoInfoFilePostByFileId(fileId);
         String filePath = videoInfoFilePost.getFilePath() + "";
-        readFile(response, filePath + "/" + ts);
+        readFile(request, response, filePath + "/" + rendition + "/" + ts);
+    }
+
+    //多码率转码的视频返回主播放列表，旧视频（单码率）返回原来的播放列表
+    private String getPlaylistName(String filePath) {
+        try {
+            return fileStorage.getSize(filePath + "/" + Constants.M3U8_MASTER_NAME) != null ? Constants.M3U8_MASTER_NAME : Constants.M3U8_NAME;
+        } catch (IOException e) {
+            log.error("读取播放列表失败, filePath={}", filePath, e);
+            return Constants.M3U8_NAME;
+        }
     }
 }
@@ -1,5 +1,6 @@
 package com.easylive.admin.controller;
 
+import com.easylive.component.MediaDeleteQueue;
 import com.easylive.entity.dto.TokenUserInfoDto;
 import com.easylive.entity.enums.StatisticsTypeEnum;
 import com.easylive.entity.po.StatisticsInfo;
@@ -27,6 +28,8 @@ public class IndexController extends ABaseController{
 
     private final VideoInfoService videoInfoService;
 
+    private final MediaDeleteQueue mediaDeleteQueue;
+
     @RequestMapping("/getActualTimeStatisticsInfo")
     public ResponseVO getActualTimeStatisticsInfo() {
         TokenUserInfoDto tokenUserInfoDto = getTokenUserInfoDto();
@@ -98,4 +101,9 @@ public class IndexController extends ABaseController{
         return getSuccessResponseVO(resultDataList);
     }
 
+    //媒体文件删除队列积压情况
+    @RequestMapping("/getMediaDeleteQueueInfo")
+    public ResponseVO getMediaDeleteQueueInfo() {
+        return getSuccessResponseVO(mediaDeleteQueue.getQueueInfo());
+    }
 }
@@ -12,6 +12,11 @@ import org.redisson.api.RedissonClient;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -19,6 +24,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.easylive.entity.constant.Constants.REDIS_KEY_PREFIX;
 
@@ -298,6 +304,77 @@ public class ThreeLevelCacheManager {
         }
     }
 
+    /**
+     * 批量获取缓存数据（L1 -> 一次 MGET 查 L2 -> 一次批量加载 L3）
+     *
+     * 批量场景（例如 MQ 一批消息）各 key 都不是同一个热点，这里不加分布式锁，
+     * 只保证每一级缓存最多访问一次
+     *
+     * @param keys   缓存键
+     * @param loader 批量加载器：入参为未命中的缓存键，返回 缓存键 -> 数据（不存在的不放入）
+     * @param <T>    返回类型
+     * @return 缓存键 -> 数据，不存在的数据不包含在结果中
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> getAll(Collection<String> keys, Function<List<String>, Map<String, T>> loader) {
+        Map<String, T> result = new HashMap<>();
+        if (keys == null || keys.isEmpty()) {
+            return result;
+        }
+        // L1: 本地缓存
+        List<String> missKeys = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            Object value = localCache.getIfPresent(key);
+            if (value != null) {
+                result.put(key, (T) value);
+            } else {
+                missKeys.add(key);
+            }
+        }
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+
+        // L2: Redis 一次 MGET
+        List<String> dbKeys = missKeys;
+        try {
+            List<String> redisKeys = missKeys.stream().map(key -> REDIS_KEY_PREFIX + key).collect(Collectors.toList());
+            List<Object> values = redisUtils.multiGet(redisKeys);
+            dbKeys = new ArrayList<>();
+            for (int i = 0; i < missKeys.size(); i++) {
+                Object value = values.get(i);
+                if (value != null) {
+                    localCache.put(missKeys.get(i), value);
+                    result.put(missKeys.get(i), (T) value);
+                } else {
+                    dbKeys.add(missKeys.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Redis批量查询异常，降级查询数据库，size: {}", missKeys.size(), e);
+        }
+        if (dbKeys.isEmpty()) {
+            return result;
+        }
+
+        // L3: 一次批量查询数据库并回填
+        log.debug("L3数据库批量查询，size: {}", dbKeys.size());
+        Map<String, T> dbValues = loader.apply(dbKeys);
+        for (Map.Entry<String, T> entry : dbValues.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            result.put(entry.getKey(), entry.getValue());
+            try {
+                put(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                log.warn("写入Redis缓存失败，key: {}", entry.getKey(), e);
+                localCache.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
     /**
      * 设置缓存数据
      * 
@@ -0,0 +1,117 @@
+package com.easylive.cache;
+
+import com.easylive.entity.constant.Constants;
+import com.easylive.entity.dto.CacheEvictMessage;
+import com.easylive.entity.po.VideoInfoFile;
+import com.easylive.service.VideoInfoFileService;
+import com.easylive.utils.JsonUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分P文件 fileId -> 存储路径 的本地缓存
+ *
+ * 播放时每个切片请求都要根据 fileId 找到目录，走三级缓存时每次还要查一次 Redis 布隆过滤器；
+ * fileId 对应的路径在上传时就确定、之后不会改变，这里单独用一个容量大、有效期长的本地缓存，命中时不访问 Redis / MySQL
+ *
+ * 失效：审核（替换分P）、删除视频时调用 evict，事务提交后删除本地缓存并通过 Redis Pub/Sub 通知其他实例
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class VideoFilePathResolver implements MessageListener {
+
+    private static final String CACHE_TYPE = "VIDEO_FILE_PATH";
+
+    private final VideoInfoFileService videoInfoFileService;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final Cache<String, String> pathCache = Caffeine.newBuilder()
+            .maximumSize(Constants.VIDEO_FILE_PATH_CACHE_SIZE)
+            .expireAfterWrite(Constants.VIDEO_FILE_PATH_CACHE_EXPIRE_HOURS, TimeUnit.HOURS)
+            .build();
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(Constants.REDIS_CHANNEL_VIDEO_FILE_PATH_INVALIDATION));
+    }
+
+    /**
+     * 根据 fileId 获取存储路径（相对 file/ 目录）
+     *
+     * @return 文件不存在（未审核通过、已删除）返回 null
+     */
+    public String resolve(String fileId) {
+        return pathCache.get(fileId, id -> {
+            VideoInfoFile videoInfoFile = videoInfoFileService.getVideoInfoFileByFileId(id);
+            return videoInfoFile == null ? null : videoInfoFile.getFilePath();
+        });
+    }
+
+    /**
+     * 删除缓存并通知其他实例；在事务中调用时等事务提交后再删除，避免提交前被其他请求重新加载旧数据
+     */
+    public void evict(Collection<String> fileIds) {
+        if (fileIds == null || fileIds.isEmpty()) {
+            return;
+        }
+        List<String> fileIdList = new ArrayList<>(fileIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doEvict(fileIdList);
+                }
+            });
+            return;
+        }
+        doEvict(fileIdList);
+    }
+
+    private void doEvict(List<String> fileIdList) {
+        pathCache.invalidateAll(fileIdList);
+        for (String fileId : fileIdList) {
+            try {
+                redisTemplate.convertAndSend(Constants.REDIS_CHANNEL_VIDEO_FILE_PATH_INVALIDATION,
+                        new CacheEvictMessage(fileId, CACHE_TYPE, System.currentTimeMillis()));
+            } catch (Exception e) {
+                //通知失败时其他实例等缓存过期
+                log.error("发布文件路径缓存失效通知失败, fileId={}", fileId, e);
+            }
+        }
+    }
+
+    /**
+     * 其他实例的失效通知，只删除本地缓存
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            CacheEvictMessage evictMessage = JsonUtils.convertJson2Obj(new String(message.getBody()), CacheEvictMessage.class);
+            if (evictMessage != null && evictMessage.getCacheKey() != null) {
+                pathCache.invalidate(evictMessage.getCacheKey());
+            }
+        } catch (Exception e) {
+            log.error("处理文件路径缓存失效消息失败", e);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.easylive.component;
+
+import com.easylive.entity.config.AppConfig;
+import com.easylive.entity.constant.Constants;
+import com.easylive.entity.dto.CacheEvictMessage;
+import com.easylive.storage.FileStat;
+import com.easylive.storage.FileStorage;
+import com.easylive.utils.JsonUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 热门 HLS 文件（播放列表、切片）的进程内缓存
+ *
+ * - 本地存储：文件映射到内存（mmap，READ_ONLY），命中时不再打开、读取文件；对象存储：整个文件下载到直接内存
+ * - 按总字节数限制（media.cache.maxSizeMb），淘汰使用 Caffeine 的 W-TinyLFU（按访问频率，偶尔被访问一次的切片不会挤掉热门切片）
+ * - 一分钟内被请求满 media.cache.hotThreshold 次才放入缓存，冷门视频不会触发映射 / 下载
+ * - 切片、播放列表转码完成后不再修改，写入 Constants.MEDIA_CACHE_EXPIRE_MINUTES 分钟后过期；
+ *   删除视频时本节点立即移除，并通过 Redis Pub/Sub 通知其他实例移除
+ * - 移出缓存（淘汰、过期、删除）后立即释放映射 / 直接内存，不等 GC；正在输出的请求持有引用，最后一个请求结束后再释放
+ *
+ * 注意：对象存储时缓存占用直接内存，-XX:MaxDirectMemorySize 需要大于 media.cache.maxSizeMb
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class HotSegmentCache implements MessageListener {
+
+    private static final String CACHE_TYPE = "MEDIA_SEGMENT";
+
+    private final AppConfig appConfig;
+
+    private final FileStorage fileStorage;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private Cache<String, CachedSegment> segmentCache;
+
+    // 还没有进入缓存的文件最近一分钟的请求次数
+    private Cache<String, AtomicInteger> accessCounter;
+
+    @PostConstruct
+    public void init() {
+        segmentCache = Caffeine.newBuilder()
+                .maximumWeight(appConfig.getMediaCacheMaxSizeMb() * Constants.MB_SIZE)
+                .weigher((String key, CachedSegment segment) -> (int) Math.min(Integer.MAX_VALUE, Math.max(1, segment.getStat().getSize())))
+                .expireAfterWrite(Constants.MEDIA_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+                .removalListener((String key, CachedSegment segment, RemovalCause cause) -> {
+                    if (segment != null) {
+                        segment.release();
+                    }
+                })
+                .build();
+        accessCounter = Caffeine.newBuilder()
+                .maximumSize(Constants.MEDIA_CACHE_COUNTER_SIZE)
+                .expireAfterWrite(1, TimeUnit.MINUTES)
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(Constants.REDIS_CHANNEL_MEDIA_CACHE_INVALIDATION));
+    }
+
+    /**
+     * 获取缓存的文件，未命中时记一次访问，达到热度阈值时加载
+     *
+     * @param filePath 相对 file/ 目录的路径
+     * @return 未缓存（不够热门、文件太大、不是 HLS 文件）返回 null，调用方按普通文件输出；
+     *         返回的缓存已经增加引用，调用方输出结束后需要调用 release()
+     */
+    public CachedSegment get(String filePath) throws IOException {
+        if (!Boolean.TRUE.equals(appConfig.getMediaCacheEnabled()) || !filePath.startsWith(Constants.FILE_VIDEO)) {
+            return null;
+        }
+        CachedSegment segment = segmentCache.getIfPresent(filePath);
+        if (segment != null && segment.retain()) {
+            return segment;
+        }
+        AtomicInteger counter = accessCounter.get(filePath, k -> new AtomicInteger());
+        if (counter.incrementAndGet() < appConfig.getMediaCacheHotThreshold()) {
+            return null;
+        }
+        try {
+            //同一文件并发请求只加载一次；返回 null 时不放入缓存
+            segment = segmentCache.get(filePath, this::load);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        accessCounter.invalidate(filePath);
+        //加载后可能立即被淘汰（已释放），按未缓存处理
+        return segment != null && segment.retain() ? segment : null;
+    }
+
+    /**
+     * 移除文件或目录下的所有文件（删除视频时调用），并通知其他实例
+     */
+    public void invalidate(String filePath) {
+        invalidateLocal(filePath);
+        try {
+            redisTemplate.convertAndSend(Constants.REDIS_CHANNEL_MEDIA_CACHE_INVALIDATION,
+                    new CacheEvictMessage(filePath, CACHE_TYPE, System.currentTimeMillis()));
+        } catch (Exception e) {
+            //通知失败时其他实例等缓存过期
+            log.error("发布热门文件缓存失效通知失败, filePath={}", filePath, e);
+        }
+    }
+
+    private void invalidateLocal(String filePath) {
+        String dirPrefix = filePath + "/";
+        segmentCache.asMap().keySet().removeIf(key -> key.equals(filePath) || key.startsWith(dirPrefix));
+    }
+
+    /**
+     * 其他实例的失效通知，只移除本地缓存
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            CacheEvictMessage evictMessage = JsonUtils.convertJson2Obj(new String(message.getBody()), CacheEvictMessage.class);
+            if (evictMessage != null && evictMessage.getCacheKey() != null) {
+                invalidateLocal(evictMessage.getCacheKey());
+            }
+        } catch (Exception e) {
+            log.error("处理热门文件缓存失效消息失败", e);
+        }
+    }
+
+    private CachedSegment load(String filePath) {
+        try {
+            FileStat stat = fileStorage.stat(filePath);
+            if (stat == null || stat.getSize() > appConfig.getMediaCacheMaxFileSizeMb() * Constants.MB_SIZE) {
+                return null;
+            }
+            File localFile = fileStorage.getLocalFile(filePath);
+            ByteBuffer buffer;
+            if (localFile != null) {
+                try (FileChannel channel = FileChannel.open(localFile.toPath(), StandardOpenOption.READ)) {
+                    //映射在通道关闭后仍然有效；load() 预先读入物理内存，命中时不会再触发缺页读盘
+                    MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, stat.getSize());
+                    mappedBuffer.load();
+                    buffer = mappedBuffer;
+                }
+            } else {
+                try (InputStream in = fileStorage.get(filePath, 0, -1)) {
+                    if (in == null) {
+                        return null;
+                    }
+                    buffer = ByteBuffer.allocateDirect((int) stat.getSize());
+                    IOUtils.readFully(Channels.newChannel(in), buffer);
+                    buffer.flip();
+                }
+            }
+            log.debug("热门文件加入缓存, filePath={}, size={}", filePath, stat.getSize());
+            return new CachedSegment(stat, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 缓存的文件内容，buffer 只读使用，输出时取 duplicate()
+     *
+     * 引用计数：缓存本身持有一个引用，移出缓存时释放；每个正在输出的请求持有一个引用。
+     * 计数归零时释放映射 / 直接内存，之后 buffer 不能再访问（访问已解除的映射会导致 JVM 崩溃）
+     */
+    public static class CachedSegment {
+
+        private final FileStat stat;
+
+        private final ByteBuffer buffer;
+
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        CachedSegment(FileStat stat, ByteBuffer buffer) {
+            this.stat = stat;
+            this.buffer = buffer;
+        }
+
+        public FileStat getStat() {
+            return stat;
+        }
+
+        /**
+         * 增加一个引用
+         *
+         * @return 已经释放时返回 false，不能再使用
+         */
+        boolean retain() {
+            while (true) {
+                int count = refCount.get();
+                if (count <= 0) {
+                    return false;
+                }
+                if (refCount.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 释放一个引用，最后一个引用释放时释放内存
+         */
+        public void release() {
+            if (refCount.decrementAndGet() == 0) {
+                BufferCleaner.clean(buffer);
+            }
+        }
+
+        /**
+         * 文件中 [start, start + length) 的内容，关闭时释放一个引用（异步输出时由输出结束的回调关闭）
+         */
+        public InputStream openStream(long start, long length) {
+            if (!retain()) {
+                throw new IllegalStateException("缓存已释放");
+            }
+            return new SegmentInputStream(this, slice(start, length));
+        }
+
+        /**
+         * 文件中 [start, start + length) 的内容，各请求独立的 position / limit
+         */
+        public ByteBuffer slice(long start, long length) {
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position((int) start);
+            duplicate.limit((int) (start + length));
+            return duplicate;
+        }
+    }
+
+    private static class SegmentInputStream extends InputStream {
+
+        private final CachedSegment segment;
+
+        private final ByteBuffer buffer;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        SegmentInputStream(CachedSegment segment, ByteBuffer buffer) {
+            this.segment = segment;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                segment.release();
+            }
+        }
+    }
+
+    /**
+     * 立即释放映射 / 直接内存（JDK 没有公开的 API）：Java 9+ 使用 Unsafe.invokeCleaner，Java 8 调用 DirectBuffer.cleaner().clean()
+     * 失败时只记录日志，内存等 GC 回收
+     */
+    private static class BufferCleaner {
+
+        private static final Object UNSAFE;
+
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                //Java 8 没有 invokeCleaner
+                invokeCleaner = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        static void clean(ByteBuffer buffer) {
+            if (!buffer.isDirect()) {
+                return;
+            }
+            try {
+                if (INVOKE_CLEANER != null) {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                    return;
+                }
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.warn("释放缓存内存失败，等待 GC 回收: {}", e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.easylive.component;
+
+import com.easylive.entity.config.AppConfig;
+import com.easylive.entity.constant.Constants;
+import com.easylive.exception.BusinessException;
+import com.easylive.utils.FFmpegUtils;
+import com.easylive.utils.StringTools;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 封面图片处理（在 JVM 内解码、缩放、编码，不再为每张图片启动一个 ffmpeg 进程）
+ *
+ * - 固定大小的线程池 + 有界队列，队列满时直接返回繁忙，高峰期不会堆积大量解码中的大图
+ * - 支持多个缩略图宽度（image.thumbnail.widths），JPEG 之外可以同时输出 WebP
+ * - ImageIO 无法解码的格式（WebP、HEIC、CMYK JPEG 等）、没有 WebP 编码器时，这部分输出交给 ffmpeg
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ImageProcessor {
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    // 原图像素上限，防止超大图片解码时占满内存
+    private static final long MAX_SOURCE_PIXELS = 50000000L;
+
+    private final AppConfig appConfig;
+
+    private final FFmpegUtils ffmpegUtils;
+
+    private ThreadPoolExecutor imagePool;
+
+    @PostConstruct
+    public void init() {
+        //不使用磁盘缓存，图片都在内存中处理
+        ImageIO.setUseCache(false);
+        int threads = appConfig.getImagePoolThreads();
+        AtomicInteger threadIndex = new AtomicInteger();
+        imagePool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(appConfig.getImagePoolQueueSize()), r -> {
+            Thread thread = new Thread(r, "image-process-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        imagePool.shutdownNow();
+    }
+
+    /**
+     * 按配置生成封面缩略图，生成完成后返回
+     *
+     * @param filePath 原图
+     */
+    public void createThumbnails(String filePath) {
+        execute(() -> doCreateThumbnails(filePath), filePath);
+    }
+
+    /**
+     * 生成指定宽度的 JPEG（按请求宽度动态生成的图片），生成完成后返回；原图比目标宽度小时不放大
+     *
+     * @param filePath   原图
+     * @param targetPath 输出文件，扩展名需要是 .jpg（ImageIO 无法解码时由 ffmpeg 按扩展名输出）
+     */
+    public void createVariant(String filePath, int width, String targetPath) {
+        execute(() -> {
+            BufferedImage source = readImage(new File(filePath));
+            if (source != null && writeImage(resize(source, width), Constants.IMAGE_FORMAT_JPG, new File(targetPath))) {
+                return;
+            }
+            ffmpegUtils.createImageThumbnail(filePath, width, targetPath);
+        }, filePath);
+    }
+
+    /**
+     * 提交到图片处理线程池并等待完成，队列满时返回繁忙
+     */
+    private void execute(Runnable task, String filePath) {
+        Future<?> future;
+        try {
+            future = imagePool.submit(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("图片处理队列已满, filePath={}", filePath);
+            throw new BusinessException("服务器繁忙，请稍后重试");
+        }
+        try {
+            future.get(appConfig.getProcessProbeTimeoutSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new BusinessException("生成缩略图超时");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BusinessException("生成缩略图失败");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException) {
+                throw (BusinessException) e.getCause();
+            }
+            log.error("生成缩略图失败, filePath={}", filePath, e.getCause());
+            throw new BusinessException("生成缩略图失败", e.getCause());
+        }
+    }
+
+    /**
+     * 缩略图路径：默认宽度为 原文件名_thumbnail.jpg（与原来 ffmpeg 生成的文件名一致），其他宽度为 原文件名_thumbnail_{宽度}.jpg
+     */
+    public static String getThumbnailPath(String filePath, int width, boolean defaultWidth, String format) {
+        if (defaultWidth) {
+            return filePath + Constants.IMAGE_THUMBNAIL_NAME + "." + format;
+        }
+        return filePath + Constants.IMAGE_THUMBNAIL_NAME + "_" + width + "." + format;
+    }
+
+    private void doCreateThumbnails(String filePath) {
+        List<Integer> widths = getThumbnailWidths();
+        List<String> formats = new ArrayList<>();
+        formats.add(Constants.IMAGE_FORMAT_JPG);
+        if (Boolean.TRUE.equals(appConfig.getImageThumbnailWebp())) {
+            formats.add(Constants.IMAGE_FORMAT_WEBP);
+        }
+
+        BufferedImage source = readImage(new File(filePath));
+        //同一宽度的 JPEG、WebP 共用一次缩放
+        Map<Integer, BufferedImage> scaledImages = new HashMap<>();
+        for (int i = 0; i < widths.size(); i++) {
+            int width = widths.get(i);
+            for (String format : formats) {
+                String targetPath = getThumbnailPath(filePath, width, i == 0, format);
+                if (source != null) {
+                    BufferedImage scaled = scaledImages.computeIfAbsent(width, w -> resize(source, w));
+                    if (writeImage(scaled, format, new File(targetPath))) {
+                        continue;
+                    }
+                }
+                ffmpegUtils.createImageThumbnail(filePath, width, targetPath);
+            }
+        }
+    }
+
+    private List<Integer> getThumbnailWidths() {
+        List<Integer> widths = new ArrayList<>();
+        String config = appConfig.getImageThumbnailWidths();
+        if (!StringTools.isEmpty(config)) {
+            for (String width : config.split(",")) {
+                widths.add(Integer.parseInt(width.trim()));
+            }
+        }
+        if (widths.isEmpty()) {
+            throw new BusinessException("缩略图尺寸配置错误: " + config);
+        }
+        return widths;
+    }
+
+    /**
+     * 解码图片，先只读图片头校验尺寸
+     *
+     * @return ImageIO 不支持的格式返回 null
+     */
+    private BufferedImage readImage(File imageFile) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(imageFile)) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_SOURCE_PIXELS) {
+                    throw new BusinessException("图片尺寸过大");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            log.info("ImageIO 无法解码图片，使用 ffmpeg 处理, file={}, error={}", imageFile.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 逐级减半缩放到目标宽度（每一级双三次插值），一步缩小太多时细节会丢失、出现锯齿
+     * 不放大：原图比目标宽度小时保持原尺寸；透明背景填充为白色
+     */
+    private BufferedImage resize(BufferedImage source, int width) {
+        int targetWidth = Math.min(width, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(targetWidth, currentWidth / 2);
+            currentHeight = Math.max(targetHeight, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+        return current;
+    }
+
+    /**
+     * 编码并写入文件
+     *
+     * @return 没有该格式的编码器（如未引入 WebP 插件）时返回 false
+     */
+    private boolean writeImage(BufferedImage image, String format, File targetFile) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            return false;
+        }
+        ImageWriter writer = writers.next();
+        try {
+            //FileImageOutputStream 不会截断已有文件
+            Files.deleteIfExists(targetFile.toPath());
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(targetFile)) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    if (param.getCompressionTypes() != null && param.getCompressionTypes().length > 0) {
+                        param.setCompressionType(param.getCompressionTypes()[0]);
+                    }
+                    param.setCompressionQuality(JPEG_QUALITY);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new BusinessException("写入缩略图失败: " + targetFile.getName(), e);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
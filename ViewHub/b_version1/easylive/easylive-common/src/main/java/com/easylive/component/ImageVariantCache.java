@@ -0,0 +1,257 @@
+package com.easylive.component;
+
+import com.easylive.entity.config.AppConfig;
+import com.easylive.entity.constant.Constants;
+import com.easylive.storage.FileStorage;
+import com.easylive.utils.StringTools;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按宽度动态生成的图片（列表页封面等只需要小图）
+ *
+ * - 只处理 cover/ 下 Constants.IMAGE_VARIANT_SOURCE_SUFFIXES 格式的原图，其他文件（切片、视频等）带 width 请求时也返回原文件
+ * - 请求宽度向上取到 image.variant.widths 中最近的档位，同一张图最多生成档位数个文件；超过最大档位返回原图
+ * - 第一次请求时生成，保存到本地磁盘 项目目录/variant/（对象存储时也缓存在本地），按总字节数（image.variant.maxSizeMb）LRU 淘汰
+ * - 同一文件的并发首次请求只生成一次，其他请求等待同一个结果
+ * - 原图上传后不会修改（文件名随机），生成后的文件不需要失效，只靠 LRU 淘汰
+ *
+ * - 淘汰时在锁内把文件改名为临时文件再删除，不会删掉同时重新生成的同名文件
+ *
+ * LRU 顺序只在内存中维护，重启后按文件修改时间恢复
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ImageVariantCache {
+
+    private final AppConfig appConfig;
+
+    private final FileStorage fileStorage;
+
+    private final ImageProcessor imageProcessor;
+
+    private final List<Integer> widths = new ArrayList<>();
+
+    private File cacheDir;
+
+    // 已生成的文件（相对缓存目录的路径 -> 文件大小），按访问顺序排列，最久未访问的在前
+    private final LinkedHashMap<String, Long> variantIndex = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalSize;
+
+    // 生成中的文件，并发请求等待同一个结果
+    private final Map<String, CompletableFuture<File>> loadingMap = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        String config = appConfig.getImageVariantWidths();
+        if (!StringTools.isEmpty(config)) {
+            for (String width : config.split(",")) {
+                widths.add(Integer.parseInt(width.trim()));
+            }
+        }
+        widths.sort(null);
+        cacheDir = new File(appConfig.getProjectFolder() + Constants.IMAGE_VARIANT_FOLDER);
+        if (!Boolean.TRUE.equals(appConfig.getImageVariantEnabled()) || !cacheDir.isDirectory()) {
+            return;
+        }
+        //恢复索引：按修改时间从旧到新加入，最早生成的先淘汰；删除上次中断时留下的临时文件
+        List<File> files = new ArrayList<>(FileUtils.listFiles(cacheDir, null, true));
+        files.sort(Comparator.comparingLong(File::lastModified));
+        String dirPath = cacheDir.getAbsolutePath();
+        for (File file : files) {
+            if (file.getName().contains(Constants.IMAGE_VARIANT_TEMP_MARK)) {
+                file.delete();
+                continue;
+            }
+            String key = file.getAbsolutePath().substring(dirPath.length() + 1).replace(File.separatorChar, '/');
+            add(key, file.length());
+        }
+        evict();
+        log.info("图片缓存加载完成, files={}, size={}MB", variantIndex.size(), totalSize / Constants.MB_SIZE);
+    }
+
+    /**
+     * 获取指定宽度的图片，没有时生成
+     *
+     * @param sourceName 原图，相对 file/ 目录的路径
+     * @return 未开启、不是封面图片、不需要缩小（宽度超过最大档位）、原图不存在、生成失败时返回 null，调用方返回原图
+     */
+    public File getVariant(String sourceName, Integer width) {
+        if (!Boolean.TRUE.equals(appConfig.getImageVariantEnabled()) || width == null || width <= 0 || !isImage(sourceName)) {
+            return null;
+        }
+        Integer bucket = getBucket(width);
+        if (bucket == null) {
+            return null;
+        }
+        String key = sourceName + Constants.IMAGE_VARIANT_NAME + bucket + "." + Constants.IMAGE_FORMAT_JPG;
+        File variantFile = new File(cacheDir, key);
+        if (isCached(key, variantFile)) {
+            return variantFile;
+        }
+        CompletableFuture<File> future = new CompletableFuture<>();
+        CompletableFuture<File> loading = loadingMap.putIfAbsent(key, future);
+        if (loading == null) {
+            try {
+                //等待期间可能已经由其他请求生成完成
+                future.complete(isCached(key, variantFile) ? variantFile : create(sourceName, bucket, key, variantFile));
+            } catch (Throwable e) {
+                //包括 Error，否则等待的请求永远不会返回
+                future.completeExceptionally(e);
+            } finally {
+                loadingMap.remove(key);
+            }
+            loading = future;
+        }
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            log.warn("生成图片失败，返回原图, sourceName={}, width={}, error={}", sourceName, bucket, e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    private boolean isImage(String sourceName) {
+        if (!sourceName.startsWith(Constants.FILE_COVER)) {
+            return false;
+        }
+        String suffix = StringTools.getFileSuffix(sourceName);
+        return suffix != null && Arrays.asList(Constants.IMAGE_VARIANT_SOURCE_SUFFIXES).contains(suffix.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 向上取到最近的档位，超过最大档位返回 null
+     */
+    private Integer getBucket(int width) {
+        for (Integer bucket : widths) {
+            if (bucket >= width) {
+                return bucket;
+            }
+        }
+        return null;
+    }
+
+    private File create(String sourceName, int width, String key, File variantFile) throws IOException {
+        File parentDir = variantFile.getParentFile();
+        parentDir.mkdirs();
+        String tempName = StringTools.getRandomString(Constants.length_10) + Constants.IMAGE_VARIANT_TEMP_MARK;
+        File tempFile = new File(parentDir, tempName + Constants.IMAGE_FORMAT_JPG);
+        File downloadFile = null;
+        try {
+            File sourceFile = fileStorage.getLocalFile(sourceName);
+            if (sourceFile == null) {
+                //对象存储：原图先下载到本地
+                try (InputStream in = fileStorage.get(sourceName, 0, -1)) {
+                    if (in == null) {
+                        return null;
+                    }
+                    downloadFile = new File(parentDir, tempName + "src");
+                    Files.copy(in, downloadFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                sourceFile = downloadFile;
+            } else if (!sourceFile.isFile()) {
+                return null;
+            }
+            imageProcessor.createVariant(sourceFile.getAbsolutePath(), width, tempFile.getAbsolutePath());
+            if (!tempFile.isFile()) {
+                return null;
+            }
+            //改名是原子的，输出时不会读到写了一半的文件；和加入索引一起在锁内完成，淘汰时不会删掉刚生成的文件
+            synchronized (this) {
+                move(tempFile, variantFile);
+                add(key, variantFile.length());
+            }
+            evict();
+            return variantFile;
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+            if (downloadFile != null) {
+                Files.deleteIfExists(downloadFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * 命中时更新访问顺序；索引中有但文件已被删除时移除
+     */
+    private synchronized boolean isCached(String key, File variantFile) {
+        Long size = variantIndex.get(key);
+        if (size == null) {
+            return false;
+        }
+        if (variantFile.isFile()) {
+            return true;
+        }
+        variantIndex.remove(key);
+        totalSize -= size;
+        return false;
+    }
+
+    private void add(String key, long size) {
+        Long oldSize = variantIndex.put(key, size);
+        totalSize += size - (oldSize == null ? 0 : oldSize);
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 超过总大小时从最久未访问的开始删除
+     *
+     * 从索引移除和改名在锁内完成（改名只改目录项，很快），之后同名文件重新生成时不受影响；
+     * 改名后的临时文件在锁外删除，删除失败（或中途重启）时由 init() 按临时文件清理
+     */
+    private void evict() {
+        long maxSize = appConfig.getImageVariantMaxSizeMb() * Constants.MB_SIZE;
+        Collection<File> tombstones = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> iterator = variantIndex.entrySet().iterator();
+            while (totalSize > maxSize && iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                totalSize -= entry.getValue();
+                iterator.remove();
+                File file = new File(cacheDir, entry.getKey());
+                File tombstone = new File(file.getParentFile(), StringTools.getRandomString(Constants.length_10) + Constants.IMAGE_VARIANT_TEMP_MARK + "del");
+                try {
+                    move(file, tombstone);
+                    tombstones.add(tombstone);
+                } catch (IOException e) {
+                    //文件已经不存在，或者改名失败时直接删除
+                    file.delete();
+                }
+            }
+        }
+        for (File tombstone : tombstones) {
+            tombstone.delete();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.easylive.component;
+
+import com.easylive.entity.config.AppConfig;
+import com.easylive.entity.constant.Constants;
+import com.easylive.entity.dto.MediaDeleteQueueInfoDto;
+import com.easylive.entity.enums.MediaDeleteStatusEnum;
+import com.easylive.entity.po.MediaDeleteTask;
+import com.easylive.entity.query.MediaDeleteTaskQuery;
+import com.easylive.mappers.MediaDeleteTaskMapper;
+import com.easylive.storage.FileStorage;
+import com.easylive.utils.StringTools;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 媒体文件删除队列
+ *
+ * 删除视频、审核通过替换分P时，要删除的文件先写入 media_delete_task 表（和业务数据在同一个事务中，回滚时不会误删，
+ * 提交后进程重启也不会丢），由后台线程分批删除：
+ * 1. 按 storage.delete.filesPerSecond 限速逐个文件删除，大批量删除不会占满磁盘 IO 影响切片播放
+ * 2. 多个节点同时运行时通过租约领取任务（next_run_time 乐观锁），节点宕机后租约到期由其他节点接手；删除本身是幂等的
+ * 3. 失败按指数退避重试，超过 storage.delete.maxRetry 次置为失败，保留记录待人工处理
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MediaDeleteQueue {
+
+    // 第一次重试的间隔（毫秒），之后每次翻倍，最长 Constants.MEDIA_DELETE_MAX_RETRY_DELAY
+    private static final long FIRST_RETRY_DELAY = 30 * 1000L;
+
+    private final AppConfig appConfig;
+
+    private final FileStorage fileStorage;
+
+    private final HotSegmentCache hotSegmentCache;
+
+    private final MediaDeleteTaskMapper<MediaDeleteTask, MediaDeleteTaskQuery> mediaDeleteTaskMapper;
+
+    private final AtomicLong deletedFileCount = new AtomicLong();
+
+    private final AtomicLong failedAttemptCount = new AtomicLong();
+
+    // 限速：下一个文件最早可以删除的时间（只在删除线程中使用）
+    private long nextDeleteNanos;
+
+    private ScheduledExecutorService deleteExecutor;
+
+    @PostConstruct
+    public void init() {
+        nextDeleteNanos = System.nanoTime();
+        deleteExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "media-delete");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deleteExecutor.scheduleWithFixedDelay(this::drain, Constants.MEDIA_DELETE_POLL_INTERVAL, Constants.MEDIA_DELETE_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        deleteExecutor.shutdownNow();
+    }
+
+    /**
+     * 文件加入删除队列，在调用方的事务中写入
+     *
+     * @param filePathList 相对 file/ 目录的文件或目录
+     */
+    public void enqueue(List<String> filePathList) {
+        if (filePathList == null || filePathList.isEmpty()) {
+            return;
+        }
+        Date now = new Date();
+        List<MediaDeleteTask> taskList = new ArrayList<>();
+        for (String filePath : filePathList) {
+            //空路径会删掉整个 file/ 目录
+            if (StringTools.isEmpty(filePath) || !StringTools.pathIsOk(filePath)) {
+                log.warn("忽略非法的删除路径, filePath={}", filePath);
+                continue;
+            }
+            MediaDeleteTask task = new MediaDeleteTask();
+            task.setFilePath(filePath);
+            task.setStatus(MediaDeleteStatusEnum.WAITING.getStatus());
+            task.setRetryCount(0);
+            task.setNextRunTime(now);
+            task.setCreateTime(now);
+            taskList.add(task);
+        }
+        if (!taskList.isEmpty()) {
+            mediaDeleteTaskMapper.insertBatch(taskList);
+        }
+    }
+
+    /**
+     * 队列积压情况
+     */
+    public MediaDeleteQueueInfoDto getQueueInfo() {
+        MediaDeleteTaskQuery query = new MediaDeleteTaskQuery();
+        query.setStatus(MediaDeleteStatusEnum.WAITING.getStatus());
+        Integer waitingCount = mediaDeleteTaskMapper.selectCount(query);
+        query.setStatus(MediaDeleteStatusEnum.FAIL.getStatus());
+        Integer failCount = mediaDeleteTaskMapper.selectCount(query);
+        Date oldestCreateTime = mediaDeleteTaskMapper.selectMinCreateTime(MediaDeleteStatusEnum.WAITING.getStatus());
+
+        MediaDeleteQueueInfoDto queueInfoDto = new MediaDeleteQueueInfoDto();
+        queueInfoDto.setWaitingCount(waitingCount);
+        queueInfoDto.setFailCount(failCount);
+        queueInfoDto.setOldestWaitingSeconds(oldestCreateTime == null ? 0L : (System.currentTimeMillis() - oldestCreateTime.getTime()) / 1000);
+        queueInfoDto.setDeletedFileCount(deletedFileCount.get());
+        queueInfoDto.setFailedAttemptCount(failedAttemptCount.get());
+        queueInfoDto.setFilesPerSecond(appConfig.getStorageDeleteFilesPerSecond());
+        return queueInfoDto;
+    }
+
+    /**
+     * 取到期任务执行，取满一批说明还有积压，继续取下一批
+     */
+    private void drain() {
+        try {
+            int batchSize = appConfig.getStorageDeleteBatchSize();
+            long startTime = System.currentTimeMillis();
+            long startCount = deletedFileCount.get();
+            int taskCount = 0;
+            List<MediaDeleteTask> taskList;
+            do {
+                taskList = mediaDeleteTaskMapper.selectDueList(new Date(), batchSize);
+                for (MediaDeleteTask task : taskList) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    Date leaseTime = new Date(System.currentTimeMillis() + Constants.MEDIA_DELETE_LEASE_TIME);
+                    if (mediaDeleteTaskMapper.updateLease(task.getTaskId(), task.getNextRunTime(), leaseTime) == 0) {
+                        continue;
+                    }
+                    execute(task);
+                    taskCount++;
+                }
+            } while (taskList.size() >= batchSize);
+            if (taskCount > 0) {
+                log.info("删除队列处理完成, tasks={}, files={}, cost={}ms", taskCount, deletedFileCount.get() - startCount, System.currentTimeMillis() - startTime);
+            }
+        } catch (Exception e) {
+            //异常不能抛出，否则定时任务会停止
+            log.error("处理删除队列失败", e);
+        }
+    }
+
+    private void execute(MediaDeleteTask task) {
+        String filePath = task.getFilePath();
+        try {
+            //目录逐个文件删除，按文件数限速
+            for (String key : fileStorage.list(filePath)) {
+                acquire();
+                fileStorage.delete(key);
+                deletedFileCount.incrementAndGet();
+            }
+            //文件本身或已经清空的目录
+            acquire();
+            fileStorage.delete(filePath);
+            hotSegmentCache.invalidate(filePath);
+            mediaDeleteTaskMapper.deleteByTaskId(task.getTaskId());
+        } catch (InterruptedException e) {
+            //停机：租约到期后重新执行
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failedAttemptCount.incrementAndGet();
+            handleFailure(task, e);
+        }
+    }
+
+    private void handleFailure(MediaDeleteTask task, Exception e) {
+        String error = StringTools.isEmpty(e.getMessage()) ? e.getClass().getSimpleName() : e.getMessage();
+        if (error.length() > Constants.TRANSFER_ERROR_MAX_LENGTH) {
+            error = error.substring(0, Constants.TRANSFER_ERROR_MAX_LENGTH);
+        }
+        int retryCount = task.getRetryCount() == null ? 0 : task.getRetryCount();
+        MediaDeleteTask updateTask = new MediaDeleteTask();
+        updateTask.setLastError(error);
+        if (retryCount >= appConfig.getStorageDeleteMaxRetry()) {
+            updateTask.setStatus(MediaDeleteStatusEnum.FAIL.getStatus());
+            log.error("删除文件失败，重试次数已用完, taskId={}, filePath={}", task.getTaskId(), task.getFilePath(), e);
+        } else {
+            long delay = Math.min(FIRST_RETRY_DELAY << Math.min(retryCount, 20), Constants.MEDIA_DELETE_MAX_RETRY_DELAY);
+            updateTask.setRetryCount(retryCount + 1);
+            updateTask.setNextRunTime(new Date(System.currentTimeMillis() + delay));
+            log.warn("删除文件失败，{}秒后重试, taskId={}, filePath={}, retryCount={}", delay / 1000, task.getTaskId(), task.getFilePath(), retryCount + 1, e);
+        }
+        mediaDeleteTaskMapper.updateByTaskId(updateTask, task.getTaskId());
+    }
+
+    /**
+     * 限速：两次删除之间至少间隔 1秒 / filesPerSecond
+     */
+    private void acquire() throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / Math.max(1, appConfig.getStorageDeleteFilesPerSecond());
+        long now = System.nanoTime();
+        if (nextDeleteNanos - now > 0) {
+            TimeUnit.NANOSECONDS.sleep(nextDeleteNanos - now);
+            now = nextDeleteNanos;
+        }
+        nextDeleteNanos = now + interval;
+    }
+}
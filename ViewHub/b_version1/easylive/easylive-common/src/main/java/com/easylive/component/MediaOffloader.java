@@ -0,0 +1,85 @@
+package com.easylive.component;
+
+import com.easylive.entity.config.AppConfig;
+import com.easylive.entity.constant.Constants;
+import com.easylive.storage.FileStorage;
+import com.easylive.utils.StringTools;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 媒体文件交给反向代理输出
+ *
+ * 开启 media.offload.enabled 后，本地存储的文件不再由 JVM 读取输出，只返回一个响应头，由 nginx / Apache 用 sendfile 发送文件内容：
+ * - X-Accel-Redirect（nginx）：内部地址 prefix + 文件路径，带过期时间和签名，nginx 用 secure_link 模块校验，见 nginx/easylive.conf
+ * - X-Sendfile（Apache mod_xsendfile、lighttpd）：文件的绝对路径，不签名
+ *
+ * Range、304 由反向代理处理；对象存储（没有本地文件）时仍由 MediaResourceWriter 输出
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MediaOffloader {
+
+    private static final String HEADER_X_SENDFILE = "X-Sendfile";
+
+    private final AppConfig appConfig;
+
+    private final FileStorage fileStorage;
+
+    @PostConstruct
+    public void init() {
+        if (Boolean.TRUE.equals(appConfig.getMediaOffloadEnabled()) && !HEADER_X_SENDFILE.equalsIgnoreCase(appConfig.getMediaOffloadHeader())
+                && StringTools.isEmpty(appConfig.getMediaOffloadSecret())) {
+            throw new IllegalStateException("开启 media.offload.enabled 时需要配置 media.offload.secret");
+        }
+    }
+
+    /**
+     * 设置反向代理输出的响应头
+     *
+     * @param filePath 相对 file/ 目录的路径
+     * @return 未开启、或者不是本地文件时返回 false，调用方自己输出文件
+     */
+    public boolean offload(HttpServletResponse response, String filePath) {
+        if (!Boolean.TRUE.equals(appConfig.getMediaOffloadEnabled())) {
+            return false;
+        }
+        File localFile = fileStorage.getLocalFile(filePath);
+        if (localFile == null) {
+            return false;
+        }
+        String header = appConfig.getMediaOffloadHeader();
+        if (HEADER_X_SENDFILE.equalsIgnoreCase(header)) {
+            response.setHeader(header, localFile.getAbsolutePath());
+        } else {
+            response.setHeader(header, getSignedUri(filePath));
+        }
+        return true;
+    }
+
+    /**
+     * nginx secure_link 格式：md5 = base64url(md5("过期时间" + uri + " " + 密钥))，不带填充
+     */
+    public String getSignedUri(String filePath) {
+        return getSignedUri(filePath, System.currentTimeMillis() / 1000 + Constants.MEDIA_OFFLOAD_SIGN_EXPIRE_SECONDS);
+    }
+
+    /**
+     * @param expires 过期时间（Unix 秒）
+     */
+    String getSignedUri(String filePath, long expires) {
+        String uri = appConfig.getMediaOffloadPrefix() + filePath;
+        byte[] digest = DigestUtils.md5((expires + uri + " " + appConfig.getMediaOffloadSecret()).getBytes(StandardCharsets.UTF_8));
+        String sign = Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        return uri + "?md5=" + sign + "&expires=" + expires;
+    }
+}
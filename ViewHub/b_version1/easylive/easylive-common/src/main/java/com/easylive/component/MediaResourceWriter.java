@@ -0,0 +1,431 @@
+package com.easylive.component;
+
+import com.easylive.entity.config.AppConfig;
+import com.easylive.entity.constant.Constants;
+import com.easylive.storage.FileStat;
+import com.easylive.storage.FileStorage;
+import com.easylive.utils.StringTools;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 媒体文件（切片、播放列表、封面）输出
+ *
+ * - 支持单个 Range 请求（206 / 416），拖动进度条、断点续传不用从头下载
+ * - ETag + Last-Modified，浏览器、CDN 重新验证时返回 304
+ * - 热门的播放列表、切片从 HotSegmentCache（内存映射）输出
+ * - 本地文件且 Tomcat 支持 sendfile 时由连接器直接从文件发送（零拷贝），否则用 FileChannel.transferTo；
+ *   对象存储按 Range 读取后以 64KB 缓冲区转发
+ * - 不走 sendfile 的较大文件使用 Servlet 异步 + WriteListener 输出（media.async.enabled），慢速客户端不占用请求线程
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MediaResourceWriter {
+
+    // Tomcat sendfile 相关的 request 属性（org.apache.coyote.Constants）
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_FILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put(".m3u8", "application/vnd.apple.mpegurl");
+        CONTENT_TYPES.put(".ts", "video/mp2t");
+        CONTENT_TYPES.put(".mp4", "video/mp4");
+        CONTENT_TYPES.put(".vtt", "text/vtt");
+        CONTENT_TYPES.put(".jpg", "image/jpeg");
+        CONTENT_TYPES.put(".jpeg", "image/jpeg");
+        CONTENT_TYPES.put(".png", "image/png");
+        CONTENT_TYPES.put(".gif", "image/gif");
+        CONTENT_TYPES.put(".webp", "image/webp");
+        CONTENT_TYPES.put(".bmp", "image/bmp");
+    }
+
+    private final AppConfig appConfig;
+
+    private final FileStorage fileStorage;
+
+    private final HotSegmentCache hotSegmentCache;
+
+    /**
+     * 输出文件，文件不存在返回 404
+     *
+     * @param filePath 相对 file/ 目录的路径
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, String filePath) {
+        HotSegmentCache.CachedSegment segment = null;
+        try {
+            //热门切片直接从内存输出，不再访问磁盘 / 对象存储
+            segment = hotSegmentCache.get(filePath);
+            FileStat stat = segment != null ? segment.getStat() : fileStorage.stat(filePath);
+            if (stat == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            doWrite(request, response, filePath, stat, segment, segment != null ? null : fileStorage.getLocalFile(filePath));
+        } catch (IOException e) {
+            //多数是播放器切换码率、拖动进度时主动断开连接
+            log.debug("输出文件中断, filePath={}, error={}", filePath, e.getMessage());
+        } catch (Exception e) {
+            log.error("读取文件异常, filePath={}", filePath, e);
+        } finally {
+            //异步输出时输入流另外持有引用，输出结束关闭时释放
+            if (segment != null) {
+                segment.release();
+            }
+        }
+    }
+
+    /**
+     * 输出不在存储中的本地文件（如按宽度生成的图片缓存）
+     *
+     * @return 文件不存在时返回 false，不修改响应
+     */
+    public boolean write(HttpServletRequest request, HttpServletResponse response, File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            doWrite(request, response, file.getName(), new FileStat(file.length(), file.lastModified()), null, file);
+        } catch (IOException e) {
+            log.debug("输出文件中断, file={}, error={}", file.getPath(), e.getMessage());
+        } catch (Exception e) {
+            log.error("读取文件异常, file={}", file.getPath(), e);
+        }
+        return true;
+    }
+
+    /**
+     * @param segment   缓存的文件内容，没有缓存时为 null
+     * @param localFile 本地文件，对象存储时为 null（按 filePath 从存储读取）
+     */
+    private void doWrite(HttpServletRequest request, HttpServletResponse response, String filePath, FileStat stat,
+                         HotSegmentCache.CachedSegment segment, File localFile) throws IOException {
+        String suffix = StringTools.getFileSuffix(filePath);
+        String contentType = suffix == null ? null : CONTENT_TYPES.get(suffix.toLowerCase());
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+        String etag = "\"" + Long.toHexString(stat.getLastModified()) + "-" + Long.toHexString(stat.getSize()) + "\"";
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", stat.getLastModified());
+        response.setHeader("Accept-Ranges", "bytes");
+
+        if (isNotModified(request, etag, stat.getLastModified())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long size = stat.getSize();
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader("Range");
+        if (range != null && isIfRangeMatched(request, etag, stat.getLastModified())) {
+            long[] rangeValue = parseRange(range, size);
+            if (rangeValue == null) {
+                response.setHeader("Content-Range", "bytes */" + size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (rangeValue.length == 2) {
+                start = rangeValue[0];
+                end = rangeValue[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+        long length = end - start + 1;
+        response.setContentLengthLong(length);
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || length == 0) {
+            return;
+        }
+        boolean async = isAsyncEnabled(request, length);
+        if (segment != null) {
+            if (async) {
+                writeAsync(request, response, segment.openStream(start, length));
+            } else {
+                writeBuffer(response, segment.slice(start, length));
+            }
+            return;
+        }
+        if (localFile != null && length >= Constants.MEDIA_SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            //响应由连接器在请求处理结束后用 sendfile 发送（也不占用请求线程），这里不能再写输出流
+            request.setAttribute(SENDFILE_FILENAME_ATTR, localFile.getCanonicalPath());
+            request.setAttribute(SENDFILE_FILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_FILE_END_ATTR, start + length);
+            return;
+        }
+        if (async) {
+            InputStream in = localFile != null ? openLocalFile(localFile, start, length) : fileStorage.get(filePath, start, length);
+            if (in != null) {
+                writeAsync(request, response, in);
+            }
+            return;
+        }
+        if (localFile != null) {
+            writeLocalFile(response, localFile, start, length);
+        } else {
+            writeStorageFile(response, filePath, start, length);
+        }
+    }
+
+    private boolean isAsyncEnabled(HttpServletRequest request, long length) {
+        return Boolean.TRUE.equals(appConfig.getMediaAsyncEnabled()) && length >= Constants.MEDIA_ASYNC_MIN_SIZE && request.isAsyncSupported();
+    }
+
+    /**
+     * 异步输出：请求线程在这里返回，之后只在客户端可写时（WriteListener.onWritePossible）由容器线程写一批数据，
+     * 慢速客户端不再长时间占用请求线程
+     */
+    private void writeAsync(HttpServletRequest request, HttpServletResponse response, InputStream in) throws IOException {
+        AsyncContext asyncContext;
+        try {
+            asyncContext = request.startAsync();
+        } catch (RuntimeException e) {
+            IOUtils.closeQuietly(in);
+            throw e;
+        }
+        asyncContext.setTimeout(Constants.MEDIA_ASYNC_TIMEOUT);
+        AsyncBodyWriter bodyWriter;
+        try {
+            bodyWriter = new AsyncBodyWriter(asyncContext, response.getOutputStream(), in);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(in);
+            asyncContext.complete();
+            throw e;
+        }
+        asyncContext.addListener(bodyWriter);
+        bodyWriter.out.setWriteListener(bodyWriter);
+    }
+
+    private InputStream openLocalFile(File file, long start, long length) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            channel.position(start);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    private void writeLocalFile(HttpServletResponse response, File file, long start, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long count = channel.transferTo(position, remaining, out);
+                if (count <= 0) {
+                    //文件在发送过程中被截断
+                    break;
+                }
+                position += count;
+                remaining -= count;
+            }
+        }
+        response.flushBuffer();
+    }
+
+    private void writeBuffer(HttpServletResponse response, ByteBuffer buffer) throws IOException {
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        response.flushBuffer();
+    }
+
+    private void writeStorageFile(HttpServletResponse response, String filePath, long start, long length) throws IOException {
+        try (InputStream in = fileStorage.get(filePath, start, length)) {
+            if (in == null) {
+                return;
+            }
+            OutputStream out = response.getOutputStream();
+            IOUtils.copyLarge(in, out, new byte[Constants.MEDIA_WRITE_BUFFER_SIZE]);
+            out.flush();
+        }
+    }
+
+    /**
+     * If-None-Match 优先；没有时比较 If-Modified-Since（HTTP 日期只精确到秒）
+     */
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchEtag(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * 没有 If-Range 或者 If-Range 与当前文件一致时才按 Range 返回，否则返回完整文件
+     */
+    private boolean isIfRangeMatched(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long date = getDateHeader(request, "If-Range");
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    private boolean matchEtag(String header, String etag) {
+        for (String item : header.split(",")) {
+            String value = item.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if ("*".equals(value) || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 解析 Range 头，只支持单个区间（多个区间时返回完整文件）
+     *
+     * @return {start, end}；空数组表示忽略 Range 返回完整文件；null 表示区间无法满足（416）
+     */
+    private long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String value = range.substring("bytes=".length()).trim();
+        int index = value.indexOf('-');
+        if (index < 0) {
+            return new long[0];
+        }
+        try {
+            String startValue = value.substring(0, index).trim();
+            String endValue = value.substring(index + 1).trim();
+            long start;
+            long end;
+            if (startValue.isEmpty()) {
+                //bytes=-500：最后 500 字节
+                long suffixLength = Long.parseLong(endValue);
+                if (suffixLength <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffixLength);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(startValue);
+                end = endValue.isEmpty() ? size - 1 : Math.min(Long.parseLong(endValue), size - 1);
+            }
+            if (start < 0 || start >= size || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * 异步输出响应体：每次可写时写到缓冲区满（isReady() 返回 false）为止，读完后结束异步请求；
+     * 出错、超时、客户端断开时关闭输入流
+     */
+    private static class AsyncBodyWriter implements WriteListener, AsyncListener {
+
+        private final AsyncContext asyncContext;
+
+        private final ServletOutputStream out;
+
+        private final InputStream in;
+
+        private final byte[] buffer = new byte[Constants.MEDIA_WRITE_BUFFER_SIZE];
+
+        // 写完、出错、超时可能先后触发，complete() 只能调用一次
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        AsyncBodyWriter(AsyncContext asyncContext, ServletOutputStream out, InputStream in) {
+            this.asyncContext = asyncContext;
+            this.out = out;
+            this.in = in;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            while (out.isReady()) {
+                int len = in.read(buffer);
+                if (len < 0) {
+                    complete();
+                    return;
+                }
+                out.write(buffer, 0, len);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log.debug("异步输出文件中断, error={}", t.getMessage());
+            complete();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            IOUtils.closeQuietly(in);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            log.debug("异步输出文件超时");
+            complete();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            complete();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private void complete() {
+            if (completed.compareAndSet(false, true)) {
+                asyncContext.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.easylive.component;
+
+import com.easylive.entity.config.AppConfig;
+import com.easylive.exception.BusinessException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 外部进程（ffmpeg / ffprobe）执行器
+ *
+ * - 不经过 shell，参数按列表传给 ProcessBuilder，文件名中的空格、引号不需要转义
+ * - 同时运行的进程数有上限，超出时排队等待，排队时间超过命令的超时时间时失败：
+ *   转码（带进度的命令）按 process.maxConcurrent，ffprobe、图片等短命令按 process.shortMaxConcurrent 单独计数，
+ *   转码占满时短命令不需要等转码结束
+ * - 每个命令有超时时间，超时或被取消时强制结束进程
+ * - 输出由共享线程池读取，只保留末尾一段（stdout 用于解析 ffprobe 结果，stderr 用于报错信息），不会无限增长
+ * - 应用关闭时结束所有还在运行的进程
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ProcessExecutor {
+
+    // 保留的 stdout 长度（ffprobe 的 JSON 输出）
+    private static final int STDOUT_LIMIT = 64 * 1024;
+    // 保留的 stderr 长度（ffmpeg 的进度和错误信息都在 stderr）
+    private static final int STDERR_LIMIT = 8 * 1024;
+    // 命令失败时异常信息中保留的输出长度
+    private static final int ERROR_OUTPUT_TAIL_LENGTH = 300;
+    // ffmpeg -progress 输出中每组进度的最后一个字段
+    private static final String PROGRESS_END_KEY = "progress";
+    // 进程结束后等待输出读取完成的时间（秒）
+    private static final long DRAIN_WAIT_SECONDS = 5;
+
+    private final AppConfig appConfig;
+
+    // 正在运行的进程
+    private final Map<Process, RunningProcess> runningProcesses = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeProcessCount = new AtomicInteger();
+
+    private Semaphore processPermits;
+
+    private Semaphore shortProcessPermits;
+
+    private ExecutorService drainPool;
+
+    @PostConstruct
+    public void init() {
+        processPermits = new Semaphore(appConfig.getProcessMaxConcurrent(), true);
+        shortProcessPermits = new Semaphore(appConfig.getProcessShortMaxConcurrent(), true);
+        //每个进程两个读取任务（stdout + stderr），进程数有上限，线程池不会排队
+        AtomicInteger threadIndex = new AtomicInteger();
+        drainPool = Executors.newFixedThreadPool((appConfig.getProcessMaxConcurrent() + appConfig.getProcessShortMaxConcurrent()) * 2, r -> {
+            Thread thread = new Thread(r, "process-output-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (RunningProcess runningProcess : runningProcesses.values()) {
+            runningProcess.cancelled = true;
+            runningProcess.process.destroyForcibly();
+        }
+        drainPool.shutdownNow();
+    }
+
+    /**
+     * 当前正在运行的外部进程数，供转码调度器参考
+     */
+    public int getActiveProcessCount() {
+        return activeProcessCount.get();
+    }
+
+    /**
+     * 执行短命令（ffprobe、生成缩略图等）并等待结束，占用短命令的并发数
+     *
+     * @param command        命令及参数
+     * @param timeoutSeconds 超时时间（秒），排队等待也不超过这个时间
+     * @param taskKey        任务标识，可通过 cancel(taskKey) 取消；不需要取消时传 null
+     * @return stdout 输出（超出上限时只保留末尾）
+     * @throws BusinessException 退出码非 0、超时、被取消或无法启动
+     */
+    public String execute(List<String> command, long timeoutSeconds, String taskKey) throws BusinessException {
+        return execute(command, timeoutSeconds, taskKey, null, shortProcessPermits);
+    }
+
+    /**
+     * 执行 ffmpeg 转码命令并解析进度（命令需带 -progress pipe:1，进度以 key=value 行写到 stdout，每组以 progress=xxx 结束），占用转码的并发数
+     *
+     * @param progressListener 每组进度回调一次（在输出读取线程中调用，不要做耗时操作）；为 null 时不解析
+     * @return stdout 输出中除进度行以外的内容
+     */
+    public String execute(List<String> command, long timeoutSeconds, String taskKey, Consumer<Map<String, String>> progressListener) throws BusinessException {
+        return execute(command, timeoutSeconds, taskKey, progressListener, processPermits);
+    }
+
+    private String execute(List<String> command, long timeoutSeconds, String taskKey, Consumer<Map<String, String>> progressListener,
+                           Semaphore permits) throws BusinessException {
+        try {
+            if (!permits.tryAcquire(timeoutSeconds, TimeUnit.SECONDS)) {
+                log.error("等待执行命令超时cmd{} timeout:{}s", String.join(" ", command), timeoutSeconds);
+                throw new BusinessException("执行命令排队超时(" + timeoutSeconds + "s)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("等待执行命令被中断", e);
+        }
+        activeProcessCount.incrementAndGet();
+        Process process = null;
+        try {
+            Process started = new ProcessBuilder(command).start();
+            process = started;
+            RunningProcess runningProcess = new RunningProcess(started, taskKey);
+            runningProcesses.put(started, runningProcess);
+            started.getOutputStream().close();
+
+            BoundedOutput stdout = new BoundedOutput(STDOUT_LIMIT);
+            BoundedOutput stderr = new BoundedOutput(STDERR_LIMIT);
+            Future<?> stdoutFuture = progressListener == null
+                    ? drainPool.submit(() -> drain(started.getInputStream(), stdout))
+                    : drainPool.submit(() -> drainProgress(started.getInputStream(), stdout, progressListener));
+            Future<?> stderrFuture = drainPool.submit(() -> drain(started.getErrorStream(), stderr));
+
+            boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+            if (!finished) {
+                process.destroyForcibly();
+                process.waitFor(DRAIN_WAIT_SECONDS, TimeUnit.SECONDS);
+            }
+            waitDrain(stdoutFuture);
+            waitDrain(stderrFuture);
+
+            String commandLine = String.join(" ", command);
+            if (appConfig.getShowFFmpegLog()) {
+                log.info("执行命令{}结果{}{}", commandLine, stderr, stdout);
+            }
+            if (!finished) {
+                log.error("执行命令超时cmd{} timeout:{}s", commandLine, timeoutSeconds);
+                throw new BusinessException("视频转换失败, 执行超时(" + timeoutSeconds + "s)");
+            }
+            if (runningProcess.cancelled) {
+                throw new BusinessException("视频转换失败, 任务已取消");
+            }
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                // 带上输出末尾（ffmpeg 的错误原因在最后几行），供调用方判断失败类型
+                String tail = stderr.tail(ERROR_OUTPUT_TAIL_LENGTH);
+                log.error("执行命令失败cmd{} exitCode:{} 输出:{}", commandLine, exitCode, tail);
+                throw new BusinessException("视频转换失败, exitCode=" + exitCode + ", " + tail.trim());
+            }
+            return stdout.toString();
+        } catch (BusinessException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("视频转换失败, 执行被中断", e);
+        } catch (Exception e) {
+            log.error("执行命令失败cmd{}失败:{} ", command, e.getMessage());
+            throw new BusinessException("视频转换失败", e);
+        } finally {
+            if (process != null) {
+                if (process.isAlive()) {
+                    process.destroyForcibly();
+                }
+                runningProcesses.remove(process);
+            }
+            activeProcessCount.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * 取消某个任务正在运行的所有进程
+     *
+     * @return 结束的进程数
+     */
+    public int cancel(String taskKey) {
+        int count = 0;
+        for (RunningProcess runningProcess : runningProcesses.values()) {
+            if (taskKey != null && taskKey.equals(runningProcess.taskKey)) {
+                runningProcess.cancelled = true;
+                runningProcess.process.destroyForcibly();
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.info("取消外部进程, taskKey={}, count={}", taskKey, count);
+        }
+        return count;
+    }
+
+    private void drain(InputStream inputStream, BoundedOutput output) {
+        char[] buffer = new char[4096];
+        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            int len;
+            while ((len = reader.read(buffer)) != -1) {
+                output.append(buffer, len);
+            }
+        } catch (IOException e) {
+            // 进程被强制结束时管道关闭，属于正常情况
+            log.debug("读取进程输出结束: {}", e.getMessage());
+        }
+    }
+
+    private void drainProgress(InputStream inputStream, BoundedOutput output, Consumer<Map<String, String>> progressListener) {
+        Map<String, String> progress = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int index = line.indexOf('=');
+                if (index <= 0) {
+                    output.append(line);
+                    continue;
+                }
+                String key = line.substring(0, index).trim();
+                progress.put(key, line.substring(index + 1).trim());
+                if (PROGRESS_END_KEY.equals(key)) {
+                    try {
+                        progressListener.accept(progress);
+                    } catch (Exception e) {
+                        log.warn("处理进度回调失败", e);
+                    }
+                    progress = new HashMap<>();
+                }
+            }
+        } catch (IOException e) {
+            log.debug("读取进程输出结束: {}", e.getMessage());
+        }
+    }
+
+    private void waitDrain(Future<?> future) {
+        try {
+            future.get(DRAIN_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            future.cancel(true);
+            log.warn("等待进程输出读取完成超时");
+        }
+    }
+
+    private static class RunningProcess {
+        private final Process process;
+        private final String taskKey;
+        private volatile boolean cancelled;
+
+        RunningProcess(Process process, String taskKey) {
+            this.process = process;
+            this.taskKey = taskKey;
+        }
+    }
+
+    /**
+     * 只保留末尾 limit 个字符的输出缓冲区
+     */
+    private static class BoundedOutput {
+        private final int limit;
+        private final StringBuilder buffer = new StringBuilder();
+
+        BoundedOutput(int limit) {
+            this.limit = limit;
+        }
+
+        synchronized void append(char[] chars, int len) {
+            buffer.append(chars, 0, len);
+            trim();
+        }
+
+        synchronized void append(String line) {
+            buffer.append(line).append('\n');
+            trim();
+        }
+
+        private void trim() {
+            //超出两倍时再裁剪，避免每次追加都移动数据
+            if (buffer.length() > limit * 2) {
+                buffer.delete(0, buffer.length() - limit);
+            }
+        }
+
+        synchronized String tail(int length) {
+            return buffer.length() > length ? buffer.substring(buffer.length() - length) : buffer.toString();
+        }
+
+        @Override
+        public synchronized String toString() {
+            return tail(limit);
+        }
+    }
+}
@@ -3,7 +3,11 @@ package com.easylive.component;
 import com.easylive.entity.config.AppConfig;
 import com.easylive.entity.dto.SysSettingDto;
 import com.easylive.entity.dto.TokenUserInfoDto;
+import com.easylive.entity.dto.TransferProgressDto;
+import com.easylive.utils.JsonUtils;
+import com.easylive.entity.dto.TransferQueueInfoDto;
 import com.easylive.entity.dto.UploadingFileDto;
+import com.easylive.entity.dto.VideoDanmuTaskDTO;
 import com.easylive.entity.dto.VideoPlayInfoDto;
 import com.easylive.entity.enums.DateTimePatternEnum;
 import com.easylive.entity.po.CategoryInfo;
@@ -14,6 +18,7 @@ import com.easylive.redis.RedisUtils;
 import com.easylive.utils.DateUtil;
 import com.easylive.utils.StringTools;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.elasticsearch.search.aggregations.bucket.terms.StringTerms;
 import org.springframework.stereotype.Component;
 
@@ -130,7 +135,89 @@ public class RedisComponent {
     }
 
     public UploadingFileDto getUploadingVideoFile(String userId, String uploadId) {
-        return (UploadingFileDto) redisUtils.get(Constants.REDIS_KEY_UP_LOADING_FILE + userId + uploadId);
+        UploadingFileDto fileDto = (UploadingFileDto) redisUtils.get(Constants.REDIS_KEY_UP_LOADING_FILE + userId + uploadId);
+        if (fileDto != null) {
+            //已上传大小由分片上传时单独累加，不再每个分片回写整个上传信息
+            Long uploadedSize = redisUtils.getRawLong(Constants.REDIS_KEY_UP_LOADING_SIZE + userId + uploadId);
+            if (uploadedSize != null) {
+                fileDto.setFileSize(uploadedSize);
+            }
+        }
+        return fileDto;
+    }
+
+    /**
+     * 记录分片已上传（位图置位 + 累加已上传大小，并续期上传信息），分片可以乱序、并发上传
+     * 分片 MD5 先于位图写入，位图显示已上传的分片一定有 MD5
+     * 升级前开始的上传（按顺序上传，没有位图）第一次写位图时，先把 chunkIndex 之前已上传的分片置位，已上传大小从 fileSize 接上
+     *
+     * @param fileDto 上传信息（getUploadingVideoFile 获取）
+     * @return 已上传的分片数
+     */
+    public Long saveUploadedChunk(String userId, UploadingFileDto fileDto, Integer chunkIndex, Long chunkSize, String chunkMd5) {
+        String uploadId = fileDto.getUploadId();
+        long legacyChunks = fileDto.getChunkIndex() == null ? 0 : fileDto.getChunkIndex();
+        long legacySize = legacyChunks == 0 || fileDto.getFileSize() == null ? 0 : fileDto.getFileSize();
+        redisUtils.hSet(Constants.REDIS_KEY_UP_LOADING_HASH + userId + uploadId, String.valueOf(chunkIndex), chunkMd5, Constants.REDIS_KEY_EXPIRE_ONE_DAY);
+        List<Long> result = redisUtils.setBitAndIncr(Constants.REDIS_KEY_UP_LOADING_CHUNKS + userId + uploadId, chunkIndex,
+                Constants.REDIS_KEY_UP_LOADING_SIZE + userId + uploadId, chunkSize, Constants.REDIS_KEY_EXPIRE_ONE_DAY,
+                legacyChunks, legacySize, Constants.REDIS_KEY_UP_LOADING_FILE + userId + uploadId, Constants.REDIS_KEY_UP_LOADING_HASH + userId + uploadId);
+        return result.get(1);
+    }
+
+    /**
+     * 文件内容哈希：SHA-256(分片数 + 按序号排列的各分片 MD5)
+     * 分片乱序上传，无法对整个文件做流式哈希，改为对分片 MD5 列表做哈希，上传时已经算好，转码前不需要再读一遍文件
+     *
+     * @return 上传信息已过期或有分片缺少 MD5（升级前上传的分片）时返回 null
+     */
+    public String getUploadContentHash(String userId, String uploadId) {
+        UploadingFileDto fileDto = (UploadingFileDto) redisUtils.get(Constants.REDIS_KEY_UP_LOADING_FILE + userId + uploadId);
+        if (fileDto == null) {
+            return null;
+        }
+        Map<String, Object> chunkMd5Map = redisUtils.hGetAll(Constants.REDIS_KEY_UP_LOADING_HASH + userId + uploadId);
+        StringBuilder hashSource = new StringBuilder().append(fileDto.getChunks());
+        for (int i = 0; i < fileDto.getChunks(); i++) {
+            Object chunkMd5 = chunkMd5Map.get(String.valueOf(i));
+            if (chunkMd5 == null) {
+                return null;
+            }
+            hashSource.append(':').append(chunkMd5);
+        }
+        return DigestUtils.sha256Hex(hashSource.toString());
+    }
+
+    /**
+     * 获取还没有上传的分片序号（断点续传时客户端只补传这些分片）
+     */
+    public List<Integer> getMissingChunks(String userId, UploadingFileDto fileDto) {
+        List<Integer> missingChunks = new ArrayList<>();
+        byte[] bitmap = redisUtils.getRawBytes(Constants.REDIS_KEY_UP_LOADING_CHUNKS + userId + fileDto.getUploadId());
+        if (bitmap == null) {
+            //升级前开始的上传（按顺序上传，chunkIndex 为下一个要上传的分片），还没有上传新分片；上传新分片时按 chunkIndex 初始化位图
+            int start = fileDto.getChunkIndex() == null ? 0 : fileDto.getChunkIndex();
+            for (int i = start; i < fileDto.getChunks(); i++) {
+                missingChunks.add(i);
+            }
+            return missingChunks;
+        }
+        for (int i = 0; i < fileDto.getChunks(); i++) {
+            //Redis 位图按字节从高位到低位编号
+            boolean uploaded = i / 8 < bitmap.length && (bitmap[i / 8] & (0x80 >>> (i % 8))) != 0;
+            if (!uploaded) {
+                missingChunks.add(i);
+            }
+        }
+        return missingChunks;
+    }
+
+    /**
+     * 所有分片是否都已上传
+     */
+    public boolean isVideoUploadComplete(String userId, String uploadId) {
+        UploadingFileDto fileDto = (UploadingFileDto) redisUtils.get(Constants.REDIS_KEY_UP_LOADING_FILE + userId + uploadId);
+        return fileDto != null && getMissingChunks(userId, fileDto).isEmpty();
     }
 
     public SysSettingDto getSysSettingDto() {
@@ -147,7 +234,8 @@ public class RedisComponent {
     }
 
     public void delVideoFileInfo(String userId, String uploadId) {
-        redisUtils.delete(Constants.REDIS_KEY_UP_LOADING_FILE + userId + uploadId);
+        redisUtils.delete(Constants.REDIS_KEY_UP_LOADING_FILE + userId + uploadId, Constants.REDIS_KEY_UP_LOADING_CHUNKS + userId + uploadId,
+                Constants.REDIS_KEY_UP_LOADING_SIZE + userId + uploadId, Constants.REDIS_KEY_UP_LOADING_HASH + userId + uploadId);
     }
 
     //通过过期时间来删除消息队列中对应的文件
@@ -318,4 +406,75 @@ public class RedisComponent {
         List<VideoDanmu> list = redisUtils.getQueueList(key);
         return list == null ? new ArrayList<>() : list;
     }
+
+    /**
+     * 批量标记弹幕消息已处理（MQ消费幂等）
+     *
+     * 按弹幕发布时间的小时分桶，每小时一个 Set，整个 Set 一天后过期；
+     * 一批消息只需一次 Redis 往返，也不再为每条弹幕留下一个独立的 key。
+     *
+     * @param danmuList 本批弹幕
+     * @return 与 danmuList 一一对应：true 首次处理；false 重复投递
+     */
+    public List<Boolean> markDanmuProcessed(List<VideoDanmuTaskDTO> danmuList) {
+        List<String> keys = new ArrayList<>(danmuList.size());
+        List<String> members = new ArrayList<>(danmuList.size());
+        buildDanmuProcessedKeys(danmuList, keys, members);
+        return redisUtils.sAddBatch(keys, members, Constants.REDIS_KEY_EXPIRE_ONE_DAY);
+    }
+
+    /**
+     * 撤销弹幕已处理标记（落库失败、消息重新入队时调用）
+     */
+    public void releaseDanmuProcessed(List<VideoDanmuTaskDTO> danmuList) {
+        List<String> keys = new ArrayList<>(danmuList.size());
+        List<String> members = new ArrayList<>(danmuList.size());
+        buildDanmuProcessedKeys(danmuList, keys, members);
+        redisUtils.sRemBatch(keys, members);
+    }
+
+    private void buildDanmuProcessedKeys(List<VideoDanmuTaskDTO> danmuList, List<String> keys, List<String> members) {
+        for (VideoDanmuTaskDTO danmu : danmuList) {
+            keys.add(Constants.REDIS_KEY_DANMU_PROCESSED + DateUtil.format(danmu.getPostTime(), DateTimePatternEnum.YYYYMMDDHH.getPattern()));
+            members.add(danmu.getFileId() + ":" + danmu.getUserId() + ":" + danmu.getPostTime().getTime());
+        }
+    }
+
+    /**
+     * 保存转码排队信息（调度器每个周期刷新，过期时间较短，节点宕机后自然消失）
+     */
+    public void saveTransferQueueInfo(TransferQueueInfoDto queueInfoDto) {
+        redisUtils.setex(Constants.REDIS_KEY_TRANSFER_QUEUE_INFO + queueInfoDto.getFileId(), queueInfoDto, Constants.REDIS_KEY_EXPIRE_ONE_MIN);
+    }
+
+    public TransferQueueInfoDto getTransferQueueInfo(String fileId) {
+        return (TransferQueueInfoDto) redisUtils.get(Constants.REDIS_KEY_TRANSFER_QUEUE_INFO + fileId);
+    }
+
+    public void delTransferQueueInfo(String fileId) {
+        redisUtils.delete(Constants.REDIS_KEY_TRANSFER_QUEUE_INFO + fileId);
+    }
+
+    /**
+     * 保存转码进度并推送给该用户所在的 web 实例
+     */
+    public void saveTransferProgress(String userId, TransferProgressDto progressDto) {
+        redisUtils.setex(Constants.REDIS_KEY_TRANSFER_PROGRESS + progressDto.getFileId(), progressDto, Constants.REDIS_KEY_EXPIRE_ONE_MIN);
+        publishTransferProgress(userId, progressDto);
+    }
+
+    /**
+     * 只推送不保存（转码结束时推送最终状态）
+     */
+    public void publishTransferProgress(String userId, TransferProgressDto progressDto) {
+        redisUtils.publish(Constants.REDIS_CHANNEL_TRANSFER_PROGRESS + userId, JsonUtils.convertObj2Json(progressDto));
+    }
+
+    public TransferProgressDto getTransferProgress(String fileId) {
+        return (TransferProgressDto) redisUtils.get(Constants.REDIS_KEY_TRANSFER_PROGRESS + fileId);
+    }
+
+    public void delTransferProgress(String fileId) {
+        redisUtils.delete(Constants.REDIS_KEY_TRANSFER_PROGRESS + fileId);
+    }
 }
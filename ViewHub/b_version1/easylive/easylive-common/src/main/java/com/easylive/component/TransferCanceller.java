@@ -0,0 +1,92 @@
+package com.easylive.component;
+
+import com.easylive.entity.constant.Constants;
+import com.easylive.redis.RedisUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 取消正在进行的转码（删除稿件、删除上传时调用）
+ *
+ * 转码在消费转码任务的实例上运行，不一定是处理删除请求的实例（管理端删除时一定不是），
+ * 本机直接结束对应的 ffmpeg 进程，并通过 Redis Pub/Sub 通知其他实例
+ * 被取消的转码以失败结束，稿件或分P已删除，之后的重试任务会直接跳过
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TransferCanceller implements MessageListener {
+
+    private final ProcessExecutor processExecutor;
+
+    private final RedisUtils<Object> redisUtils;
+
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(Constants.REDIS_CHANNEL_TRANSFER_CANCEL));
+    }
+
+    /**
+     * 转码任务标识（转码命令传给 ProcessExecutor 的 taskKey），和各实例的目录配置无关
+     */
+    public static String getTaskKey(String userId, String uploadId) {
+        return userId + uploadId;
+    }
+
+    /**
+     * 取消转码；在事务中调用时等事务提交后再取消，事务回滚时转码继续
+     *
+     * @param taskKeys getTaskKey 生成的任务标识
+     */
+    public void cancel(Collection<String> taskKeys) {
+        if (taskKeys == null || taskKeys.isEmpty()) {
+            return;
+        }
+        List<String> taskKeyList = new ArrayList<>(taskKeys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doCancel(taskKeyList);
+                }
+            });
+            return;
+        }
+        doCancel(taskKeyList);
+    }
+
+    private void doCancel(List<String> taskKeyList) {
+        for (String taskKey : taskKeyList) {
+            processExecutor.cancel(taskKey);
+            //发布失败时只记录日志（RedisUtils.publish 内部处理），其他实例上的转码继续到结束
+            redisUtils.publish(Constants.REDIS_CHANNEL_TRANSFER_CANCEL, taskKey);
+        }
+    }
+
+    /**
+     * 取消通知（包括本机发出的，本机已经取消过，再取消一次没有影响）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            processExecutor.cancel(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.error("处理取消转码消息失败", e);
+        }
+    }
+}
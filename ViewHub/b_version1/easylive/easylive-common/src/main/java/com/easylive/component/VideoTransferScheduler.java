@@ -0,0 +1,338 @@
+package com.easylive.component;
+
+import com.easylive.entity.config.AppConfig;
+import com.easylive.entity.dto.TransferQueueInfoDto;
+import com.easylive.entity.enums.TransferLaneEnum;
+import com.easylive.entity.po.VideoInfoFilePost;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 视频转码调度器
+ *
+ * 职责：决定排队中的转码任务谁先执行、同时执行几个
+ *
+ * 调度策略：
+ * 1. 优先级通道：短视频 > 普通视频 > 重新转码（TransferLaneEnum）
+ * 2. 同一通道内按用户公平调度：优先选当前正在转码任务最少的用户，其次按入队时间
+ *    （一个用户一次上传 50 个分P，也不会堵住其他人的单个视频）
+ * 3. 并发数自适应：在 [transfer.concurrency.min, transfer.concurrency.max] 之间，
+ *    按系统负载（loadAverage / CPU核数）与正在运行的 ffmpeg 进程数每隔几秒调整一次
+ *
+ * 排队信息：每个调度周期把每个任务的排队位置和预计完成时间写入 Redis，供创作中心查询
+ *
+ * 注意：任务只存在于本进程内存中，持久化依赖 MQ —— 消费者在任务执行完成后才 ACK，进程宕机后消息会重新投递
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class VideoTransferScheduler {
+
+    // 调整并发数 / 刷新排队信息的周期（毫秒）
+    private static final long TICK_INTERVAL = 2000L;
+    // 每核负载高于该值时降低并发，低于 LOAD_LOW 且有任务排队时提高并发
+    private static final double LOAD_HIGH = 0.85;
+    private static final double LOAD_LOW = 0.6;
+    // 没有历史数据时假定的单个任务转码耗时（毫秒）
+    private static final long DEFAULT_TASK_DURATION = 120 * 1000L;
+
+    private final AppConfig appConfig;
+
+    private final RedisComponent redisComponent;
+
+    private final ProcessExecutor processExecutor;
+
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+
+    // 通道 -> (用户 -> 该用户排队中的任务)
+    private final Map<TransferLaneEnum, LinkedHashMap<String, Deque<TransferTask>>> laneQueues = new HashMap<>();
+
+    // fileId -> 任务（排队中 + 执行中），用于去重与查询
+    private final Map<String, TransferTask> taskMap = new HashMap<>();
+
+    // 用户 -> 正在执行的任务数
+    private final Map<String, Integer> runningPerUser = new HashMap<>();
+
+    private int runningCount = 0;
+
+    private final AtomicInteger concurrencyLimit = new AtomicInteger();
+
+    // 单个任务耗时的指数移动平均（毫秒）
+    private volatile long avgTaskDuration = DEFAULT_TASK_DURATION;
+
+    private ExecutorService workerPool;
+
+    private ScheduledExecutorService tickExecutor;
+
+    @PostConstruct
+    public void init() {
+        for (TransferLaneEnum lane : TransferLaneEnum.values()) {
+            laneQueues.put(lane, new LinkedHashMap<>());
+        }
+        concurrencyLimit.set(appConfig.getTransferConcurrencyMin());
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(appConfig.getTransferConcurrencyMax(), r -> new Thread(r, "video-transfer-" + threadIndex.incrementAndGet()));
+        tickExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "video-transfer-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tickExecutor.scheduleWithFixedDelay(this::tick, TICK_INTERVAL, TICK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        tickExecutor.shutdownNow();
+        workerPool.shutdown();
+    }
+
+    /**
+     * 提交转码任务
+     *
+     * @param file       转码文件信息
+     * @param lane       调度通道
+     * @param job        转码逻辑
+     * @param onComplete 执行结束回调（true 成功 / false 失败），用于 ACK/NACK MQ 消息
+     */
+    public void submit(VideoInfoFilePost file, TransferLaneEnum lane, Runnable job, Consumer<Boolean> onComplete) {
+        synchronized (this) {
+            TransferTask existing = taskMap.get(file.getFileId());
+            if (existing != null) {
+                // 同一文件重复投递（例如消费者通道重建后 MQ 重投）：只换成新消息的回调，旧消息已无法 ACK
+                log.warn("转码任务已在调度中，更新确认回调, fileId={}", file.getFileId());
+                existing.onComplete = onComplete;
+                return;
+            }
+            TransferTask task = new TransferTask(file, lane, job, onComplete);
+            taskMap.put(file.getFileId(), task);
+            laneQueues.get(lane).computeIfAbsent(file.getUserId(), k -> new ArrayDeque<>()).addLast(task);
+            log.info("转码任务入队, fileId={}, userId={}, lane={}, 排队数={}", file.getFileId(), file.getUserId(), lane, taskMap.size() - runningCount);
+        }
+        dispatch();
+        publishQueueInfo();
+    }
+
+    /**
+     * 当前并发上限
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit.get();
+    }
+
+    /**
+     * 启动任务直到达到并发上限
+     */
+    private void dispatch() {
+        while (true) {
+            TransferTask task;
+            synchronized (this) {
+                if (runningCount >= concurrencyLimit.get()) {
+                    return;
+                }
+                task = pollNext();
+                if (task == null) {
+                    return;
+                }
+                runningCount++;
+                runningPerUser.merge(task.file.getUserId(), 1, Integer::sum);
+                task.startTime = System.currentTimeMillis();
+            }
+            final TransferTask runTask = task;
+            workerPool.execute(() -> execute(runTask));
+        }
+    }
+
+    private void execute(TransferTask task) {
+        boolean success = false;
+        try {
+            task.job.run();
+            success = true;
+        } catch (Exception e) {
+            log.error("转码任务执行失败, fileId={}", task.file.getFileId(), e);
+        } finally {
+            long duration = System.currentTimeMillis() - task.startTime;
+            avgTaskDuration = (avgTaskDuration * 4 + duration) / 5;
+            Consumer<Boolean> onComplete;
+            synchronized (this) {
+                runningCount--;
+                runningPerUser.computeIfPresent(task.file.getUserId(), (k, v) -> v > 1 ? v - 1 : null);
+                taskMap.remove(task.file.getFileId());
+                onComplete = task.onComplete;
+            }
+            redisComponent.delTransferQueueInfo(task.file.getFileId());
+            try {
+                onComplete.accept(success);
+            } catch (Exception e) {
+                log.error("转码任务完成回调失败, fileId={}", task.file.getFileId(), e);
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * 按通道优先级 + 用户公平取下一个任务（调用方持有锁）
+     */
+    private TransferTask pollNext() {
+        for (TransferLaneEnum lane : TransferLaneEnum.values()) {
+            LinkedHashMap<String, Deque<TransferTask>> userQueues = laneQueues.get(lane);
+            String chosenUser = null;
+            for (Map.Entry<String, Deque<TransferTask>> entry : userQueues.entrySet()) {
+                if (chosenUser == null || compareUser(entry.getKey(), entry.getValue(), chosenUser, userQueues.get(chosenUser)) < 0) {
+                    chosenUser = entry.getKey();
+                }
+            }
+            if (chosenUser == null) {
+                continue;
+            }
+            Deque<TransferTask> deque = userQueues.get(chosenUser);
+            TransferTask task = deque.pollFirst();
+            if (deque.isEmpty()) {
+                userQueues.remove(chosenUser);
+            }
+            return task;
+        }
+        return null;
+    }
+
+    private int compareUser(String userA, Deque<TransferTask> queueA, String userB, Deque<TransferTask> queueB) {
+        int runningA = runningPerUser.getOrDefault(userA, 0);
+        int runningB = runningPerUser.getOrDefault(userB, 0);
+        if (runningA != runningB) {
+            return Integer.compare(runningA, runningB);
+        }
+        return Long.compare(queueA.peekFirst().enqueueTime, queueB.peekFirst().enqueueTime);
+    }
+
+    /**
+     * 周期任务：调整并发数、刷新排队信息
+     */
+    private void tick() {
+        try {
+            adjustConcurrency();
+            dispatch();
+            publishQueueInfo();
+        } catch (Exception e) {
+            log.error("转码调度周期任务失败", e);
+        }
+    }
+
+    private void adjustConcurrency() {
+        int min = appConfig.getTransferConcurrencyMin();
+        int max = appConfig.getTransferConcurrencyMax();
+        int limit = concurrencyLimit.get();
+        int waiting;
+        int running;
+        synchronized (this) {
+            waiting = taskMap.size() - runningCount;
+            running = runningCount;
+        }
+        double loadAverage = osBean.getSystemLoadAverage();
+        double loadPerCore = loadAverage < 0 ? -1 : loadAverage / osBean.getAvailableProcessors();
+        // 除转码任务外还有其他 ffmpeg 进程（如封面缩略图）在跑
+        int otherProcesses = Math.max(0, processExecutor.getActiveProcessCount() - running);
+
+        int newLimit = limit;
+        if (loadPerCore > LOAD_HIGH || limit + otherProcesses > max) {
+            newLimit = Math.max(min, limit - 1);
+        } else if (waiting > 0 && running >= limit && (loadPerCore < 0 || loadPerCore < LOAD_LOW)) {
+            newLimit = Math.min(max, limit + 1);
+        }
+        if (newLimit != limit) {
+            concurrencyLimit.set(newLimit);
+            log.info("转码并发数调整 {} -> {}, loadPerCore={}, 其他ffmpeg进程={}, 排队={}", limit, newLimit, loadPerCore, otherProcesses, waiting);
+        }
+    }
+
+    /**
+     * 计算每个任务的排队位置与预计完成时间并写入 Redis
+     * 排队顺序模拟调度策略：通道优先，同通道内各用户轮流（按用户内序号、再按入队时间）
+     */
+    private void publishQueueInfo() {
+        List<TransferQueueInfoDto> infoList = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        long avg = avgTaskDuration;
+        int limit = Math.max(1, concurrencyLimit.get());
+        synchronized (this) {
+            for (TransferTask task : taskMap.values()) {
+                if (task.startTime > 0) {
+                    infoList.add(buildInfo(task, TransferQueueInfoDto.STATUS_RUNNING, 0, Math.max(0, avg - (now - task.startTime)) / 1000));
+                }
+            }
+            int position = 0;
+            for (TransferLaneEnum lane : TransferLaneEnum.values()) {
+                List<long[]> order = new ArrayList<>();
+                List<TransferTask> tasks = new ArrayList<>();
+                for (Deque<TransferTask> deque : laneQueues.get(lane).values()) {
+                    int userIndex = 0;
+                    for (Iterator<TransferTask> it = deque.iterator(); it.hasNext(); ) {
+                        TransferTask task = it.next();
+                        order.add(new long[]{userIndex++, task.enqueueTime, tasks.size()});
+                        tasks.add(task);
+                    }
+                }
+                order.sort(Comparator.<long[]>comparingLong(o -> o[0]).thenComparingLong(o -> o[1]));
+                for (long[] o : order) {
+                    TransferTask task = tasks.get((int) o[2]);
+                    long eta = (position / limit + 1) * avg;
+                    infoList.add(buildInfo(task, TransferQueueInfoDto.STATUS_WAITING, position, eta / 1000));
+                    position++;
+                }
+            }
+        }
+        for (TransferQueueInfoDto info : infoList) {
+            redisComponent.saveTransferQueueInfo(info);
+        }
+    }
+
+    private TransferQueueInfoDto buildInfo(TransferTask task, Integer status, int position, long etaSeconds) {
+        TransferQueueInfoDto info = new TransferQueueInfoDto();
+        info.setFileId(task.file.getFileId());
+        info.setUploadId(task.file.getUploadId());
+        info.setVideoId(task.file.getVideoId());
+        info.setLane(task.lane.getLane());
+        info.setStatus(status);
+        info.setPosition(position);
+        info.setEtaSeconds(etaSeconds);
+        return info;
+    }
+
+    /**
+     * 调度中的转码任务
+     */
+    private static class TransferTask {
+        private final VideoInfoFilePost file;
+        private final TransferLaneEnum lane;
+        private final Runnable job;
+        private final long enqueueTime = System.currentTimeMillis();
+        private volatile Consumer<Boolean> onComplete;
+        private volatile long startTime;
+
+        TransferTask(VideoInfoFilePost file, TransferLaneEnum lane, Runnable job, Consumer<Boolean> onComplete) {
+            this.file = file;
+            this.lane = lane;
+            this.job = job;
+            this.onComplete = onComplete;
+        }
+    }
+}
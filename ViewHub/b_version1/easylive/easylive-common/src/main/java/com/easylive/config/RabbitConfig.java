@@ -5,7 +5,9 @@ import org.springframework.amqp.core.*;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -106,8 +108,9 @@ public class RabbitConfig {
      * 配置死信队列参数：
      * - x-dead-letter-exchange: 死信交换机名称
      * - x-dead-letter-routing-key: 死信路由键
-     * - x-message-ttl: 消息过期时间（毫秒），超过时间未消费则进入死信队列（可选）
-     * - x-max-retries: 最大重试次数（可选，通过header实现）
+     *
+     * 不设置 x-message-ttl：排队久的转码任务是正常现象（由 VideoTransferScheduler 调度），不应被判为失败；
+     * 失败重试走下方的延迟重试队列，只有不可重试或重试耗尽的任务才进入死信队列
      */
     @Bean
     public Queue videoTransferQueue() {
@@ -116,9 +119,7 @@ public class RabbitConfig {
         args.put("x-dead-letter-exchange", Constants.RABBITMQ_EXCHANGE_VIDEO_TRANSFER_DLX);
         // 设置死信路由键
         args.put("x-dead-letter-routing-key", Constants.RABBITMQ_ROUTING_KEY_VIDEO_TRANSFER_DLX);
-        // 设置消息过期时间：30分钟（转码任务超时）
-        args.put("x-message-ttl", 30 * 60 * 1000);
-        
+
         return QueueBuilder.durable(Constants.RABBITMQ_QUEUE_VIDEO_TRANSFER)
             .withArguments(args)
             .build();
@@ -134,6 +135,31 @@ public class RabbitConfig {
             .with(Constants.RABBITMQ_ROUTING_KEY_VIDEO_TRANSFER);
     }
 
+    /**
+     * 转码延迟重试：一个重试交换机 + 每次重试一个延迟队列
+     * 延迟队列没有消费者，消息 TTL（RABBITMQ_TRANSFER_RETRY_DELAYS[N-1]）到期后死信回转码主交换机重新转码
+     * 每个队列只有一个固定 TTL，不会出现短 TTL 消息被长 TTL 消息挡在队头的问题
+     */
+    @Bean
+    public Declarables videoTransferRetryDeclarables() {
+        List<Declarable> declarables = new ArrayList<>();
+        DirectExchange retryExchange = new DirectExchange(Constants.RABBITMQ_EXCHANGE_VIDEO_TRANSFER_RETRY, true, false);
+        declarables.add(retryExchange);
+        for (int i = 0; i < Constants.RABBITMQ_TRANSFER_RETRY_DELAYS.length; i++) {
+            int retryCount = i + 1;
+            Queue retryQueue = QueueBuilder.durable(Constants.RABBITMQ_QUEUE_VIDEO_TRANSFER_RETRY_PREFIX + retryCount)
+                .ttl((int) Constants.RABBITMQ_TRANSFER_RETRY_DELAYS[i])
+                .deadLetterExchange(Constants.RABBITMQ_EXCHANGE_VIDEO_TRANSFER)
+                .deadLetterRoutingKey(Constants.RABBITMQ_ROUTING_KEY_VIDEO_TRANSFER)
+                .build();
+            declarables.add(retryQueue);
+            declarables.add(BindingBuilder.bind(retryQueue)
+                .to(retryExchange)
+                .with(Constants.RABBITMQ_ROUTING_KEY_VIDEO_TRANSFER_RETRY_PREFIX + retryCount));
+        }
+        return new Declarables(declarables);
+    }
+
     // ========== 弹幕队列 ==========
     
     /**
@@ -163,5 +189,21 @@ public class RabbitConfig {
             .to(videoDanmuExchange)
             .with(Constants.RABBITMQ_ROUTING_KEY_VIDEO_DANMU);
     }
+
+    /**
+     * 弹幕延迟重试：和转码重试相同的方式，延迟队列没有消费者，
+     * 消息 TTL（RABBITMQ_DANMU_RETRY_DELAY）到期后死信回弹幕主交换机重新消费
+     */
+    @Bean
+    public Declarables videoDanmuRetryDeclarables() {
+        DirectExchange retryExchange = new DirectExchange(Constants.RABBITMQ_EXCHANGE_VIDEO_DANMU_RETRY, true, false);
+        Queue retryQueue = QueueBuilder.durable(Constants.RABBITMQ_QUEUE_VIDEO_DANMU_RETRY)
+            .ttl(Constants.RABBITMQ_DANMU_RETRY_DELAY)
+            .deadLetterExchange(Constants.RABBITMQ_EXCHANGE_VIDEO_DANMU)
+            .deadLetterRoutingKey(Constants.RABBITMQ_ROUTING_KEY_VIDEO_DANMU)
+            .build();
+        return new Declarables(retryExchange, retryQueue,
+            BindingBuilder.bind(retryQueue).to(retryExchange).with(Constants.RABBITMQ_ROUTING_KEY_VIDEO_DANMU_RETRY));
+    }
 }
 
@@ -16,6 +16,7 @@ import javax.annotation.Resource;
  * 1. Producer Confirm：确认消息是否到达交换机
  * 2. Returns Callback：处理无法路由的消息
  * 3. 重点处理转码任务（关键业务）
+ * 4. 这里只负责统一记录日志，NACK 后的重发由 AsyncMessagePublisher 通过 CorrelationData 的 Future 处理
  */
 @Configuration
 @Slf4j
@@ -0,0 +1,95 @@
+package com.easylive.config;
+
+import com.easylive.entity.constant.Constants;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RabbitMQ 监听容器配置
+ *
+ * 默认容器（rabbitListenerContainerFactory）由 Spring Boot 根据 spring.rabbitmq.listener.simple 自动配置，
+ * 这里只声明需要特殊消费方式的容器。
+ */
+@Configuration
+public class RabbitListenerConfig {
+
+    /**
+     * 弹幕批量消费容器
+     *
+     * - consumerBatchEnabled：由容器攒批，监听方法一次拿到一整批消息（List）
+     * - batchSize：攒够 N 条立即交付
+     * - receiveTimeout：超过该时间没有新消息就把不满一批的消息交付，保证安静的频道也能及时落库
+     * - MANUAL：整批写库提交后再由监听方法一次性 ACK
+     * - prefetch 不小于 batchSize，否则一批永远攒不满
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory danmuBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(Constants.RABBITMQ_DANMU_BATCH_SIZE);
+        factory.setReceiveTimeout(Constants.RABBITMQ_DANMU_RECEIVE_TIMEOUT);
+        factory.setPrefetchCount(Constants.RABBITMQ_DANMU_BATCH_SIZE * 2);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * 用户消息批量消费容器（配置同弹幕批量消费容器）
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory userMessageBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(Constants.RABBITMQ_USER_MESSAGE_BATCH_SIZE);
+        factory.setReceiveTimeout(Constants.RABBITMQ_USER_MESSAGE_RECEIVE_TIMEOUT);
+        factory.setPrefetchCount(Constants.RABBITMQ_USER_MESSAGE_BATCH_SIZE * 2);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * 播放统计批量消费容器（配置同弹幕批量消费容器）
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory playBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(Constants.RABBITMQ_PLAY_BATCH_SIZE);
+        factory.setReceiveTimeout(Constants.RABBITMQ_PLAY_RECEIVE_TIMEOUT);
+        factory.setPrefetchCount(Constants.RABBITMQ_PLAY_BATCH_SIZE * 2);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * 视频转码消费容器
+     *
+     * - 单个消费者只负责把消息交给 VideoTransferScheduler，真正的并发由调度器控制
+     * - prefetch 放大：调度器要看到足够多的排队任务才能按优先级和用户公平地挑选
+     * - MANUAL：转码执行结束后由调度器回调 ACK/NACK
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory transferContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(Constants.RABBITMQ_TRANSFER_PREFETCH);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+}
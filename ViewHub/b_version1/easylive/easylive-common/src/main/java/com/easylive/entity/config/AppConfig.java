@@ -19,6 +19,151 @@ public class AppConfig {
     @Value("${showFFmpegLog:true}")
     private Boolean showFFmpegLog;
 
+    @Value("${transfer.concurrency.min:2}")
+    private Integer transferConcurrencyMin;
+
+    @Value("${transfer.concurrency.max:5}")
+    private Integer transferConcurrencyMax;
+
+    @Value("${transfer.shortVideoSizeMb:100}")
+    private Integer transferShortVideoSizeMb;
+
+    // HLS 多码率档位，格式 高度:视频码率kbps，逗号分隔；为空则只生成原画单码率（直接拷贝视频流）
+    @Value("${transfer.hls.ladder:1080:5000,720:2800,480:1400,360:800}")
+    private String transferHlsLadder;
+
+    // 多码率输出时的音频码率 kbps
+    @Value("${transfer.hls.audioBitrate:128}")
+    private Integer transferHlsAudioBitrate;
+
+    // 拖动进度条预览图的截图间隔（秒），0 表示不生成
+    @Value("${transfer.preview.intervalSeconds:5}")
+    private Integer transferPreviewIntervalSeconds;
+
+    // 预览图宽度（像素），高度按原视频比例计算
+    @Value("${transfer.preview.width:160}")
+    private Integer transferPreviewWidth;
+
+    // 封面缩略图宽度（像素），逗号分隔；第一个为默认尺寸，输出为 原文件名_thumbnail.jpg
+    @Value("${image.thumbnail.widths:200}")
+    private String imageThumbnailWidths;
+
+    // 是否同时输出 WebP 缩略图
+    @Value("${image.thumbnail.webp:false}")
+    private Boolean imageThumbnailWebp;
+
+    // 图片处理线程数（解码、缩放都是 CPU 密集型）
+    @Value("${image.pool.threads:4}")
+    private Integer imagePoolThreads;
+
+    // 图片处理排队上限，超出时直接返回繁忙
+    @Value("${image.pool.queueSize:64}")
+    private Integer imagePoolQueueSize;
+
+    // 按宽度动态生成的图片（getResource?width=）：开关 / 宽度档位（像素，请求宽度向上取到最近的档位，超过最大档位返回原图）/ 磁盘缓存总大小（MB）
+    @Value("${image.variant.enabled:true}")
+    private Boolean imageVariantEnabled;
+
+    @Value("${image.variant.widths:160,320,480,640,960,1280}")
+    private String imageVariantWidths;
+
+    @Value("${image.variant.maxSizeMb:1024}")
+    private Integer imageVariantMaxSizeMb;
+
+    // 对象存储（storage.type=s3 时使用），S3 兼容的 endpoint，例如 http://127.0.0.1:9000
+    @Value("${storage.s3.endpoint:}")
+    private String storageS3Endpoint;
+
+    @Value("${storage.s3.region:us-east-1}")
+    private String storageS3Region;
+
+    @Value("${storage.s3.bucket:easylive}")
+    private String storageS3Bucket;
+
+    @Value("${storage.s3.accessKey:}")
+    private String storageS3AccessKey;
+
+    @Value("${storage.s3.secretKey:}")
+    private String storageS3SecretKey;
+
+    // 超过该大小（MB）的文件使用分片上传，也是每个分片的大小
+    @Value("${storage.s3.partSizeMb:8}")
+    private Integer storageS3PartSizeMb;
+
+    // 并发上传 / 服务端复制的线程数
+    @Value("${storage.s3.uploadThreads:8}")
+    private Integer storageS3UploadThreads;
+
+    // 后台删除媒体文件的限速（每秒删除的文件数），避免大批量删除占满磁盘 IO 影响播放
+    @Value("${storage.delete.filesPerSecond:200}")
+    private Integer storageDeleteFilesPerSecond;
+
+    // 每次从删除队列取出的任务数
+    @Value("${storage.delete.batchSize:20}")
+    private Integer storageDeleteBatchSize;
+
+    // 删除失败的最大重试次数，超过后任务置为失败
+    @Value("${storage.delete.maxRetry:10}")
+    private Integer storageDeleteMaxRetry;
+
+    // 热门 HLS 文件内存缓存：开关 / 总大小（MB）/ 单个文件大小上限（MB）/ 一分钟内请求多少次才放入缓存
+    @Value("${media.cache.enabled:true}")
+    private Boolean mediaCacheEnabled;
+
+    @Value("${media.cache.maxSizeMb:256}")
+    private Integer mediaCacheMaxSizeMb;
+
+    @Value("${media.cache.maxFileSizeMb:8}")
+    private Integer mediaCacheMaxFileSizeMb;
+
+    @Value("${media.cache.hotThreshold:3}")
+    private Integer mediaCacheHotThreshold;
+
+    // 较大的媒体文件使用 Servlet 异步输出，慢速客户端不占用请求线程
+    @Value("${media.async.enabled:true}")
+    private Boolean mediaAsyncEnabled;
+
+    // 媒体文件交给反向代理输出：开关 / 响应头（X-Accel-Redirect 或 X-Sendfile）/ nginx internal location 前缀 / 签名密钥（和 nginx secure_link_md5 中的一致）
+    @Value("${media.offload.enabled:false}")
+    private Boolean mediaOffloadEnabled;
+
+    @Value("${media.offload.header:X-Accel-Redirect}")
+    private String mediaOffloadHeader;
+
+    @Value("${media.offload.prefix:/media-internal/}")
+    private String mediaOffloadPrefix;
+
+    @Value("${media.offload.secret:}")
+    private String mediaOffloadSecret;
+
+    // 同时运行的 ffmpeg 转码进程数上限
+    @Value("${process.maxConcurrent:8}")
+    private Integer processMaxConcurrent;
+
+    // 同时运行的 ffprobe、生成缩略图等短命令进程数上限（和转码分开计数，不会排在转码后面）
+    @Value("${process.shortMaxConcurrent:4}")
+    private Integer processShortMaxConcurrent;
+
+    // ffprobe、生成缩略图等短命令的超时时间（秒）
+    @Value("${process.timeout.probeSeconds:60}")
+    private Integer processProbeTimeoutSeconds;
+
+    // 视频转码命令的超时时间（分钟）
+    @Value("${process.timeout.transcodeMinutes:180}")
+    private Integer processTranscodeTimeoutMinutes;
+
+    // 弹幕、播放统计消息使用二进制格式；默认关闭，所有实例的消费者都升级（能解码二进制消息）后再开启
+    @Value("${mq.binaryCodec.enabled:false}")
+    private Boolean mqBinaryCodecEnabled;
+
+    // 二进制消息发送时，同一队列的多条记录合并成一条 AMQP 消息
+    @Value("${mq.binaryCodec.batchSize:50}")
+    private Integer mqBinaryCodecBatchSize;
+
+    // 需要登录的 WebSocket（转码进度）允许的前端来源，逗号分隔，支持 Spring 的 origin pattern（如 https://*.example.com、http://localhost:[*]）
+    @Value("${ws.allowedOrigins:http://localhost:[*],http://127.0.0.1:[*]}")
+    private String wsAllowedOrigins;
+
     @Value("${es.host.port:127.0.0.1:9200}")
     private String esHostPort;
 
@@ -62,4 +207,164 @@ public class AppConfig {
     public String getEsIndexVideoName() {
         return esIndexVideoName;
     }
+
+    public Integer getTransferConcurrencyMin() {
+        return transferConcurrencyMin;
+    }
+
+    public Integer getTransferConcurrencyMax() {
+        return transferConcurrencyMax;
+    }
+
+    public Integer getTransferShortVideoSizeMb() {
+        return transferShortVideoSizeMb;
+    }
+
+    public Integer getProcessMaxConcurrent() {
+        return processMaxConcurrent;
+    }
+
+    public Integer getProcessShortMaxConcurrent() {
+        return processShortMaxConcurrent;
+    }
+
+    public Integer getProcessProbeTimeoutSeconds() {
+        return processProbeTimeoutSeconds;
+    }
+
+    public Integer getProcessTranscodeTimeoutMinutes() {
+        return processTranscodeTimeoutMinutes;
+    }
+
+    public String getTransferHlsLadder() {
+        return transferHlsLadder;
+    }
+
+    public Integer getTransferHlsAudioBitrate() {
+        return transferHlsAudioBitrate;
+    }
+
+    public Integer getTransferPreviewIntervalSeconds() {
+        return transferPreviewIntervalSeconds;
+    }
+
+    public Integer getTransferPreviewWidth() {
+        return transferPreviewWidth;
+    }
+
+    public String getImageThumbnailWidths() {
+        return imageThumbnailWidths;
+    }
+
+    public Boolean getImageThumbnailWebp() {
+        return imageThumbnailWebp;
+    }
+
+    public Integer getImagePoolThreads() {
+        return imagePoolThreads;
+    }
+
+    public Integer getImagePoolQueueSize() {
+        return imagePoolQueueSize;
+    }
+
+    public Boolean getImageVariantEnabled() {
+        return imageVariantEnabled;
+    }
+
+    public String getImageVariantWidths() {
+        return imageVariantWidths;
+    }
+
+    public Integer getImageVariantMaxSizeMb() {
+        return imageVariantMaxSizeMb;
+    }
+
+    public String getStorageS3Endpoint() {
+        return storageS3Endpoint;
+    }
+
+    public String getStorageS3Region() {
+        return storageS3Region;
+    }
+
+    public String getStorageS3Bucket() {
+        return storageS3Bucket;
+    }
+
+    public String getStorageS3AccessKey() {
+        return storageS3AccessKey;
+    }
+
+    public String getStorageS3SecretKey() {
+        return storageS3SecretKey;
+    }
+
+    public Integer getStorageS3PartSizeMb() {
+        return storageS3PartSizeMb;
+    }
+
+    public Integer getStorageS3UploadThreads() {
+        return storageS3UploadThreads;
+    }
+
+    public Boolean getMediaCacheEnabled() {
+        return mediaCacheEnabled;
+    }
+
+    public Integer getMediaCacheMaxSizeMb() {
+        return mediaCacheMaxSizeMb;
+    }
+
+    public Integer getMediaCacheMaxFileSizeMb() {
+        return mediaCacheMaxFileSizeMb;
+    }
+
+    public Integer getMediaCacheHotThreshold() {
+        return mediaCacheHotThreshold;
+    }
+
+    public Boolean getMediaAsyncEnabled() {
+        return mediaAsyncEnabled;
+    }
+
+    public Boolean getMediaOffloadEnabled() {
+        return mediaOffloadEnabled;
+    }
+
+    public String getMediaOffloadHeader() {
+        return mediaOffloadHeader;
+    }
+
+    public String getMediaOffloadPrefix() {
+        return mediaOffloadPrefix;
+    }
+
+    public String getMediaOffloadSecret() {
+        return mediaOffloadSecret;
+    }
+
+    public Integer getStorageDeleteFilesPerSecond() {
+        return storageDeleteFilesPerSecond;
+    }
+
+    public Integer getStorageDeleteBatchSize() {
+        return storageDeleteBatchSize;
+    }
+
+    public Integer getStorageDeleteMaxRetry() {
+        return storageDeleteMaxRetry;
+    }
+
+    public Boolean getMqBinaryCodecEnabled() {
+        return mqBinaryCodecEnabled;
+    }
+
+    public Integer getMqBinaryCodecBatchSize() {
+        return mqBinaryCodecBatchSize;
+    }
+
+    public String[] getWsAllowedOrigins() {
+        return wsAllowedOrigins.trim().split("\\s*,\\s*");
+    }
 }
@@ -45,8 +45,41 @@ public class Constants {
 
     public static final String IMAGE_THUMBNAIL_SUFFIX = "_thumbnail.jpg";
 
+    // 其他尺寸、格式的缩略图：原文件名 + _thumbnail_{宽度}.{格式}（默认宽度的 WebP 为 _thumbnail.webp）
+    public static final String IMAGE_THUMBNAIL_NAME = "_thumbnail";
+
+    public static final String IMAGE_FORMAT_JPG = "jpg";
+
+    public static final String IMAGE_FORMAT_WEBP = "webp";
+
+    // 按宽度动态生成的图片缓存目录（项目目录下，不在 file/ 中）；文件名为 原文件名 + _w{宽度}.jpg
+    public static final String IMAGE_VARIANT_FOLDER = "variant/";
+
+    public static final String IMAGE_VARIANT_NAME = "_w";
+
+    // 可以生成其他宽度的原图格式（只处理 cover/ 下的图片；GIF 可能是动图，不处理）
+    public static final String[] IMAGE_VARIANT_SOURCE_SUFFIXES = {".jpg", ".jpeg", ".png", ".webp", ".bmp"};
+
+    // 生成中的临时文件名包含该标记，启动时清理
+    public static final String IMAGE_VARIANT_TEMP_MARK = ".tmp.";
+
     public static final String REDIS_KEY_UP_LOADING_FILE = REDIS_KEY_PREFIX +"uploading:";
 
+    // 分片上传：已收到分片的位图（第 i 位为 1 表示分片 i 已上传）
+    public static final String REDIS_KEY_UP_LOADING_CHUNKS = REDIS_KEY_PREFIX + "uploading:chunks:";
+
+    // 分片上传：已收到的字节数
+    public static final String REDIS_KEY_UP_LOADING_SIZE = REDIS_KEY_PREFIX + "uploading:size:";
+
+    // 分片上传：各分片的 MD5（field 为分片序号），转码前用来计算文件内容哈希
+    public static final String REDIS_KEY_UP_LOADING_HASH = REDIS_KEY_PREFIX + "uploading:hash:";
+
+    // 正在写入的分片临时文件后缀
+    public static final String UPLOAD_CHUNK_PART_SUFFIX = ".part";
+
+    // 原始请求体上传分片时的读写缓冲区大小
+    public static final Integer UPLOAD_CHUNK_BUFFER_SIZE = 256 * 1024;
+
     public static final String REDIS_KEY_SYS_SETTING = REDIS_KEY_PREFIX +"sysSetting:";
 
     public static final Long MB_SIZE = 1024*1024L;
@@ -61,10 +94,41 @@ public class Constants {
 
     public static final String REDIS_KEY_QUEUE_TRANSFER = REDIS_KEY_PREFIX + "queue:transfer:";
 
+    // 转码排队信息：easylive:transfer:queue:info:{fileId}
+    public static final String REDIS_KEY_TRANSFER_QUEUE_INFO = REDIS_KEY_PREFIX + "transfer:queue:info:";
+
+    // 转码进度（fileId），转码结束后删除
+    public static final String REDIS_KEY_TRANSFER_PROGRESS = REDIS_KEY_PREFIX + "transfer:progress:";
+
+    // 转码进度推送频道（userId），web 实例订阅后通过 WebSocket 推给创作中心
+    public static final String REDIS_CHANNEL_TRANSFER_PROGRESS = REDIS_KEY_PREFIX + "transfer:progress:channel:";
+
+    // 转码进度写入 Redis / 推送的最小间隔（毫秒）
+    public static final Long TRANSFER_PROGRESS_PUBLISH_INTERVAL = 2000L;
+
     public static final String TS_NAME = "index.ts";
 
     public static final String M3U8_NAME = "index.m3u8";
 
+    // 多码率主播放列表，各档位的 index.m3u8 和切片在 {档位名}/ 子目录下
+    public static final String M3U8_MASTER_NAME = "master.m3u8";
+
+    // HLS 切片时长（秒）
+    public static final Integer HLS_SEGMENT_SECONDS = 10;
+
+    // 拖动进度条预览：WebVTT 缩略图轨道，与播放列表放在同一目录
+    public static final String PREVIEW_VTT_NAME = "thumbnails.vtt";
+
+    // 预览雪碧图文件名（sprite_000.jpg、sprite_001.jpg ...）
+    public static final String PREVIEW_SPRITE_PREFIX = "sprite_";
+
+    public static final String PREVIEW_SPRITE_NAME_PATTERN = PREVIEW_SPRITE_PREFIX + "%03d.jpg";
+
+    // 每张雪碧图的列数、行数
+    public static final Integer PREVIEW_SPRITE_COLUMNS = 10;
+
+    public static final Integer PREVIEW_SPRITE_ROWS = 10;
+
 
     //视频在线
     public static final String REDIS_KEY_VIDEO_PLAY_COUNT_ONLINE_PREFIX = REDIS_KEY_PREFIX + "video:play:online:";
@@ -116,6 +180,9 @@ public class Constants {
     public static final String RABBITMQ_EXCHANGE_VIDEO_PLAY = "video.play.exchange";
     public static final String RABBITMQ_QUEUE_VIDEO_PLAY = "video.play.queue";
     public static final String RABBITMQ_ROUTING_KEY_VIDEO_PLAY = "video.play.routing";
+    // 播放统计批量消费：每批最多消息数 / 等待下一条消息的超时时间（毫秒）
+    public static final Integer RABBITMQ_PLAY_BATCH_SIZE = 50;
+    public static final Long RABBITMQ_PLAY_RECEIVE_TIMEOUT = 1000L;
     
     // 视频转码队列
     public static final String RABBITMQ_EXCHANGE_VIDEO_TRANSFER = "video.transfer.exchange";
@@ -126,12 +193,77 @@ public class Constants {
     public static final String RABBITMQ_EXCHANGE_VIDEO_TRANSFER_DLX = "video.transfer.dlx.exchange";
     public static final String RABBITMQ_QUEUE_VIDEO_TRANSFER_DLX = "video.transfer.dlx.queue";
     public static final String RABBITMQ_ROUTING_KEY_VIDEO_TRANSFER_DLX = "video.transfer.dlx.routing";
+
+    // 视频转码延迟重试队列：第 N 次重试进入 queue.N，TTL 到期后死信回转码主队列
+    public static final String RABBITMQ_EXCHANGE_VIDEO_TRANSFER_RETRY = "video.transfer.retry.exchange";
+    public static final String RABBITMQ_QUEUE_VIDEO_TRANSFER_RETRY_PREFIX = "video.transfer.retry.queue.";
+    public static final String RABBITMQ_ROUTING_KEY_VIDEO_TRANSFER_RETRY_PREFIX = "video.transfer.retry.routing.";
+    // 每次重试前的等待时间（毫秒）：1分钟、5分钟、30分钟，数组长度即最大重试次数
+    public static final long[] RABBITMQ_TRANSFER_RETRY_DELAYS = {60 * 1000L, 5 * 60 * 1000L, 30 * 60 * 1000L};
+    // 转码失败原因最大保存长度
+    public static final Integer TRANSFER_ERROR_MAX_LENGTH = 500;
+
+    // 媒体文件输出：不小于该大小（字节）的本地文件交给 Tomcat sendfile 发送 / 从对象存储转发时的缓冲区大小
+    public static final Integer MEDIA_SENDFILE_MIN_SIZE = 48 * 1024;
+    public static final Integer MEDIA_WRITE_BUFFER_SIZE = 64 * 1024;
+    // 不小于该大小（字节）的文件异步输出 / 异步输出超时时间（毫秒）
+    public static final Integer MEDIA_ASYNC_MIN_SIZE = 64 * 1024;
+    public static final Long MEDIA_ASYNC_TIMEOUT = 5 * 60 * 1000L;
+    // 反向代理输出（X-Accel-Redirect）内部地址签名的有效期（秒）
+    public static final Integer MEDIA_OFFLOAD_SIGN_EXPIRE_SECONDS = 60;
+
+    // 热门 HLS 文件缓存：写入后过期时间（分钟）/ 访问计数最多记录的文件数 / 失效通知频道
+    public static final Integer MEDIA_CACHE_EXPIRE_MINUTES = 10;
+    public static final Integer MEDIA_CACHE_COUNTER_SIZE = 100000;
+    public static final String REDIS_CHANNEL_MEDIA_CACHE_INVALIDATION = REDIS_KEY_PREFIX + "media:cache:invalidation";
+
+    // 分P文件 fileId -> 存储路径 本地缓存：最多缓存的文件数 / 写入后过期时间（小时）/ 失效通知频道
+    public static final Integer VIDEO_FILE_PATH_CACHE_SIZE = 200000;
+    public static final Integer VIDEO_FILE_PATH_CACHE_EXPIRE_HOURS = 6;
+    public static final String REDIS_CHANNEL_VIDEO_FILE_PATH_INVALIDATION = REDIS_KEY_PREFIX + "video:file:path:invalidation";
+
+    // 取消转码通知频道（删除稿件、删除上传时通知正在转码的实例结束 ffmpeg 进程）
+    public static final String REDIS_CHANNEL_TRANSFER_CANCEL = REDIS_KEY_PREFIX + "transfer:cancel";
+
+    // 媒体文件删除队列：空闲时的轮询间隔 / 领取任务的租约时长（节点宕机后租约到期由其他节点接手）/ 失败重试的最长间隔（毫秒）
+    public static final Long MEDIA_DELETE_POLL_INTERVAL = 5000L;
+    public static final Long MEDIA_DELETE_LEASE_TIME = 10 * 60 * 1000L;
+    public static final Long MEDIA_DELETE_MAX_RETRY_DELAY = 60 * 60 * 1000L;
     
+    // 转码队列预取数：调度器最多能看到多少个排队任务（用于优先级与公平调度）
+    public static final Integer RABBITMQ_TRANSFER_PREFETCH = 100;
+
     // 弹幕队列
     public static final String RABBITMQ_EXCHANGE_VIDEO_DANMU = "video.danmu.exchange";
     public static final String RABBITMQ_QUEUE_VIDEO_DANMU = "video.danmu.queue";
     public static final String RABBITMQ_ROUTING_KEY_VIDEO_DANMU = "video.danmu.routing";
+    // 弹幕批量消费：每批最多条数 / 等待下一条消息的超时时间（毫秒，超时即提交不满一批的消息）
+    public static final Integer RABBITMQ_DANMU_BATCH_SIZE = 50;
+    public static final Long RABBITMQ_DANMU_RECEIVE_TIMEOUT = 1000L;
+    // 弹幕延迟重试队列：逐条写入仍失败的弹幕进入延迟队列，TTL（毫秒）到期后死信回弹幕主队列
+    public static final String RABBITMQ_EXCHANGE_VIDEO_DANMU_RETRY = "video.danmu.retry.exchange";
+    public static final String RABBITMQ_QUEUE_VIDEO_DANMU_RETRY = "video.danmu.retry.queue";
+    public static final String RABBITMQ_ROUTING_KEY_VIDEO_DANMU_RETRY = "video.danmu.retry.routing";
+    public static final Integer RABBITMQ_DANMU_RETRY_DELAY = 10 * 1000;
+    // 用户消息批量消费：每批最多条数 / 等待下一条消息的超时时间（毫秒）
+    public static final Integer RABBITMQ_USER_MESSAGE_BATCH_SIZE = 100;
+    public static final Long RABBITMQ_USER_MESSAGE_RECEIVE_TIMEOUT = 1000L;
+    // 批量消费逐条写入仍有临时性失败（数据库不可用等）时，整批重新入队前的等待时间（毫秒）
+    public static final Long RABBITMQ_REQUEUE_DELAY = 1000L;
     
+    // 异步发送层：缓冲区容量 / 每批发送条数 / 发送线程数 / 缓冲区满时的最长等待（毫秒）/ 最大重试次数 / 发送异常后的重试间隔（毫秒）
+    public static final Integer RABBITMQ_PUBLISH_BUFFER_SIZE = 10000;
+    public static final Integer RABBITMQ_PUBLISH_BATCH_SIZE = 100;
+    public static final Integer RABBITMQ_PUBLISH_THREADS = 2;
+    public static final Long RABBITMQ_PUBLISH_OFFER_TIMEOUT = 50L;
+    public static final Integer RABBITMQ_PUBLISH_MAX_RETRIES = 3;
+    public static final Long RABBITMQ_PUBLISH_RETRY_INTERVAL = 1000L;
+    // 同步发送（必须送达的消息）等待 Broker 确认的超时时间（毫秒）
+    public static final Long RABBITMQ_CONFIRM_TIMEOUT = 5000L;
+
     // Redis弹幕列表Key前缀（按fileId分组）
     public static final String REDIS_KEY_DANMU_LIST = REDIS_KEY_PREFIX + "danmu:list:";
+
+    // 弹幕消费幂等 Set（按发布时间的小时分桶）：easylive:danmu:processed:{yyyyMMddHH}，member={fileId}:{userId}:{postTime}
+    public static final String REDIS_KEY_DANMU_PROCESSED = REDIS_KEY_PREFIX + "danmu:processed:";
 }
@@ -0,0 +1,53 @@
+package com.easylive.entity.dto;
+
+/**
+ * HLS 多码率档位（一档对应一个子目录 + 一个子播放列表）
+ */
+public class HlsRenditionDto {
+
+    private String name;           // 档位名称，同时是子目录名，例如 720p
+    private Integer height;        // 输出高度，宽度按原视频比例缩放
+    private Integer width;         // 输出宽度（根据原视频分辨率计算，用于主播放列表）
+    private Integer videoBitrate;  // 视频码率 kbps
+
+    public HlsRenditionDto() {
+    }
+
+    public HlsRenditionDto(Integer height, Integer videoBitrate) {
+        this.name = height + "p";
+        this.height = height;
+        this.videoBitrate = videoBitrate;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getVideoBitrate() {
+        return videoBitrate;
+    }
+
+    public void setVideoBitrate(Integer videoBitrate) {
+        this.videoBitrate = videoBitrate;
+    }
+}
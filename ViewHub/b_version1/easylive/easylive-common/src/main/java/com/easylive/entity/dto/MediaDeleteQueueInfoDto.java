@@ -0,0 +1,64 @@
+package com.easylive.entity.dto;
+
+import java.io.Serializable;
+
+/**
+ * 媒体文件删除队列积压情况（管理端查看）
+ */
+public class MediaDeleteQueueInfoDto implements Serializable {
+
+    private Integer waitingCount;        // 待删除任务数（含等待重试）
+    private Integer failCount;           // 重试耗尽的任务数
+    private Long oldestWaitingSeconds;   // 最早的待删除任务已等待多少秒
+    private Long deletedFileCount;       // 本节点启动以来删除的文件数
+    private Long failedAttemptCount;     // 本节点启动以来删除失败（进入重试）的次数
+    private Integer filesPerSecond;      // 删除限速
+
+    public Integer getWaitingCount() {
+        return waitingCount;
+    }
+
+    public void setWaitingCount(Integer waitingCount) {
+        this.waitingCount = waitingCount;
+    }
+
+    public Integer getFailCount() {
+        return failCount;
+    }
+
+    public void setFailCount(Integer failCount) {
+        this.failCount = failCount;
+    }
+
+    public Long getOldestWaitingSeconds() {
+        return oldestWaitingSeconds;
+    }
+
+    public void setOldestWaitingSeconds(Long oldestWaitingSeconds) {
+        this.oldestWaitingSeconds = oldestWaitingSeconds;
+    }
+
+    public Long getDeletedFileCount() {
+        return deletedFileCount;
+    }
+
+    public void setDeletedFileCount(Long deletedFileCount) {
+        this.deletedFileCount = deletedFileCount;
+    }
+
+    public Long getFailedAttemptCount() {
+        return failedAttemptCount;
+    }
+
+    public void setFailedAttemptCount(Long failedAttemptCount) {
+        this.failedAttemptCount = failedAttemptCount;
+    }
+
+    public Integer getFilesPerSecond() {
+        return filesPerSecond;
+    }
+
+    public void setFilesPerSecond(Integer filesPerSecond) {
+        this.filesPerSecond = filesPerSecond;
+    }
+}
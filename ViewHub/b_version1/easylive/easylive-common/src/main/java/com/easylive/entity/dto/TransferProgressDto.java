@@ -0,0 +1,85 @@
+package com.easylive.entity.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.io.Serializable;
+
+/**
+ * 转码进度（解析 ffmpeg -progress 输出，推送给创作中心）
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TransferProgressDto implements Serializable {
+
+    private String fileId;
+    private String uploadId;
+    private String videoId;
+    private Integer transferResult;  // 转码状态，见 VideoFileTransferResultEnum
+    private Integer percent;         // 进度百分比 0-100
+    private Double fps;              // 当前转码帧率
+    private Double speed;            // 转码速度（相对播放速度的倍数）
+    private Long etaSeconds;         // 预计还需多少秒
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(String fileId) {
+        this.fileId = fileId;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public String getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(String videoId) {
+        this.videoId = videoId;
+    }
+
+    public Integer getTransferResult() {
+        return transferResult;
+    }
+
+    public void setTransferResult(Integer transferResult) {
+        this.transferResult = transferResult;
+    }
+
+    public Integer getPercent() {
+        return percent;
+    }
+
+    public void setPercent(Integer percent) {
+        this.percent = percent;
+    }
+
+    public Double getFps() {
+        return fps;
+    }
+
+    public void setFps(Double fps) {
+        this.fps = fps;
+    }
+
+    public Double getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(Double speed) {
+        this.speed = speed;
+    }
+
+    public Long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public void setEtaSeconds(Long etaSeconds) {
+        this.etaSeconds = etaSeconds;
+    }
+}
@@ -0,0 +1,79 @@
+package com.easylive.entity.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.io.Serializable;
+
+/**
+ * 转码排队信息（创作中心展示排队位置与预计完成时间）
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TransferQueueInfoDto implements Serializable {
+
+    public static final Integer STATUS_WAITING = 0;
+    public static final Integer STATUS_RUNNING = 1;
+
+    private String fileId;
+    private String uploadId;
+    private String videoId;
+    private Integer lane;          // 调度通道，见 TransferLaneEnum
+    private Integer status;        // 0:排队中 1:转码中
+    private Integer position;      // 排队位置（前面还有几个任务），转码中为0
+    private Long etaSeconds;       // 预计多少秒后转码完成
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(String fileId) {
+        this.fileId = fileId;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public String getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(String videoId) {
+        this.videoId = videoId;
+    }
+
+    public Integer getLane() {
+        return lane;
+    }
+
+    public void setLane(Integer lane) {
+        this.lane = lane;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public Integer getPosition() {
+        return position;
+    }
+
+    public void setPosition(Integer position) {
+        this.position = position;
+    }
+
+    public Long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public void setEtaSeconds(Long etaSeconds) {
+        this.etaSeconds = etaSeconds;
+    }
+}
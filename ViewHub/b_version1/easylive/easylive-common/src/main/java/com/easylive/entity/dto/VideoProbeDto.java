@@ -0,0 +1,79 @@
+package com.easylive.entity.dto;
+
+/**
+ * ffprobe 一次探测得到的视频信息
+ */
+public class VideoProbeDto {
+
+    private String videoCodec;     // 视频编码，例如 h264、hevc
+    private String audioCodec;     // 音频编码，没有音频流为 null
+    private Integer duration;      // 时长（秒）
+    private Integer width;
+    private Integer height;
+    private Double fps;            // 平均帧率
+    private Long bitrate;          // 总码率 bps
+
+    public boolean hasAudio() {
+        return audioCodec != null;
+    }
+
+    public boolean hasResolution() {
+        return width != null && height != null && width > 0 && height > 0;
+    }
+
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+    public void setVideoCodec(String videoCodec) {
+        this.videoCodec = videoCodec;
+    }
+
+    public String getAudioCodec() {
+        return audioCodec;
+    }
+
+    public void setAudioCodec(String audioCodec) {
+        this.audioCodec = audioCodec;
+    }
+
+    public Integer getDuration() {
+        return duration;
+    }
+
+    public void setDuration(Integer duration) {
+        this.duration = duration;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public Double getFps() {
+        return fps;
+    }
+
+    public void setFps(Double fps) {
+        this.fps = fps;
+    }
+
+    public Long getBitrate() {
+        return bitrate;
+    }
+
+    public void setBitrate(Long bitrate) {
+        this.bitrate = bitrate;
+    }
+}
@@ -2,7 +2,7 @@ package com.easylive.entity.enums;
 
 
 public enum DateTimePatternEnum {
-    YYYY_MM_DD_HH_MM_SS("yyyy-MM-dd HH:mm:ss"), YYYY_MM_DD("yyyy-MM-dd"), YYYY_MM("yyyy");
+    YYYY_MM_DD_HH_MM_SS("yyyy-MM-dd HH:mm:ss"), YYYY_MM_DD("yyyy-MM-dd"), YYYY_MM("yyyy"), YYYYMMDDHH("yyyyMMddHH");
 
     private String pattern;
 
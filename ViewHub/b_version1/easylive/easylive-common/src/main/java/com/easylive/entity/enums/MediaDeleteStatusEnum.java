@@ -0,0 +1,22 @@
+package com.easylive.entity.enums;
+
+
+public enum MediaDeleteStatusEnum {
+    WAITING(0, "待删除"),
+    FAIL(1, "删除失败");
+    private Integer status;
+    private String desc;
+
+    MediaDeleteStatusEnum(Integer status, String desc) {
+        this.status = status;
+        this.desc = desc;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+}
@@ -0,0 +1,86 @@
+package com.easylive.entity.enums;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * 转码失败类型
+ * RETRYABLE：磁盘、内存、进程被杀等环境问题，稍后重试可能成功
+ * PERMANENT：源文件损坏、缺失或格式不支持，重试也不会成功
+ */
+public enum TransferErrorTypeEnum {
+    RETRYABLE(0, "可重试"),
+    PERMANENT(1, "不可重试");
+
+    // ffmpeg/ffprobe 输出中表示源文件本身有问题的关键字
+    private static final String[] PERMANENT_KEYWORDS = {
+            "Invalid data found when processing input",
+            "moov atom not found",
+            "does not contain any stream",
+            "could not find codec parameters",
+            "Unknown decoder",
+            "Decoder not found",
+            "Unsupported codec",
+            "No such file or directory",
+            "Invalid argument"
+    };
+
+    // 环境问题关键字（优先于 PERMANENT_KEYWORDS 判断）
+    private static final String[] RETRYABLE_KEYWORDS = {
+            "No space left on device",
+            "Cannot allocate memory",
+            "Resource temporarily unavailable",
+            "Too many open files",
+            "Killed",
+            // 进程被 SIGKILL / SIGTERM 结束（OOM、重启）
+            "exitCode=137",
+            "exitCode=143"
+    };
+
+    private Integer type;
+    private String desc;
+
+    TransferErrorTypeEnum(Integer type, String desc) {
+        this.type = type;
+        this.desc = desc;
+    }
+
+    public Integer getType() {
+        return type;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+
+    /**
+     * 判断转码异常类型，无法识别的异常按可重试处理（重试次数有上限）
+     */
+    public static TransferErrorTypeEnum classify(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage() == null ? "" : cause.getMessage();
+            for (String keyword : RETRYABLE_KEYWORDS) {
+                if (message.contains(keyword)) {
+                    return RETRYABLE;
+                }
+            }
+            for (String keyword : PERMANENT_KEYWORDS) {
+                if (message.contains(keyword)) {
+                    return PERMANENT;
+                }
+            }
+            // 分片或临时目录已不存在
+            if (cause instanceof FileNotFoundException) {
+                return PERMANENT;
+            }
+            if (cause instanceof IOException) {
+                return RETRYABLE;
+            }
+            // ffprobe 输出无法解析（没有视频流、时长异常等）
+            if (cause instanceof NumberFormatException || cause instanceof StringIndexOutOfBoundsException) {
+                return PERMANENT;
+            }
+        }
+        return RETRYABLE;
+    }
+}
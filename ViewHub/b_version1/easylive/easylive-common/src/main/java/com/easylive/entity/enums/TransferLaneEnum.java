@@ -0,0 +1,26 @@
+package com.easylive.entity.enums;
+
+
+/**
+ * 转码调度优先级通道（数值越小越先调度）
+ */
+public enum TransferLaneEnum {
+    SHORT(0, "短视频"),
+    NORMAL(1, "普通视频"),
+    RETRANSCODE(2, "重新转码");
+    private Integer lane;
+    private String desc;
+
+    TransferLaneEnum(Integer lane, String desc) {
+        this.lane = lane;
+        this.desc = desc;
+    }
+
+    public Integer getLane() {
+        return lane;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+}
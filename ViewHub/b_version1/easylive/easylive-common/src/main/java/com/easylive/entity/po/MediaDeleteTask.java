@@ -0,0 +1,117 @@
+package com.easylive.entity.po;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.io.Serializable;
+import java.util.Date;
+
+
+/**
+ * 媒体文件删除队列
+ */
+public class MediaDeleteTask implements Serializable {
+
+
+    /**
+     * 任务ID
+     */
+    private Long taskId;
+
+    /**
+     * 要删除的文件或目录（相对 file/ 目录）
+     */
+    private String filePath;
+
+    /**
+     * 0:待删除 1:失败
+     */
+    private Integer status;
+
+    /**
+     * 已重试次数
+     */
+    private Integer retryCount;
+
+    /**
+     * 最近一次失败原因
+     */
+    private String lastError;
+
+    /**
+     * 下次执行时间（执行中时为租约到期时间）
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date nextRunTime;
+
+    /**
+     * 入队时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public Long getTaskId() {
+        return this.taskId;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getFilePath() {
+        return this.filePath;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public Integer getStatus() {
+        return this.status;
+    }
+
+    public void setRetryCount(Integer retryCount) {
+        this.retryCount = retryCount;
+    }
+
+    public Integer getRetryCount() {
+        return this.retryCount;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public String getLastError() {
+        return this.lastError;
+    }
+
+    public void setNextRunTime(Date nextRunTime) {
+        this.nextRunTime = nextRunTime;
+    }
+
+    public Date getNextRunTime() {
+        return this.nextRunTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+
+    public Date getCreateTime() {
+        return this.createTime;
+    }
+
+    @Override
+    public String toString() {
+        return "任务ID:" + (taskId == null ? "空" : taskId) + "，文件:" + (filePath == null ? "空" : filePath) + "，状态:" + (status == null ? "空" : status)
+                + "，已重试次数:" + (retryCount == null ? "空" : retryCount);
+    }
+}
@@ -65,6 +65,21 @@ public class VideoInfoFilePost implements Serializable {
 	 */
 	private Integer duration;
 
+	/**
+	 * 转码失败后已重试次数
+	 */
+	private Integer transferRetryCount;
+
+	/**
+	 * 最近一次转码失败原因
+	 */
+	private String transferError;
+
+	/**
+	 * 文件内容哈希（由各分片 MD5 计算），用于相同文件复用转码结果
+	 */
+	private String contentHash;
+
 
 	public void setFileId(String fileId){
 		this.fileId = fileId;
@@ -154,8 +169,32 @@ public class VideoInfoFilePost implements Serializable {
 		return this.duration;
 	}
 
+	public void setTransferRetryCount(Integer transferRetryCount){
+		this.transferRetryCount = transferRetryCount;
+	}
+
+	public Integer getTransferRetryCount(){
+		return this.transferRetryCount;
+	}
+
+	public void setTransferError(String transferError){
+		this.transferError = transferError;
+	}
+
+	public String getTransferError(){
+		return this.transferError;
+	}
+
+	public void setContentHash(String contentHash){
+		this.contentHash = contentHash;
+	}
+
+	public String getContentHash(){
+		return this.contentHash;
+	}
+
 	@Override
 	public String toString (){
-		return "唯一ID:"+(fileId == null ? "空" : fileId)+"，上传ID:"+(uploadId == null ? "空" : uploadId)+"，用户ID:"+(userId == null ? "空" : userId)+"，视频ID:"+(videoId == null ? "空" : videoId)+"，文件索引:"+(fileIndex == null ? "空" : fileIndex)+"，文件名:"+(fileName == null ? "空" : fileName)+"，文件大小:"+(fileSize == null ? "空" : fileSize)+"，文件路径:"+(filePath == null ? "空" : filePath)+"，0:无更新 1:有更新:"+(updateType == null ? "空" : updateType)+"，0:转码中 1:转码成功 2:转码失败:"+(transferResult == null ? "空" : transferResult)+"，持续时间（秒）:"+(duration == null ? "空" : duration);
+		return "唯一ID:"+(fileId == null ? "空" : fileId)+"，上传ID:"+(uploadId == null ? "空" : uploadId)+"，用户ID:"+(userId == null ? "空" : userId)+"，视频ID:"+(videoId == null ? "空" : videoId)+"，文件索引:"+(fileIndex == null ? "空" : fileIndex)+"，文件名:"+(fileName == null ? "空" : fileName)+"，文件大小:"+(fileSize == null ? "空" : fileSize)+"，文件路径:"+(filePath == null ? "空" : filePath)+"，0:无更新 1:有更新:"+(updateType == null ? "空" : updateType)+"，0:转码中 1:转码成功 2:转码失败:"+(transferResult == null ? "空" : transferResult)+"，持续时间（秒）:"+(duration == null ? "空" : duration)+"，已重试次数:"+(transferRetryCount == null ? "空" : transferRetryCount)+"，失败原因:"+(transferError == null ? "空" : transferError)+"，内容哈希:"+(contentHash == null ? "空" : contentHash);
 	}
 }
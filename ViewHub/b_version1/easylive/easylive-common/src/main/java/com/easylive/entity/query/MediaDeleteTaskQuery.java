@@ -0,0 +1,59 @@
+package com.easylive.entity.query;
+
+/**
+ * 媒体文件删除队列参数
+ */
+public class MediaDeleteTaskQuery extends BaseParam {
+
+
+    /**
+     * 任务ID
+     */
+    private Long taskId;
+
+    /**
+     * 要删除的文件或目录
+     */
+    private String filePath;
+
+    private String filePathFuzzy;
+
+    /**
+     * 0:待删除 1:失败
+     */
+    private Integer status;
+
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public Long getTaskId() {
+        return this.taskId;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getFilePath() {
+        return this.filePath;
+    }
+
+    public void setFilePathFuzzy(String filePathFuzzy) {
+        this.filePathFuzzy = filePathFuzzy;
+    }
+
+    public String getFilePathFuzzy() {
+        return this.filePathFuzzy;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public Integer getStatus() {
+        return this.status;
+    }
+
+}
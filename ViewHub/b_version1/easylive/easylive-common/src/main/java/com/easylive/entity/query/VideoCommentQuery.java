@@ -89,6 +89,9 @@ public class VideoCommentQuery extends BaseParam {
 
     private String videoNameFuzzy;
 
+    //批量按评论ID查询
+    private Integer[] commentIdArray;
+
     public void setCommentId(Integer commentId) {
         this.commentId = commentId;
     }
@@ -272,4 +275,12 @@ public class VideoCommentQuery extends BaseParam {
     public void setVideoNameFuzzy(String videoNameFuzzy) {
         this.videoNameFuzzy = videoNameFuzzy;
     }
+
+    public Integer[] getCommentIdArray() {
+        return commentIdArray;
+    }
+
+    public void setCommentIdArray(Integer[] commentIdArray) {
+        this.commentIdArray = commentIdArray;
+    }
 }
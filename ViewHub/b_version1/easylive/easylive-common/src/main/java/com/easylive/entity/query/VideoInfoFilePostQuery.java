@@ -75,6 +75,11 @@ public class VideoInfoFilePostQuery extends BaseParam {
 	 */
 	private Integer duration;
 
+	/**
+	 * 文件内容哈希
+	 */
+	private String contentHash;
+
 
 	public void setFileId(String fileId){
 		this.fileId = fileId;
@@ -212,4 +217,12 @@ public class VideoInfoFilePostQuery extends BaseParam {
 		return this.duration;
 	}
 
+	public void setContentHash(String contentHash){
+		this.contentHash = contentHash;
+	}
+
+	public String getContentHash(){
+		return this.contentHash;
+	}
+
 }
@@ -112,6 +112,8 @@ public class VideoInfoPostQuery extends BaseParam {
 
 	private Integer[] excludeStatusArray;
 
+	private String[] videoIdArray;
+
 	private Boolean queryCountInfo;
 
 	public Boolean getQueryUserInfo() {
@@ -342,6 +344,12 @@ public class VideoInfoPostQuery extends BaseParam {
 	public Integer[] getExcludeStatusArray(){
 		return this.excludeStatusArray;
 	}
+	public void setVideoIdArray(String[] videoIdArray){
+		this.videoIdArray = videoIdArray;
+	}
+	public String[] getVideoIdArray(){
+		return this.videoIdArray;
+	}
 	public void setQueryCountInfo(Boolean queryCountInfo){
 		this.queryCountInfo = queryCountInfo;
 	}
@@ -0,0 +1,45 @@
+package com.easylive.entity.vo;
+
+import java.util.List;
+
+/**
+ * 分片上传进度（断点续传时客户端根据 missingChunks 补传）
+ */
+public class UploadChunkStatusVO {
+    private String uploadId;
+    private Integer chunks;
+    private Integer uploadedCount;
+    private List<Integer> missingChunks;
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public Integer getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(Integer chunks) {
+        this.chunks = chunks;
+    }
+
+    public Integer getUploadedCount() {
+        return uploadedCount;
+    }
+
+    public void setUploadedCount(Integer uploadedCount) {
+        this.uploadedCount = uploadedCount;
+    }
+
+    public List<Integer> getMissingChunks() {
+        return missingChunks;
+    }
+
+    public void setMissingChunks(List<Integer> missingChunks) {
+        this.missingChunks = missingChunks;
+    }
+}
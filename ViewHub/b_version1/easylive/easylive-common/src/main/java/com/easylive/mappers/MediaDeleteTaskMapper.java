@@ -0,0 +1,42 @@
+package com.easylive.mappers;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 媒体文件删除队列 数据库操作接口
+ */
+public interface MediaDeleteTaskMapper<T, P> extends BaseMapper<T, P> {
+
+    /**
+     * 根据TaskId更新
+     */
+    Integer updateByTaskId(@Param("bean") T t, @Param("taskId") Long taskId);
+
+
+    /**
+     * 根据TaskId删除
+     */
+    Integer deleteByTaskId(@Param("taskId") Long taskId);
+
+
+    /**
+     * 到期的待删除任务，按 next_run_time 排序
+     */
+    List<T> selectDueList(@Param("now") Date now, @Param("limit") Integer limit);
+
+
+    /**
+     * 领取任务：next_run_time 仍为查询时的值才更新为租约到期时间，返回 0 表示已被其他节点领取
+     */
+    Integer updateLease(@Param("taskId") Long taskId, @Param("expectRunTime") Date expectRunTime, @Param("leaseTime") Date leaseTime);
+
+
+    /**
+     * 最早入队的任务的入队时间
+     */
+    Date selectMinCreateTime(@Param("status") Integer status);
+
+}
@@ -29,4 +29,9 @@ public interface UserMessageMapper<T, P> extends BaseMapper<T, P> {
 
     //通过用户Id获取未读消息对应分组的，比如点赞还是评论，还是投币，还是收藏。
     List<UserMessageCountDto> getMessageTypeNoReadCount(@Param("userId") String userId);
+
+    /**
+     * 批量插入，忽略命中唯一索引 uk_dedupe_key 的重复消息（点赞、收藏同一视频只记一次）
+     */
+    Integer insertIgnoreBatch(@Param("list") List<T> list);
 }
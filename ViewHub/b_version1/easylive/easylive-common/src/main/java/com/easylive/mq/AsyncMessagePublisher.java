@@ -0,0 +1,335 @@
+package com.easylive.mq;
+
+import com.easylive.entity.config.AppConfig;
+import com.easylive.entity.constant.Constants;
+import com.easylive.mq.codec.BinaryMessageConverter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步消息发布器（各 Producer 的公共发送层）
+ *
+ * 职责：请求线程只把消息放进有界缓冲区就返回，由专用发送线程批量发布到 RabbitMQ
+ *
+ * 工作流程：
+ * 1. publish()：消息入有界队列（满了最多等待 RABBITMQ_PUBLISH_OFFER_TIMEOUT，仍满则抛异常，形成背压）
+ * 2. 发送线程：一次取出最多 RABBITMQ_PUBLISH_BATCH_SIZE 条，在同一个 Channel 上连续发布（rabbitTemplate.invoke）
+ * 3. 每条消息带 CorrelationData，通过其 Future 异步接收 Confirm，不阻塞发送线程
+ *    （二进制格式的弹幕、播放统计记录会按目的地合并成一条 AMQP 消息，整组共用一个 Confirm）
+ * 4. Broker NACK / 通道异常：重新放回缓冲区重试，超过 RABBITMQ_PUBLISH_MAX_RETRIES 次放弃
+ * 5. publish() 返回的 Future 在 Broker 确认后完成；重试耗尽、无法路由、停机时未发出时异常完成，由调用方决定如何处理
+ *
+ * 注意：
+ * - 缓冲区只在内存中，进程宕机时未发出的消息会丢失；只适合弹幕、播放统计、通知这类可以容忍丢失的消息，
+ *   必须送达的消息（转码任务）使用 publishConfirmed() 同步发送并等待确认
+ * - 全局 ConfirmCallback / ReturnsCallback 仍在 RabbitConfirmConfig 中统一记录日志
+ * - 应用关闭时会先把缓冲区里剩余的消息发完
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class AsyncMessagePublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final BinaryMessageConverter binaryMessageConverter;
+
+    private final AppConfig appConfig;
+
+    private final BlockingQueue<PendingMessage> buffer = new ArrayBlockingQueue<>(Constants.RABBITMQ_PUBLISH_BUFFER_SIZE);
+
+    private ExecutorService publishExecutor;
+
+    private volatile boolean running = true;
+
+    // 已发布、等待 Broker 确认的消息数
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // 最终发送失败（重试耗尽/缓冲区满）的消息数
+    private final AtomicLong failedCount = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        publishExecutor = Executors.newFixedThreadPool(Constants.RABBITMQ_PUBLISH_THREADS, r -> {
+            Thread thread = new Thread(r, "mq-publisher-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < Constants.RABBITMQ_PUBLISH_THREADS; i++) {
+            publishExecutor.execute(this::publishLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        publishExecutor.shutdown();
+        if (!publishExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("MQ发送线程未在10秒内退出, 缓冲区剩余={}", buffer.size());
+            publishExecutor.shutdownNow();
+        }
+        List<PendingMessage> remaining = new ArrayList<>();
+        buffer.drainTo(remaining);
+        for (PendingMessage message : remaining) {
+            fail(message, "应用关闭时未发送");
+        }
+    }
+
+    /**
+     * 异步发送消息
+     *
+     * @param exchange   交换机
+     * @param routingKey 路由键
+     * @param payload    消息体（交给 RabbitTemplate 的 MessageConverter 转换）
+     * @param messageId  消息标识（用于确认回调日志）
+     * @return Broker 确认后完成；最终发送失败时异常完成（发布器已记录日志，可以容忍丢失的消息可以不处理）
+     * @throws RuntimeException 缓冲区已满
+     */
+    public CompletableFuture<Void> publish(String exchange, String routingKey, Object payload, String messageId) {
+        PendingMessage message = new PendingMessage(exchange, routingKey, payload, messageId);
+        boolean accepted;
+        try {
+            accepted = buffer.offer(message, Constants.RABBITMQ_PUBLISH_OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            failedCount.incrementAndGet();
+            throw new RuntimeException("MQ发送缓冲区已满, messageId=" + messageId);
+        }
+        return message.result;
+    }
+
+    /**
+     * 同步发送并等待 Broker 确认（不经过缓冲区），用于必须送达的消息
+     * 在调用方的事务中调用时，发送失败会抛出异常使事务回滚，不会出现数据已提交而消息丢失的情况
+     *
+     * @throws AmqpException 未开启生产者确认（spring.rabbitmq.publisher-confirm-type: correlated）、Broker NACK、无法路由到队列、等待确认超时
+     */
+    public void publishConfirmed(String exchange, String routingKey, Object payload, String messageId) {
+        //未开启确认时确认永远不会到达，直接失败，不要等到超时
+        if (!rabbitTemplate.getConnectionFactory().isPublisherConfirms()) {
+            throw new AmqpException("未开启MQ生产者确认（spring.rabbitmq.publisher-confirm-type: correlated），无法确认送达, messageId=" + messageId);
+        }
+        CorrelationData correlationData = new CorrelationData(messageId);
+        rabbitTemplate.convertAndSend(exchange, routingKey, payload, correlationData);
+        CorrelationData.Confirm confirm;
+        try {
+            confirm = correlationData.getFuture().get(Constants.RABBITMQ_CONFIRM_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("等待MQ确认被中断, messageId=" + messageId, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new AmqpException("等待MQ确认失败, messageId=" + messageId, e);
+        }
+        if (!confirm.isAck()) {
+            throw new AmqpException("MQ拒绝消息, messageId=" + messageId + ", cause=" + confirm.getReason());
+        }
+        //mandatory 消息无法路由时 Broker 仍然 ACK，退回的消息在确认之前到达
+        if (correlationData.getReturned() != null) {
+            throw new AmqpException("MQ消息无法路由到队列, messageId=" + messageId + ", replyText=" + correlationData.getReturned().getReplyText());
+        }
+    }
+
+    /**
+     * 缓冲区中待发送的消息数
+     */
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    /**
+     * 已发送、等待 Broker 确认的消息数
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * 最终发送失败的消息数
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    private void publishLoop() {
+        List<PendingMessage> batch = new ArrayList<>(Constants.RABBITMQ_PUBLISH_BATCH_SIZE);
+        while (running || !buffer.isEmpty()) {
+            try {
+                PendingMessage first = buffer.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, Constants.RABBITMQ_PUBLISH_BATCH_SIZE - 1);
+                publishBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("MQ批量发送失败, size={}", batch.size(), e);
+                // 已经发出的消息由各自的 Confirm 回调处理，这里只重试还没发出去的
+                for (PendingMessage message : batch) {
+                    if (!message.published) {
+                        retry(message, e.getMessage());
+                    }
+                }
+                sleepQuietly(Constants.RABBITMQ_PUBLISH_RETRY_INTERVAL);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 一批消息在同一个 Channel 上连续发布，Confirm 通过 Future 异步处理
+     * 二进制格式的记录（弹幕、播放统计）按 交换机+路由键+类型 合并成一条 AMQP 消息
+     */
+    private void publishBatch(List<PendingMessage> batch) {
+        List<List<PendingMessage>> sendUnits = groupForSend(batch);
+        rabbitTemplate.invoke(operations -> {
+            for (List<PendingMessage> unit : sendUnits) {
+                PendingMessage first = unit.get(0);
+                Object payload = first.payload;
+                String correlationId = first.messageId;
+                if (unit.size() > 1) {
+                    List<Object> records = new ArrayList<>(unit.size());
+                    for (PendingMessage message : unit) {
+                        records.add(message.payload);
+                    }
+                    payload = records;
+                    correlationId = first.messageId + "_BATCH_" + unit.size();
+                }
+                CorrelationData correlationData = new CorrelationData(correlationId);
+                operations.convertAndSend(first.exchange, first.routingKey, payload, correlationData);
+                for (PendingMessage message : unit) {
+                    message.published = true;
+                }
+                // 发送成功后再注册回调（Confirm 先到也会立即回调），发送失败的消息只由外层重试一次
+                inFlight.addAndGet(unit.size());
+                correlationData.getFuture().addCallback(confirm -> {
+                    inFlight.addAndGet(-unit.size());
+                    if (confirm == null || !confirm.isAck()) {
+                        for (PendingMessage message : unit) {
+                            retry(message, confirm == null ? "unknown" : confirm.getReason());
+                        }
+                        return;
+                    }
+                    for (PendingMessage message : unit) {
+                        if (correlationData.getReturned() != null) {
+                            //无法路由，重发也不会成功
+                            fail(message, "无法路由到队列: " + correlationData.getReturned().getReplyText());
+                        } else {
+                            message.result.complete(null);
+                        }
+                    }
+                }, ex -> {
+                    inFlight.addAndGet(-unit.size());
+                    for (PendingMessage message : unit) {
+                        retry(message, ex.getMessage());
+                    }
+                });
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 划分发送单元：可合并的二进制记录按目的地和类型分组（每组最多 mq.binaryCodec.batchSize 条），其余消息单独发送
+     */
+    private List<List<PendingMessage>> groupForSend(List<PendingMessage> batch) {
+        List<List<PendingMessage>> sendUnits = new ArrayList<>();
+        Map<String, List<PendingMessage>> groups = new LinkedHashMap<>();
+        int groupSize = Math.max(1, appConfig.getMqBinaryCodecBatchSize());
+        for (PendingMessage message : batch) {
+            message.published = false;
+            if (!binaryMessageConverter.supports(message.payload)) {
+                sendUnits.add(Collections.singletonList(message));
+                continue;
+            }
+            String groupKey = message.exchange + "|" + message.routingKey + "|" + message.payload.getClass().getName();
+            List<PendingMessage> group = groups.computeIfAbsent(groupKey, k -> new ArrayList<>());
+            group.add(message);
+            if (group.size() >= groupSize) {
+                sendUnits.add(group);
+                groups.remove(groupKey);
+            }
+        }
+        sendUnits.addAll(groups.values());
+        return sendUnits;
+    }
+
+    private void retry(PendingMessage message, String cause) {
+        message.attempts++;
+        if (message.attempts > Constants.RABBITMQ_PUBLISH_MAX_RETRIES) {
+            fail(message, "重试次数耗尽: " + cause);
+            return;
+        }
+        if (!buffer.offer(message)) {
+            fail(message, "重试时缓冲区已满: " + cause);
+            return;
+        }
+        log.warn("MQ消息未确认，重新发送, messageId={}, attempts={}, cause={}", message.messageId, message.attempts, cause);
+    }
+
+    /**
+     * 最终发送失败：计数、记录日志并通知调用方
+     */
+    private void fail(PendingMessage message, String cause) {
+        failedCount.incrementAndGet();
+        log.error("MQ消息发送失败，放弃发送, messageId={}, exchange={}, cause={}", message.messageId, message.exchange, cause);
+        message.result.completeExceptionally(new AmqpException("MQ消息发送失败, messageId=" + message.messageId + ", cause=" + cause));
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 缓冲区中的待发送消息
+     */
+    private static class PendingMessage {
+        private final String exchange;
+        private final String routingKey;
+        private final Object payload;
+        private final String messageId;
+        private volatile int attempts;
+        private volatile boolean published;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        PendingMessage(String exchange, String routingKey, Object payload, String messageId) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.payload = payload;
+            this.messageId = messageId;
+        }
+    }
+}
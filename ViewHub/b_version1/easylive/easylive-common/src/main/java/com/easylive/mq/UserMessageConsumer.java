@@ -5,24 +5,38 @@ import com.easylive.entity.dto.UserMessageTaskDTO;
 import com.easylive.entity.enums.MessageTypeEnum;
 import com.easylive.service.UserMessageService;
 import com.easylive.utils.JsonUtils;
+import com.rabbitmq.client.Channel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * 用户消息任务消息消费者
- * 
- * 职责：监听 RabbitMQ 消息，处理用户消息通知任务
- * 
+ *
+ * 职责：监听 RabbitMQ 消息，批量保存用户消息通知
+ *
  * 工作流程：
- * 1. 监听 MQ 中的用户消息任务消息
+ * 1. 由监听容器攒批（userMessageBatchContainerFactory），一次交付一整批消息
  * 2. 解析消息内容
- * 3. 调用服务层保存用户消息
- * 
- * @RabbitListener 注解说明：
- * - queues: 监听的队列名称
- * - concurrency: 并发消费线程数（可选）
+ * 3. 调用服务层批量保存（视频作者批量查缓存，点赞、收藏去重由唯一索引 + INSERT IGNORE 完成）
+ * 4. 整批手动 ACK（multiple=true）
+ *
+ * 失败处理：
+ * - 首次失败：整批 NACK 重新入队
+ * - 重投后仍失败：逐条保存，隔离坏数据：
+ *   数据本身的错误（违反约束、字段超长等，DataIntegrityViolationException）重试也不会成功，记录日志后丢弃；
+ *   其他错误（数据库不可用等）的消息单独 NACK 重新入队，其余消息单独 ACK，已保存的消息不会被重复保存
  */
 @Component
 @Slf4j
@@ -32,46 +46,120 @@ public class UserMessageConsumer {
     private final UserMessageService userMessageService;
 
     /**
-     * 处理接收到的消息
+     * 批量处理接收到的消息
      *
-     * @param message JSON 格式的 UserMessageTaskDTO 字符串
+     * @param messages 一批 JSON 格式的 UserMessageTaskDTO 消息
+     * @param channel  RabbitMQ 通道（用于手动确认）
      */
-    @RabbitListener(queues = Constants.RABBITMQ_QUEUE_USER_MESSAGE)
-    public void onMessage(String message) {
-        try {
-            // 将 JSON 字符串转换为对象
-            UserMessageTaskDTO taskDTO = JsonUtils.convertJson2Obj(message, UserMessageTaskDTO.class);
-            
+    @RabbitListener(queues = Constants.RABBITMQ_QUEUE_USER_MESSAGE, containerFactory = "userMessageBatchContainerFactory")
+    public void onMessage(List<Message> messages, Channel channel) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        long lastDeliveryTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
+        boolean redelivered = messages.stream().anyMatch(m -> Boolean.TRUE.equals(m.getMessageProperties().isRedelivered()));
+
+        List<UserMessageTaskDTO> taskList = new ArrayList<>(messages.size());
+        // 和 taskList 一一对应，逐条保存失败时单独确认
+        List<Long> deliveryTagList = new ArrayList<>(messages.size());
+        for (Message msg : messages) {
+            String body = new String(msg.getBody(), StandardCharsets.UTF_8);
+            UserMessageTaskDTO taskDTO = JsonUtils.convertJson2Obj(body, UserMessageTaskDTO.class);
             if (taskDTO == null) {
-                log.error("消息解析失败，message={}", message);
+                // 解析失败的消息重投也无法成功，随整批一起ACK
+                log.error("消息解析失败，message={}", body);
+                continue;
+            }
+            if (MessageTypeEnum.getByType(taskDTO.getMessageType()) == null) {
+                log.error("消息类型无效, messageType={}", taskDTO.getMessageType());
+                continue;
+            }
+            taskList.add(taskDTO);
+            deliveryTagList.add(msg.getMessageProperties().getDeliveryTag());
+        }
+
+        try {
+            if (!taskList.isEmpty()) {
+                userMessageService.saveUserMessageBatch(taskList);
+            }
+        } catch (Exception e) {
+            log.error("批量保存用户消息失败, messages={}, redelivered={}", messages.size(), redelivered, e);
+            if (!redelivered) {
+                nack(channel, lastDeliveryTag);
+                return;
+            }
+            Set<Long> retryTagSet = saveOneByOne(taskList, deliveryTagList);
+            if (!retryTagSet.isEmpty()) {
+                log.warn("用户消息逐条保存仍有失败，重新入队, messages={}, retry={}", messages.size(), retryTagSet.size());
+                ackEach(channel, messages, retryTagSet);
                 return;
             }
+        }
 
-            log.info("收到用户消息任务消息, videoId={}, sendUserId={}, messageType={}", 
-                taskDTO.getVideoId(), taskDTO.getSendUserId(), taskDTO.getMessageType());
+        ack(channel, lastDeliveryTag);
+        log.debug("用户消息批量处理完成并确认, messages={}, saved={}", messages.size(), taskList.size());
+    }
 
-            // 将Integer转换为MessageTypeEnum
-            MessageTypeEnum messageTypeEnum = MessageTypeEnum.getByType(taskDTO.getMessageType());
-            if (messageTypeEnum == null) {
-                log.error("消息类型无效, messageType={}", taskDTO.getMessageType());
-                return;
+    /**
+     * 重投后整批仍失败时逐条保存，隔离坏数据
+     *
+     * @return 因为数据之外的原因（数据库不可用等）保存失败、需要重新投递的消息 deliveryTag
+     */
+    private Set<Long> saveOneByOne(List<UserMessageTaskDTO> taskList, List<Long> deliveryTagList) {
+        Set<Long> retryTagSet = new HashSet<>();
+        for (int i = 0; i < taskList.size(); i++) {
+            UserMessageTaskDTO taskDTO = taskList.get(i);
+            try {
+                userMessageService.saveUserMessageBatch(Collections.singletonList(taskDTO));
+            } catch (DataIntegrityViolationException e) {
+                log.error("用户消息数据错误，丢弃该条, videoId={}, sendUserId={}, messageType={}",
+                    taskDTO.getVideoId(), taskDTO.getSendUserId(), taskDTO.getMessageType(), e);
+            } catch (Exception e) {
+                log.error("用户消息保存失败，等待重新投递, videoId={}, sendUserId={}, messageType={}",
+                    taskDTO.getVideoId(), taskDTO.getSendUserId(), taskDTO.getMessageType(), e);
+                retryTagSet.add(deliveryTagList.get(i));
             }
+        }
+        return retryTagSet;
+    }
 
-            // 调用服务层保存用户消息
-            userMessageService.saveUserMessage(
-                taskDTO.getVideoId(),
-                taskDTO.getSendUserId(),
-                messageTypeEnum,
-                taskDTO.getContent(),
-                taskDTO.getReplyCommentId()
-            );
+    /**
+     * 逐条确认：保存失败的消息等待一段时间后 NACK 重新入队（数据库故障期间不会反复空转），其余 ACK
+     * 用户消息没有幂等标记，不能整批重投，否则已保存的评论、系统消息会重复
+     */
+    private void ackEach(Channel channel, List<Message> messages, Set<Long> retryTagSet) {
+        try {
+            Thread.sleep(Constants.RABBITMQ_REQUEUE_DELAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Message msg : messages) {
+            long deliveryTag = msg.getMessageProperties().getDeliveryTag();
+            try {
+                if (retryTagSet.contains(deliveryTag)) {
+                    channel.basicNack(deliveryTag, false, true);
+                } else {
+                    channel.basicAck(deliveryTag, false);
+                }
+            } catch (IOException e) {
+                log.error("确认用户消息失败, deliveryTag={}", deliveryTag, e);
+            }
+        }
+    }
 
-            log.info("用户消息任务处理成功, videoId={}, sendUserId={}", 
-                taskDTO.getVideoId(), taskDTO.getSendUserId());
+    private void ack(Channel channel, long deliveryTag) {
+        try {
+            channel.basicAck(deliveryTag, true);
+        } catch (IOException e) {
+            log.error("确认用户消息失败, deliveryTag={}", deliveryTag, e);
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("消费用户消息任务消息失败, message={}", message, e);
+    private void nack(Channel channel, long deliveryTag) {
+        try {
+            channel.basicNack(deliveryTag, true, true);
+        } catch (IOException e) {
+            log.error("拒绝用户消息失败, deliveryTag={}", deliveryTag, e);
         }
     }
 }
-
@@ -5,7 +5,6 @@ import com.easylive.entity.dto.UserMessageTaskDTO;
 import com.easylive.utils.JsonUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
 /**
@@ -16,13 +15,14 @@ import org.springframework.stereotype.Component;
  * 使用场景：
  * 1. 当用户进行点赞、收藏、评论等操作时，异步发送消息通知
  * 2. 避免同步处理影响接口响应时间
+ * 3. 经 AsyncMessagePublisher 异步批量发送，请求线程不等待 Broker 确认
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class UserMessageProducer {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final AsyncMessagePublisher asyncMessagePublisher;
 
     /**
      * 发送用户消息任务到消息队列
@@ -34,14 +34,15 @@ public class UserMessageProducer {
             // 将对象转换为 JSON 字符串
             String messageBody = JsonUtils.convertObj2Json(taskDTO);
 
-            // 发送消息到 RabbitMQ（Direct 交换机）
-            rabbitTemplate.convertAndSend(
+            // 放入异步发送缓冲区（Direct 交换机）
+            asyncMessagePublisher.publish(
                 Constants.RABBITMQ_EXCHANGE_USER_MESSAGE,
                 Constants.RABBITMQ_ROUTING_KEY_USER_MESSAGE,
-                messageBody
+                messageBody,
+                "MESSAGE_" + taskDTO.getVideoId() + "_" + taskDTO.getSendUserId()
             );
 
-            log.info("用户消息任务已发送到MQ, videoId={}, sendUserId={}, messageType={}", 
+            log.info("用户消息任务已提交到MQ发送缓冲区, videoId={}, sendUserId={}, messageType={}", 
                 taskDTO.getVideoId(), taskDTO.getSendUserId(), taskDTO.getMessageType());
         } catch (Exception e) {
             log.error("发送用户消息任务到MQ失败, videoId={}, sendUserId={}", 
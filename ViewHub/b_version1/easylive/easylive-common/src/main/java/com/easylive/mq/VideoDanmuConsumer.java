@@ -1,6 +1,7 @@
 package com.easylive.mq;
 
 import com.easylive.component.EsSearchComponent;
+import com.easylive.component.RedisComponent;
 import com.easylive.entity.constant.Constants;
 import com.easylive.entity.dto.VideoDanmuTaskDTO;
 import com.easylive.entity.enums.SearchOrderTypeEnum;
@@ -8,17 +9,20 @@ import com.easylive.entity.enums.UserActionTypeEnum;
 import com.easylive.entity.po.VideoDanmu;
 import com.easylive.mappers.VideoDanmuMapper;
 import com.easylive.mappers.VideoInfoMapper;
+import com.easylive.mq.codec.BinaryMessageConverter;
 import com.easylive.redis.BloomFilterComponent;
-import com.easylive.redis.RedisUtils;
-import com.easylive.utils.JsonUtils;
+import com.rabbitmq.client.Channel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -29,16 +33,25 @@ import java.util.stream.Collectors;
  * 职责：监听 RabbitMQ 消息，批量处理弹幕写入MySQL
  * 
  * 工作流程：
- * 1. 监听 MQ 中的弹幕任务消息
- * 2. 批量收集弹幕消息（按fileId分组）
- * 3. 批量写入MySQL（批量INSERT）
- * 4. 加入布隆过滤器
- * 5. 更新视频弹幕数量
- * 6. 更新ES弹幕数量
+ * 1. 由监听容器攒批（danmuBatchContainerFactory），一次交付一整批消息
+ * 2. 解析消息（二进制/旧 JSON 格式，一条消息可能包含多条弹幕）+ 整批幂等性检查（一次 Redis 往返）
+ * 3. 事务内：多行INSERT + 更新视频弹幕数量
+ * 4. 事务提交后：加入布隆过滤器、更新ES弹幕数量
+ * 5. 整批手动 ACK（multiple=true）
  * 
  * 批量处理策略：
- * - 收集一定数量的消息后批量处理（或定时批量处理）
- * - 按fileId分组，便于批量插入
+ * - 攒够 RABBITMQ_DANMU_BATCH_SIZE 条立即处理
+ * - 超过 RABBITMQ_DANMU_RECEIVE_TIMEOUT 没有新消息，不满一批也立即处理（安静的频道不会积压）
+ * - 消息在落库提交之前不会被 ACK，进程宕机后由 MQ 重新投递，不丢数据
+ * 
+ * 失败处理：
+ * - 首次失败：整批 NACK 重新入队
+ * - 重投后仍失败：逐条写入，隔离坏数据：
+ *   数据本身的错误（违反约束、字段超长等，DataIntegrityViolationException）重试也不会成功，记录日志后丢弃；
+ *   其他错误（数据库不可用等）撤销这些弹幕的幂等标记，只把这些弹幕发送到延迟重试队列（RABBITMQ_DANMU_RETRY_DELAY 后回到本队列），
+ *   确认发送成功后整批 ACK，等待期间不占用消费线程；
+ *   重试队列发送失败（MQ 也不可用）时才在消费线程中等待 RABBITMQ_REQUEUE_DELAY 后整批 NACK 重新入队，
+ *   等待期间该消费线程停止消费，整批消息保持未确认状态，已写入的弹幕重投时按幂等标记跳过
  */
 @Component
 @Slf4j
@@ -49,142 +62,190 @@ public class VideoDanmuConsumer {
     private final VideoInfoMapper<?, ?> videoInfoMapper;
     private final BloomFilterComponent bloomFilterComponent;
     private final EsSearchComponent esSearchComponent;
-    private final RedisUtils<Object> redisUtils;
-
-    // 批量处理缓冲区（按fileId分组）
-    private final Map<String, List<VideoDanmuTaskDTO>> batchBuffer = new HashMap<>();
-    
-    // 批量处理阈值：每批处理50条弹幕
-    private static final int BATCH_SIZE = 50;
-    
-    // 批量处理时间间隔：每5秒处理一次
-    private static final long BATCH_INTERVAL = 5000L;
-    private long lastProcessTime = System.currentTimeMillis();
+    private final RedisComponent redisComponent;
+    private final TransactionTemplate transactionTemplate;
+    private final BinaryMessageConverter binaryMessageConverter;
+    private final VideoDanmuProducer videoDanmuProducer;
 
     /**
-     * 处理接收到的弹幕消息
+     * 批量处理接收到的弹幕消息
      *
-     * @param message JSON 格式的 VideoDanmuTaskDTO 字符串
+     * @param messages 一批消息，每条为二进制格式（一条或多条 VideoDanmuTaskDTO）或旧的 JSON 格式（一条 VideoDanmuTaskDTO），可以混在同一批中
+     * @param channel  RabbitMQ 通道（用于手动确认）
      */
-    @RabbitListener(queues = Constants.RABBITMQ_QUEUE_VIDEO_DANMU)
-    public void onMessage(String message) {
-        try {
-            // 将 JSON 字符串转换为对象
-            VideoDanmuTaskDTO danmuTaskDTO = JsonUtils.convertJson2Obj(message, VideoDanmuTaskDTO.class);
-            
-            if (danmuTaskDTO == null) {
-                log.error("弹幕消息解析失败，message={}", message);
-                return;
-            }
+    @RabbitListener(queues = Constants.RABBITMQ_QUEUE_VIDEO_DANMU, containerFactory = "danmuBatchContainerFactory")
+    public void onMessage(List<Message> messages, Channel channel) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        long lastDeliveryTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
+        boolean redelivered = messages.stream().anyMatch(m -> Boolean.TRUE.equals(m.getMessageProperties().isRedelivered()));
 
-            log.debug("收到弹幕任务消息, videoId={}, fileId={}, userId={}", 
-                danmuTaskDTO.getVideoId(), danmuTaskDTO.getFileId(), danmuTaskDTO.getUserId());
-
-            // 幂等性检查：防止MQ重复投递导致重复处理
-            String businessKey = danmuTaskDTO.getFileId() + ":" + 
-                               danmuTaskDTO.getUserId() + ":" + 
-                               danmuTaskDTO.getPostTime().getTime();
-            String key = "processed:danmu:" + businessKey;
-            
-            if (!redisUtils.setIfAbsent(key, "1", 7 * 24 * 3600 * 1000L)) {
-                log.warn("弹幕已处理过，跳过, key={}", key);
-                return;
+        // 一条消息可能是 JSON（旧格式）或二进制（单条/多条弹幕）
+        List<VideoDanmuTaskDTO> parsedList = new ArrayList<>(messages.size());
+        for (Message msg : messages) {
+            List<VideoDanmuTaskDTO> records;
+            try {
+                records = binaryMessageConverter.decodeAll(msg, VideoDanmuTaskDTO.class);
+            } catch (Exception e) {
+                records = Collections.emptyList();
+            }
+            if (records.isEmpty()) {
+                // 解析失败的消息重投也无法成功，随整批一起ACK
+                log.error("弹幕消息解析失败，contentType={}, size={}", msg.getMessageProperties().getContentType(), msg.getBody().length);
+                continue;
             }
+            for (VideoDanmuTaskDTO danmuTaskDTO : records) {
+                if (danmuTaskDTO.getPostTime() == null) {
+                    log.error("弹幕消息缺少发布时间, fileId={}, userId={}", danmuTaskDTO.getFileId(), danmuTaskDTO.getUserId());
+                    continue;
+                }
+                parsedList.add(danmuTaskDTO);
+            }
+        }
 
-            // 添加到批量处理缓冲区
-            synchronized (batchBuffer) {
-                String fileId = danmuTaskDTO.getFileId();
-                batchBuffer.computeIfAbsent(fileId, k -> new ArrayList<>()).add(danmuTaskDTO);
-
-                // 检查是否需要批量处理
-                int totalSize = batchBuffer.values().stream()
-                    .mapToInt(List::size)
-                    .sum();
-                
-                long currentTime = System.currentTimeMillis();
-                boolean shouldProcess = totalSize >= BATCH_SIZE || 
-                    (currentTime - lastProcessTime) >= BATCH_INTERVAL;
-                
-                if (shouldProcess) {
-                    processBatch();
+        // 幂等性检查：防止MQ重复投递导致重复处理，整批一次判重
+        List<VideoDanmuTaskDTO> danmuList = new ArrayList<>(parsedList.size());
+        try {
+            List<Boolean> firstSeen = parsedList.isEmpty() ? Collections.emptyList() : redisComponent.markDanmuProcessed(parsedList);
+            for (int i = 0; i < parsedList.size(); i++) {
+                if (firstSeen.get(i)) {
+                    danmuList.add(parsedList.get(i));
+                } else {
+                    log.warn("弹幕已处理过，跳过, fileId={}, userId={}, postTime={}",
+                            parsedList.get(i).getFileId(), parsedList.get(i).getUserId(), parsedList.get(i).getPostTime().getTime());
                 }
             }
+        } catch (Exception e) {
+            log.error("弹幕幂等判重失败，整批重新入队, messages={}", messages.size(), e);
+            nack(channel, lastDeliveryTag);
+            return;
+        }
 
+        try {
+            if (!danmuList.isEmpty()) {
+                processBatch(danmuList);
+            }
         } catch (Exception e) {
-            log.error("消费弹幕任务消息失败, message={}", message, e);
+            log.error("批量处理弹幕失败, messages={}, redelivered={}", messages.size(), redelivered, e);
+            if (!redelivered) {
+                // 撤销幂等标记，否则重投的消息会被当成重复消息跳过
+                redisComponent.releaseDanmuProcessed(danmuList);
+                nack(channel, lastDeliveryTag);
+                return;
+            }
+            List<VideoDanmuTaskDTO> retryList = processOneByOne(danmuList);
+            if (!retryList.isEmpty()) {
+                redisComponent.releaseDanmuProcessed(retryList);
+                try {
+                    videoDanmuProducer.sendDanmuRetryTask(retryList);
+                    log.warn("弹幕逐条写入仍有失败，已发送到延迟重试队列, messages={}, retry={}", messages.size(), retryList.size());
+                } catch (Exception retryException) {
+                    log.warn("弹幕逐条写入仍有失败且发送重试队列失败，整批重新入队, messages={}, retry={}", messages.size(), retryList.size(), retryException);
+                    requeueLater(channel, lastDeliveryTag);
+                    return;
+                }
+            }
         }
+
+        // 落库提交后整批确认
+        ack(channel, lastDeliveryTag);
+        log.debug("弹幕批量处理完成并确认, messages={}, persisted={}", messages.size(), danmuList.size());
     }
 
     /**
-     * 批量处理弹幕
+     * 批量处理弹幕：一条多行INSERT，提交后再做缓存类的副作用
      */
-    @Transactional(rollbackFor = Exception.class)
-    public void processBatch() {
-        if (batchBuffer.isEmpty()) {
-            return;
-        }
+    private void processBatch(List<VideoDanmuTaskDTO> danmuList) {
+        List<VideoDanmu> videoDanmuList = danmuList.stream()
+                .map(this::convertToVideoDanmu)
+                .collect(Collectors.toList());
 
-        try {
-            // 复制当前缓冲区并清空
-            Map<String, List<VideoDanmuTaskDTO>> currentBatch;
-            synchronized (batchBuffer) {
-                currentBatch = new HashMap<>(batchBuffer);
-                batchBuffer.clear();
-                lastProcessTime = System.currentTimeMillis();
+        // 按videoId统计本批弹幕数量
+        Map<String, Long> videoIdCountMap = danmuList.stream()
+                .collect(Collectors.groupingBy(VideoDanmuTaskDTO::getVideoId, Collectors.counting()));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            int insertCount = videoDanmuMapper.insertBatch(videoDanmuList);
+            log.debug("批量插入弹幕成功, count={}", insertCount);
+            for (Map.Entry<String, Long> countEntry : videoIdCountMap.entrySet()) {
+                videoInfoMapper.updateCountInfo(countEntry.getKey(), UserActionTypeEnum.VIDEO_DANMU.getField(), countEntry.getValue().intValue());
             }
+        });
 
-            // 按fileId分组处理
-            for (Map.Entry<String, List<VideoDanmuTaskDTO>> entry : currentBatch.entrySet()) {
-                String fileId = entry.getKey();
-                List<VideoDanmuTaskDTO> danmuList = entry.getValue();
+        afterCommit(videoDanmuList, videoIdCountMap);
+    }
 
-                if (danmuList.isEmpty()) {
-                    continue;
-                }
+    /**
+     * 重投后整批仍失败时逐条写入，隔离坏数据
+     *
+     * @return 因为数据之外的原因（数据库不可用等）写入失败、需要重新投递的弹幕
+     */
+    private List<VideoDanmuTaskDTO> processOneByOne(List<VideoDanmuTaskDTO> danmuList) {
+        List<VideoDanmuTaskDTO> retryList = new ArrayList<>();
+        for (VideoDanmuTaskDTO dto : danmuList) {
+            try {
+                processBatch(Collections.singletonList(dto));
+            } catch (DataIntegrityViolationException e) {
+                log.error("弹幕数据错误，丢弃该条, videoId={}, fileId={}, userId={}, text={}",
+                        dto.getVideoId(), dto.getFileId(), dto.getUserId(), dto.getText(), e);
+            } catch (Exception e) {
+                log.error("弹幕写入失败，等待重新投递, videoId={}, fileId={}, userId={}",
+                        dto.getVideoId(), dto.getFileId(), dto.getUserId(), e);
+                retryList.add(dto);
+            }
+        }
+        return retryList;
+    }
 
-                // 转换为VideoDanmu实体列表
-                List<VideoDanmu> videoDanmuList = danmuList.stream()
-                    .map(this::convertToVideoDanmu)
-                    .collect(Collectors.toList());
-
-                // 批量插入MySQL
-                int insertCount = videoDanmuMapper.insertBatch(videoDanmuList);
-                log.debug("批量插入弹幕成功, fileId={}, count={}", fileId, insertCount);
-
-                // 加入布隆过滤器（批量插入后，danmuId已由数据库自动生成）
-                for (VideoDanmu danmu : videoDanmuList) {
-                    if (danmu.getDanmuId() != null) {
-                        bloomFilterComponent.addDanmu(danmu.getDanmuId());
-                    } else {
-                        log.warn("弹幕插入后danmuId为空, fileId={}, videoId={}", 
+    /**
+     * 事务提交后的副作用：布隆过滤器、ES计数（失败不影响已落库的数据）
+     */
+    private void afterCommit(List<VideoDanmu> videoDanmuList, Map<String, Long> videoIdCountMap) {
+        try {
+            // 批量插入后，danmuId已由数据库自动生成
+            for (VideoDanmu danmu : videoDanmuList) {
+                if (danmu.getDanmuId() != null) {
+                    bloomFilterComponent.addDanmu(danmu.getDanmuId());
+                } else {
+                    log.warn("弹幕插入后danmuId为空, fileId={}, videoId={}",
                             danmu.getFileId(), danmu.getVideoId());
-                    }
                 }
+            }
+            for (Map.Entry<String, Long> countEntry : videoIdCountMap.entrySet()) {
+                esSearchComponent.updateDocCount(countEntry.getKey(), SearchOrderTypeEnum.VIDEO_DANMU.getField(), countEntry.getValue().intValue());
+            }
+        } catch (Exception e) {
+            log.error("弹幕落库后更新布隆过滤器/ES失败", e);
+        }
+    }
 
-                // 更新视频弹幕数量（按videoId分组统计）
-                Map<String, Long> videoIdCountMap = danmuList.stream()
-                    .collect(Collectors.groupingBy(
-                        VideoDanmuTaskDTO::getVideoId,
-                        Collectors.counting()
-                    ));
-
-                for (Map.Entry<String, Long> countEntry : videoIdCountMap.entrySet()) {
-                    String videoId = countEntry.getKey();
-                    Long count = countEntry.getValue();
-                    
-                    // 更新视频弹幕数量
-                    videoInfoMapper.updateCountInfo(videoId, UserActionTypeEnum.VIDEO_DANMU.getField(), count.intValue());
-                    
-                    // 更新ES弹幕数量
-                    esSearchComponent.updateDocCount(videoId, SearchOrderTypeEnum.VIDEO_DANMU.getField(), count.intValue());
-                }
+    private void ack(Channel channel, long deliveryTag) {
+        try {
+            channel.basicAck(deliveryTag, true);
+        } catch (IOException e) {
+            log.error("确认弹幕消息失败, deliveryTag={}", deliveryTag, e);
+        }
+    }
 
-                log.debug("批量处理弹幕完成, fileId={}, count={}", fileId, danmuList.size());
-            }
+    /**
+     * 等待一段时间再重新入队，数据库故障期间不会反复空转
+     * 只在延迟重试队列不可用时使用：等待期间阻塞消费线程，整批消息保持未确认
+     */
+    private void requeueLater(Channel channel, long deliveryTag) {
+        try {
+            Thread.sleep(Constants.RABBITMQ_REQUEUE_DELAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        nack(channel, deliveryTag);
+    }
 
-        } catch (Exception e) {
-            log.error("批量处理弹幕失败", e);
-            throw e;
+    private void nack(Channel channel, long deliveryTag) {
+        try {
+            channel.basicNack(deliveryTag, true, true);
+        } catch (IOException e) {
+            log.error("拒绝弹幕消息失败, deliveryTag={}", deliveryTag, e);
         }
     }
 
@@ -204,4 +265,3 @@ public class VideoDanmuConsumer {
         return danmu;
     }
 }
-
@@ -1,14 +1,15 @@
 package com.easylive.mq;
 
+import com.easylive.entity.config.AppConfig;
 import com.easylive.entity.constant.Constants;
 import com.easylive.entity.dto.VideoDanmuTaskDTO;
 import com.easylive.utils.JsonUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.connection.CorrelationData;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * 弹幕任务消息生产者
  * 
@@ -18,14 +19,16 @@ import org.springframework.stereotype.Component;
  * 1. 当用户发送弹幕时，异步发送弹幕任务到MQ
  * 2. 避免同步处理影响接口响应时间
  * 3. 支持高并发弹幕发送场景
- * 4. 使用 CorrelationData 追踪消息，支持生产者确认机制
+ * 4. 经 AsyncMessagePublisher 异步批量发送，请求线程不等待 Broker 确认
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class VideoDanmuProducer {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final AsyncMessagePublisher asyncMessagePublisher;
+
+    private final AppConfig appConfig;
 
     /**
      * 发送弹幕任务到消息队列
@@ -34,24 +37,22 @@ public class VideoDanmuProducer {
      */
     public void sendDanmuTask(VideoDanmuTaskDTO danmuTaskDTO) {
         try {
-            // 将对象转换为 JSON 字符串
-            String messageBody = JsonUtils.convertObj2Json(danmuTaskDTO);
+            // 开启二进制格式时直接发送对象（由 BinaryMessageConverter 编码，并可与其他记录合并发送），否则发送 JSON 字符串
+            Object messageBody = appConfig.getMqBinaryCodecEnabled() ? danmuTaskDTO : JsonUtils.convertObj2Json(danmuTaskDTO);
 
-            // 使用 CorrelationData 追踪消息（用于生产者确认回调）
-            // messageId 格式：DANMU_{videoId}_{fileId}_{userId}，便于在回调中识别弹幕任务
+            // messageId 格式：DANMU_{videoId}_{fileId}_{userId}，便于在确认回调中识别弹幕任务
             String messageId = "DANMU_" + danmuTaskDTO.getVideoId() + "_" + 
                 danmuTaskDTO.getFileId() + "_" + danmuTaskDTO.getUserId();
-            CorrelationData correlationData = new CorrelationData(messageId);
 
-            // 发送消息到 RabbitMQ（Direct 交换机）
-            rabbitTemplate.convertAndSend(
+            // 放入异步发送缓冲区（Direct 交换机）
+            asyncMessagePublisher.publish(
                 Constants.RABBITMQ_EXCHANGE_VIDEO_DANMU,
                 Constants.RABBITMQ_ROUTING_KEY_VIDEO_DANMU,
                 messageBody,
-                correlationData  // 传入 CorrelationData 用于追踪
+                messageId
             );
 
-            log.debug("弹幕任务已发送到MQ, videoId={}, fileId={}, userId={}, messageId={}", 
+            log.debug("弹幕任务已提交到MQ发送缓冲区, videoId={}, fileId={}, userId={}, messageId={}", 
                 danmuTaskDTO.getVideoId(), danmuTaskDTO.getFileId(), danmuTaskDTO.getUserId(), messageId);
         } catch (Exception e) {
             log.error("发送弹幕任务到MQ失败, videoId={}, fileId={}, userId={}", 
@@ -59,5 +60,27 @@ public class VideoDanmuProducer {
             throw new RuntimeException("发送消息到MQ失败", e);
         }
     }
+
+    /**
+     * 发送弹幕到延迟重试队列，延迟到期后回到弹幕主队列
+     * 同步等待 Broker 确认，调用方确认发送成功后才能 ACK 原消息
+     *
+     * @param danmuList 写入失败、需要重试的弹幕
+     */
+    public void sendDanmuRetryTask(List<VideoDanmuTaskDTO> danmuList) {
+        if (appConfig.getMqBinaryCodecEnabled()) {
+            // 二进制格式：整批合并成一条消息
+            VideoDanmuTaskDTO first = danmuList.get(0);
+            asyncMessagePublisher.publishConfirmed(Constants.RABBITMQ_EXCHANGE_VIDEO_DANMU_RETRY, Constants.RABBITMQ_ROUTING_KEY_VIDEO_DANMU_RETRY,
+                danmuList, "DANMU_RETRY_" + first.getVideoId() + "_" + first.getFileId() + "_" + danmuList.size());
+        } else {
+            for (VideoDanmuTaskDTO danmuTaskDTO : danmuList) {
+                asyncMessagePublisher.publishConfirmed(Constants.RABBITMQ_EXCHANGE_VIDEO_DANMU_RETRY, Constants.RABBITMQ_ROUTING_KEY_VIDEO_DANMU_RETRY,
+                    JsonUtils.convertObj2Json(danmuTaskDTO),
+                    "DANMU_RETRY_" + danmuTaskDTO.getVideoId() + "_" + danmuTaskDTO.getFileId() + "_" + danmuTaskDTO.getUserId());
+            }
+        }
+        log.info("弹幕已发送到延迟重试队列, count={}, delay={}ms", danmuList.size(), Constants.RABBITMQ_DANMU_RETRY_DELAY);
+    }
 }
 
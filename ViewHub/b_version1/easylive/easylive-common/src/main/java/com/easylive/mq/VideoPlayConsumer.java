@@ -7,28 +7,33 @@ import com.easylive.entity.dto.VideoPlayInfoDto;
 import com.easylive.entity.enums.SearchOrderTypeEnum;
 import com.easylive.service.VideoInfoService;
 import com.easylive.service.VideoPlayHistoryService;
-import com.easylive.utils.JsonUtils;
+import com.easylive.mq.codec.BinaryMessageConverter;
+import com.rabbitmq.client.Channel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 视频播放统计任务消息消费者
  * 
- * 职责：监听 RabbitMQ 消息，处理视频播放统计任务
+ * 职责：监听 RabbitMQ 消息，批量处理视频播放统计任务
  * 
  * 工作流程：
- * 1. 监听 MQ 中的视频播放统计任务消息
- * 2. 解析消息内容
- * 3. 增加视频播放次数
- * 4. 保存播放历史记录（如果用户已登录）
- * 5. 记录每日播放统计
- * 6. 更新ES播放数量
+ * 1. 由监听容器攒批（playBatchContainerFactory），一次交付一整批消息
+ * 2. 解析消息内容（二进制/旧 JSON 格式，一条消息可能包含多条播放记录）
+ * 3. 按视频合并后增加播放次数、更新ES播放数量
+ * 4. 保存播放历史记录（如果用户已登录）、记录每日播放统计
+ * 5. 整批手动 ACK（multiple=true）
  * 
- * @RabbitListener 注解说明：
- * - queues: 监听的队列名称
- * - concurrency: 并发消费线程数（可选）
+ * 播放统计允许少量误差：单条记录处理失败只记录日志，不重试
  */
 @Component
 @Slf4j
@@ -39,55 +44,74 @@ public class VideoPlayConsumer {
     private final VideoPlayHistoryService videoPlayHistoryService;
     private final RedisComponent redisComponent;
     private final EsSearchComponent esSearchComponent;
+    private final BinaryMessageConverter binaryMessageConverter;
 
     /**
-     * 处理接收到的消息
+     * 批量处理接收到的消息
      *
-     * @param message JSON 格式的 VideoPlayInfoDto 字符串
+     * @param messages 一批播放统计消息
+     * @param channel  RabbitMQ 通道（用于手动确认）
      */
-    @RabbitListener(queues = Constants.RABBITMQ_QUEUE_VIDEO_PLAY)
-    public void onMessage(String message) {
+    @RabbitListener(queues = Constants.RABBITMQ_QUEUE_VIDEO_PLAY, containerFactory = "playBatchContainerFactory")
+    public void onMessage(List<Message> messages, Channel channel) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        long lastDeliveryTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
         try {
-            // 将 JSON 字符串转换为对象
-            VideoPlayInfoDto videoPlayInfoDto = JsonUtils.convertJson2Obj(message, VideoPlayInfoDto.class);
-            
-            if (videoPlayInfoDto == null) {
-                log.error("消息解析失败，message={}", message);
-                return;
+            List<VideoPlayInfoDto> playList = new ArrayList<>(messages.size());
+            for (Message msg : messages) {
+                try {
+                    playList.addAll(binaryMessageConverter.decodeAll(msg, VideoPlayInfoDto.class));
+                } catch (Exception e) {
+                    log.error("消息解析失败，contentType={}, size={}", msg.getMessageProperties().getContentType(), msg.getBody().length, e);
+                }
             }
-
-            log.debug("收到视频播放统计任务消息, videoId={}, userId={}, fileIndex={}", 
-                videoPlayInfoDto.getVideoId(), videoPlayInfoDto.getUserId(), videoPlayInfoDto.getFileIndex());
-
-            // 增加视频播放次数
-            videoInfoService.addReadCount(videoPlayInfoDto.getVideoId());
-
-            // 如果userId不为空，则添加历史记录
-            if (videoPlayInfoDto.getUserId() != null) {
-                // 记录历史记录
-                videoPlayHistoryService.saveHistory(
-                    videoPlayInfoDto.getUserId(), 
-                    videoPlayInfoDto.getVideoId(), 
-                    videoPlayInfoDto.getFileIndex()
-                );
+            processPlayList(playList);
+            log.debug("视频播放统计批量处理完成, messages={}, plays={}", messages.size(), playList.size());
+        } catch (Exception e) {
+            log.error("消费视频播放统计任务消息失败, messages={}", messages.size(), e);
+        } finally {
+            try {
+                channel.basicAck(lastDeliveryTag, true);
+            } catch (IOException e) {
+                log.error("确认播放统计消息失败, deliveryTag={}", lastDeliveryTag, e);
             }
+        }
+    }
 
-            // 按天来记录视频播放
-            redisComponent.recordVideoPlayCount(videoPlayInfoDto.getVideoId());
-
-            // 更新ES播放数量 playCount+1
-            esSearchComponent.updateDocCount(
-                videoPlayInfoDto.getVideoId(), 
-                SearchOrderTypeEnum.VIDEO_PLAY.getField(), 
-                1
-            );
-
-            log.debug("视频播放统计任务处理成功, videoId={}, userId={}", 
-                videoPlayInfoDto.getVideoId(), videoPlayInfoDto.getUserId());
+    private void processPlayList(List<VideoPlayInfoDto> playList) {
+        Map<String, Integer> videoPlayCountMap = new HashMap<>();
+        for (VideoPlayInfoDto videoPlayInfoDto : playList) {
+            if (videoPlayInfoDto.getVideoId() == null) {
+                continue;
+            }
+            videoPlayCountMap.merge(videoPlayInfoDto.getVideoId(), 1, Integer::sum);
+            try {
+                // 如果userId不为空，则添加历史记录
+                if (videoPlayInfoDto.getUserId() != null) {
+                    videoPlayHistoryService.saveHistory(
+                        videoPlayInfoDto.getUserId(),
+                        videoPlayInfoDto.getVideoId(),
+                        videoPlayInfoDto.getFileIndex()
+                    );
+                }
+                // 按天来记录视频播放
+                redisComponent.recordVideoPlayCount(videoPlayInfoDto.getVideoId());
+            } catch (Exception e) {
+                log.error("处理播放记录失败, videoId={}, userId={}", videoPlayInfoDto.getVideoId(), videoPlayInfoDto.getUserId(), e);
+            }
+        }
 
-        } catch (Exception e) {
-            log.error("消费视频播放统计任务消息失败, message={}", message, e);
+        for (Map.Entry<String, Integer> entry : videoPlayCountMap.entrySet()) {
+            try {
+                // 增加视频播放次数
+                videoInfoService.addReadCount(entry.getKey(), entry.getValue());
+                // 更新ES播放数量
+                esSearchComponent.updateDocCount(entry.getKey(), SearchOrderTypeEnum.VIDEO_PLAY.getField(), entry.getValue());
+            } catch (Exception e) {
+                log.error("更新播放数量失败, videoId={}, count={}", entry.getKey(), entry.getValue(), e);
+            }
         }
     }
 }
-
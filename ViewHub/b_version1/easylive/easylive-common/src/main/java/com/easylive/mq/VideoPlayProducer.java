@@ -1,11 +1,11 @@
 package com.easylive.mq;
 
+import com.easylive.entity.config.AppConfig;
 import com.easylive.entity.constant.Constants;
 import com.easylive.entity.dto.VideoPlayInfoDto;
 import com.easylive.utils.JsonUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
 /**
@@ -17,13 +17,16 @@ import org.springframework.stereotype.Component;
  * 1. 当用户播放视频时，异步发送播放统计任务
  * 2. 避免同步处理影响接口响应时间
  * 3. 支持高并发播放统计场景
+ * 4. 经 AsyncMessagePublisher 异步批量发送，请求线程不等待 Broker 确认
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class VideoPlayProducer {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final AsyncMessagePublisher asyncMessagePublisher;
+
+    private final AppConfig appConfig;
 
     /**
      * 发送视频播放统计任务到消息队列
@@ -32,17 +35,18 @@ public class VideoPlayProducer {
      */
     public void sendVideoPlayTask(VideoPlayInfoDto videoPlayInfoDto) {
         try {
-            // 将对象转换为 JSON 字符串
-            String messageBody = JsonUtils.convertObj2Json(videoPlayInfoDto);
+            // 开启二进制格式时直接发送对象（由 BinaryMessageConverter 编码，并可与其他记录合并发送），否则发送 JSON 字符串
+            Object messageBody = appConfig.getMqBinaryCodecEnabled() ? videoPlayInfoDto : JsonUtils.convertObj2Json(videoPlayInfoDto);
 
-            // 发送消息到 RabbitMQ（Direct 交换机）
-            rabbitTemplate.convertAndSend(
+            // 放入异步发送缓冲区（Direct 交换机）
+            asyncMessagePublisher.publish(
                 Constants.RABBITMQ_EXCHANGE_VIDEO_PLAY,
                 Constants.RABBITMQ_ROUTING_KEY_VIDEO_PLAY,
-                messageBody
+                messageBody,
+                "PLAY_" + videoPlayInfoDto.getVideoId()
             );
 
-            log.debug("视频播放统计任务已发送到MQ, videoId={}, userId={}, fileIndex={}", 
+            log.debug("视频播放统计任务已提交到MQ发送缓冲区, videoId={}, userId={}, fileIndex={}", 
                 videoPlayInfoDto.getVideoId(), videoPlayInfoDto.getUserId(), videoPlayInfoDto.getFileIndex());
         } catch (Exception e) {
             log.error("发送视频播放统计任务到MQ失败, videoId={}, userId={}", 
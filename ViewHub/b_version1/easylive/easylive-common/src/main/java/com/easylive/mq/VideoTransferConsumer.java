@@ -1,6 +1,11 @@
 package com.easylive.mq;
 
+import com.easylive.component.RedisComponent;
+import com.easylive.component.VideoTransferScheduler;
+import com.easylive.entity.config.AppConfig;
 import com.easylive.entity.constant.Constants;
+import com.easylive.entity.dto.UploadingFileDto;
+import com.easylive.entity.enums.TransferLaneEnum;
 import com.easylive.entity.po.VideoInfoFilePost;
 import com.easylive.service.VideoInfoPostService;
 import com.easylive.utils.JsonUtils;
@@ -16,23 +21,25 @@ import java.io.IOException;
 /**
  * 视频转码任务消息消费者
  * 
- * 职责：监听 RabbitMQ 消息，处理视频转码任务
+ * 职责：监听 RabbitMQ 消息，把转码任务交给 VideoTransferScheduler 调度执行
  * 
  * 工作流程：
- * 1. 监听 MQ 中的视频转码任务消息
- * 2. 解析消息内容
- * 3. 调用转码服务执行转码
- * 4. 手动确认消息（ACK）
- * 5. 处理失败消息（NACK，进入死信队列）
+ * 1. 监听 MQ 中的视频转码任务消息（单消费者 + 较大 prefetch，见 transferContainerFactory）
+ * 2. 解析消息内容，确定调度通道：
+ *    - 失败后的延迟重试（消息中的 transferRetryCount > 0，和 VideoInfoFilePost 上记录的重试次数一致）-> 重新转码通道（最低优先级）
+ *    - 文件小于 transfer.shortVideoSizeMb -> 短视频通道（最高优先级）
+ *    - 其余 -> 普通通道
+ * 3. 提交给调度器，由调度器按优先级、用户公平和系统负载决定执行时机
+ * 4. 转码结束后在回调中手动确认消息（ACK / NACK 进入死信队列）
  * 
- * 死信队列机制：
- * - 消息处理失败时，拒绝消息（NACK），消息会进入死信队列
- * - 消息超过30分钟未消费，自动进入死信队列
- * - 死信队列中的消息可以用于告警、重试或人工处理
+ * 失败重试：
+ * - 转码失败由 VideoInfoPostService 判断是否可重试，可重试的按 1分钟/5分钟/30分钟 进入延迟重试队列，
+ *   到期后回到本队列（走重新转码通道），失败状态记录在 VideoInfoFilePost 上
+ * - 不可重试或重试耗尽：文件标记为转码失败
  * 
- * @RabbitListener 注解说明：
- * - queues: 监听的队列名称
- * - concurrency: 并发消费线程数（2-5个，根据服务器性能调整）
+ * 死信队列机制：
+ * - 消息无法处理时，拒绝消息（NACK），消息会进入死信队列
+ * - 死信队列中仍处于转码中的文件会被标记为转码失败
  */
 @Component
 @Slf4j
@@ -41,6 +48,12 @@ public class VideoTransferConsumer {
 
     private final VideoInfoPostService videoInfoPostService;
 
+    private final VideoTransferScheduler videoTransferScheduler;
+
+    private final RedisComponent redisComponent;
+
+    private final AppConfig appConfig;
+
     /**
      * 处理转码任务消息
      * 
@@ -48,46 +61,59 @@ public class VideoTransferConsumer {
      * @param channel RabbitMQ 通道（用于手动确认）
      * @param msg RabbitMQ 消息对象（用于获取 deliveryTag）
      */
-    @RabbitListener(queues = Constants.RABBITMQ_QUEUE_VIDEO_TRANSFER, 
-                    concurrency = "2-5")  // 最小2个，最大5个消费者
+    @RabbitListener(queues = Constants.RABBITMQ_QUEUE_VIDEO_TRANSFER, containerFactory = "transferContainerFactory")
     public void onMessage(String message, Channel channel, Message msg) {
         long deliveryTag = msg.getMessageProperties().getDeliveryTag();
-        
-        try {
-            // 将 JSON 字符串转换为对象
-            VideoInfoFilePost videoInfoFile = JsonUtils.convertJson2Obj(message, VideoInfoFilePost.class);
-            
-            if (videoInfoFile == null) {
-                log.error("转码任务消息解析失败，message={}", message);
-                // 拒绝消息，不重新入队（避免无限循环）
-                channel.basicNack(deliveryTag, false, false);
-                return;
-            }
 
-            log.info("收到转码任务, uploadId={}, videoId={}, fileId={}", 
-                videoInfoFile.getUploadId(), videoInfoFile.getVideoId(), videoInfoFile.getFileId());
-
-            // 执行转码（这里会调用 FFmpeg 进行视频转码）
-            videoInfoPostService.transferVideoFile(videoInfoFile);
+        VideoInfoFilePost videoInfoFile = JsonUtils.convertJson2Obj(message, VideoInfoFilePost.class);
+        if (videoInfoFile == null) {
+            log.error("转码任务消息解析失败，message={}", message);
+            // 拒绝消息，不重新入队（避免无限循环）
+            nack(channel, deliveryTag, message);
+            return;
+        }
 
-            // 转码成功，手动确认消息
-            channel.basicAck(deliveryTag, false);
-            
-            log.info("转码任务处理成功, uploadId={}, videoId={}", 
-                videoInfoFile.getUploadId(), videoInfoFile.getVideoId());
+        TransferLaneEnum lane = getLane(videoInfoFile);
+        log.info("收到转码任务, uploadId={}, videoId={}, fileId={}, lane={}",
+            videoInfoFile.getUploadId(), videoInfoFile.getVideoId(), videoInfoFile.getFileId(), lane);
 
-        } catch (Exception e) {
-            log.error("转码任务处理失败, message={}", message, e);
-            
-            try {
-                // 拒绝消息，重新入队（true表示重新入队，false表示不重新入队）
-                // 设置为false，让消息进入死信队列，避免无限重试
-                channel.basicNack(deliveryTag, false, false);
-                
-                log.warn("转码任务已拒绝，将进入死信队列, message={}", message);
-            } catch (IOException ioException) {
-                log.error("拒绝消息失败", ioException);
+        // 执行转码（这里会调用 FFmpeg 进行视频转码），结束后在调度器线程中确认消息
+        videoTransferScheduler.submit(videoInfoFile, lane, () -> videoInfoPostService.transferVideoFile(videoInfoFile), success -> {
+            if (success) {
+                try {
+                    channel.basicAck(deliveryTag, false);
+                    log.info("转码任务处理成功, uploadId={}, videoId={}",
+                        videoInfoFile.getUploadId(), videoInfoFile.getVideoId());
+                } catch (IOException e) {
+                    log.error("确认转码消息失败, fileId={}", videoInfoFile.getFileId(), e);
+                }
+            } else {
+                nack(channel, deliveryTag, message);
             }
+        });
+    }
+
+    private TransferLaneEnum getLane(VideoInfoFilePost videoInfoFile) {
+        // 失败后的延迟重试，重试次数由 sendTransferRetryTask 写入消息；
+        // 不看 redelivered 标记：消费者重启、连接断开时未确认的新任务也会被重新投递，不是重新转码
+        if (videoInfoFile.getTransferRetryCount() != null && videoInfoFile.getTransferRetryCount() > 0) {
+            return TransferLaneEnum.RETRANSCODE;
+        }
+        UploadingFileDto fileDto = redisComponent.getUploadingVideoFile(videoInfoFile.getUserId(), videoInfoFile.getUploadId());
+        if (fileDto != null && fileDto.getFileSize() != null
+            && fileDto.getFileSize() < appConfig.getTransferShortVideoSizeMb() * Constants.MB_SIZE) {
+            return TransferLaneEnum.SHORT;
+        }
+        return TransferLaneEnum.NORMAL;
+    }
+
+    private void nack(Channel channel, long deliveryTag, String message) {
+        try {
+            // 设置为false，让消息进入死信队列，避免无限重试
+            channel.basicNack(deliveryTag, false, false);
+            log.warn("转码任务已拒绝，将进入死信队列, message={}", message);
+        } catch (IOException ioException) {
+            log.error("拒绝消息失败", ioException);
         }
     }
 
@@ -111,15 +137,10 @@ public class VideoTransferConsumer {
                 videoInfoFile != null ? videoInfoFile.getVideoId() : "unknown",
                 videoInfoFile != null ? videoInfoFile.getFileId() : "unknown");
             
-            // 这里可以：
-            // 1. 发送告警通知（邮件、短信、钉钉等）
-            // 2. 记录失败日志到数据库
-            // 3. 更新视频状态为转码失败
-            // 4. 通知管理员处理
-            
-            // 示例：更新视频状态为转码失败（需要在Service中实现）
+            // 可重试的失败已经在延迟重试队列中处理，进入这里的是消息无法处理或调度执行异常，
+            // 仍处于转码中的文件标记为转码失败，避免稿件一直停留在转码中
             if (videoInfoFile != null) {
-                // videoInfoPostService.markTransferFailed(videoInfoFile);
+                videoInfoPostService.markTransferFailed(videoInfoFile, "转码任务进入死信队列");
                 log.warn("转码任务失败，建议人工处理, uploadId={}, videoId={}", 
                     videoInfoFile.getUploadId(), videoInfoFile.getVideoId());
             }
@@ -5,8 +5,6 @@ import com.easylive.entity.po.VideoInfoFilePost;
 import com.easylive.utils.JsonUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.connection.CorrelationData;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -21,14 +19,15 @@ import java.util.List;
  * 2. 避免同步转码影响接口响应时间
  * 3. 支持高并发视频上传场景
  * 4. 消息持久化，防止转码任务丢失
- * 5. 使用 CorrelationData 追踪消息，支持生产者确认机制
+ * 5. 同步发送并等待 Broker 确认（AsyncMessagePublisher.publishConfirmed），不经过内存缓冲区；
+ *    发送失败时抛出异常，提交稿件的事务回滚，重试任务发送失败时分P标记为转码失败，不会一直停留在转码中
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class VideoTransferProducer {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final AsyncMessagePublisher asyncMessagePublisher;
 
     /**
      * 发送视频转码任务到消息队列
@@ -40,18 +39,16 @@ public class VideoTransferProducer {
             // 将对象转换为 JSON 字符串
             String messageBody = JsonUtils.convertObj2Json(videoInfoFile);
 
-            // 使用 CorrelationData 追踪消息（用于生产者确认回调）
-            // messageId 格式：TRANSFER_{uploadId}_{fileId}，便于在回调中识别转码任务
+            // messageId 格式：TRANSFER_{uploadId}_{fileId}，便于在确认回调中识别转码任务
             String messageId = "TRANSFER_" + videoInfoFile.getUploadId() + "_" + videoInfoFile.getFileId();
-            CorrelationData correlationData = new CorrelationData(messageId);
 
-            // 发送消息到 RabbitMQ（Direct 交换机）
+            // 同步发送到 Direct 交换机并等待确认
             // 消息会自动持久化（队列和消息都设置了持久化）
-            rabbitTemplate.convertAndSend(
+            asyncMessagePublisher.publishConfirmed(
                 Constants.RABBITMQ_EXCHANGE_VIDEO_TRANSFER,
                 Constants.RABBITMQ_ROUTING_KEY_VIDEO_TRANSFER,
                 messageBody,
-                correlationData  // 传入 CorrelationData 用于追踪
+                messageId
             );
 
             log.info("视频转码任务已发送到MQ, uploadId={}, videoId={}, fileId={}, messageId={}", 
@@ -66,6 +63,25 @@ public class VideoTransferProducer {
         }
     }
 
+    /**
+     * 发送转码重试任务到第 retryCount 个延迟队列，延迟到期后自动回到转码主队列
+     *
+     * @param videoInfoFile 视频文件信息（transferRetryCount 为本次重试序号）
+     * @param retryCount    第几次重试，从 1 开始
+     */
+    public void sendTransferRetryTask(VideoInfoFilePost videoInfoFile, int retryCount) {
+        String messageBody = JsonUtils.convertObj2Json(videoInfoFile);
+        String messageId = "TRANSFER_RETRY_" + retryCount + "_" + videoInfoFile.getUploadId() + "_" + videoInfoFile.getFileId();
+        asyncMessagePublisher.publishConfirmed(
+            Constants.RABBITMQ_EXCHANGE_VIDEO_TRANSFER_RETRY,
+            Constants.RABBITMQ_ROUTING_KEY_VIDEO_TRANSFER_RETRY_PREFIX + retryCount,
+            messageBody,
+            messageId
+        );
+        log.info("视频转码重试任务已发送到MQ, uploadId={}, fileId={}, retryCount={}, delay={}ms",
+            videoInfoFile.getUploadId(), videoInfoFile.getFileId(), retryCount, Constants.RABBITMQ_TRANSFER_RETRY_DELAYS[retryCount - 1]);
+    }
+
     /**
      * 批量发送视频转码任务到消息队列
      * 
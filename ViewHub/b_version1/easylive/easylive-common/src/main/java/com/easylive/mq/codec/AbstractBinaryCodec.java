@@ -0,0 +1,84 @@
+package com.easylive.mq.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * 二进制编解码基础方法
+ *
+ * - 整数使用变长编码（varint），小数字只占 1 个字节
+ * - 可空字段写入 值+1，0 表示 null（字符串写 长度+1）
+ */
+public abstract class AbstractBinaryCodec<T> implements MessageCodec<T> {
+
+    public static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("varint 格式错误");
+    }
+
+    protected static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    protected static String readString(DataInputStream in) throws IOException {
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 可空整数（zigzag 编码，负数同样紧凑）
+     */
+    protected static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        writeVarLong(out, value == null ? 0 : Integer.toUnsignedLong((value << 1) ^ (value >> 31)) + 1L);
+    }
+
+    protected static Integer readInteger(DataInputStream in) throws IOException {
+        long raw = readVarLong(in);
+        if (raw == 0) {
+            return null;
+        }
+        int zigzag = (int) (raw - 1);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * 可空时间（毫秒时间戳）
+     */
+    protected static void writeDate(DataOutputStream out, Date value) throws IOException {
+        writeVarLong(out, value == null ? 0 : value.getTime() + 1);
+    }
+
+    protected static Date readDate(DataInputStream in) throws IOException {
+        long raw = readVarLong(in);
+        return raw == 0 ? null : new Date(raw - 1);
+    }
+}
@@ -0,0 +1,163 @@
+package com.easylive.mq.codec;
+
+import com.easylive.utils.JsonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内部 MQ 消息转换器（RabbitTemplate 与监听容器共用，由 Spring Boot 自动装配）
+ *
+ * - 注册了 MessageCodec 的类型（弹幕、播放统计）：编码为紧凑二进制，单条或一批记录合并成一条 AMQP 消息
+ * - 其他类型（JSON 字符串等）：交给 SimpleMessageConverter，与原来的行为一致
+ *
+ * 二进制格式：版本号(1字节) + 类型编号(1字节) + 记录数(varint) + 逐条记录
+ *
+ * 兼容：消费者通过 decodeAll() 同时支持二进制消息和旧的 JSON 文本消息，迁移期间两种格式可以混在同一个队列中
+ */
+@Component
+@Slf4j
+public class BinaryMessageConverter implements MessageConverter {
+
+    public static final String CONTENT_TYPE_BINARY = "application/x-easylive-binary";
+
+    // 一条 AMQP 消息中包含的记录数
+    public static final String HEADER_RECORD_COUNT = "x-record-count";
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private final SimpleMessageConverter fallbackConverter = new SimpleMessageConverter();
+
+    private final Map<Class<?>, MessageCodec<?>> codecByType = new HashMap<>();
+
+    private final Map<Byte, MessageCodec<?>> codecByTypeId = new HashMap<>();
+
+    public BinaryMessageConverter(List<MessageCodec<?>> codecs) {
+        for (MessageCodec<?> codec : codecs) {
+            MessageCodec<?> existing = codecByTypeId.put(codec.getTypeId(), codec);
+            if (existing != null) {
+                throw new IllegalStateException("MQ编解码类型编号重复: " + codec.getTypeId());
+            }
+            codecByType.put(codec.getType(), codec);
+        }
+    }
+
+    /**
+     * 该对象是否以二进制格式发送（可与同类型记录合并成一条消息）
+     */
+    public boolean supports(Object payload) {
+        return payload != null && codecByType.containsKey(payload.getClass());
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        List<?> records;
+        if (object instanceof List && !((List<?>) object).isEmpty() && supports(((List<?>) object).get(0))) {
+            records = (List<?>) object;
+        } else if (supports(object)) {
+            records = Collections.singletonList(object);
+        } else {
+            return fallbackConverter.toMessage(object, messageProperties);
+        }
+        MessageCodec<Object> codec = getCodec(records.get(0).getClass());
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * records.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(codec.getTypeId());
+            AbstractBinaryCodec.writeVarLong(out, records.size());
+            for (Object record : records) {
+                codec.write(record, out);
+            }
+            out.flush();
+            byte[] body = bytes.toByteArray();
+            messageProperties.setContentType(CONTENT_TYPE_BINARY);
+            messageProperties.setContentLength(body.length);
+            messageProperties.setHeader(HEADER_RECORD_COUNT, records.size());
+            return new Message(body, messageProperties);
+        } catch (IOException e) {
+            throw new MessageConversionException("MQ消息编码失败, type=" + codec.getType().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * 二进制消息：单条记录返回对象，多条返回 List；其他消息与 SimpleMessageConverter 一致
+     */
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        if (!isBinary(message)) {
+            return fallbackConverter.fromMessage(message);
+        }
+        List<Object> records = decodeBinary(message);
+        return records.size() == 1 ? records.get(0) : records;
+    }
+
+    /**
+     * 消费者统一入口：把一条 AMQP 消息解码为记录列表（二进制单条/批量、旧 JSON 格式都支持）
+     * 解析失败返回空列表
+     */
+    public <T> List<T> decodeAll(Message message, Class<T> type) {
+        if (!isBinary(message)) {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            T record = JsonUtils.convertJson2Obj(body, type);
+            return record == null ? Collections.emptyList() : Collections.singletonList(record);
+        }
+        List<Object> records = decodeBinary(message);
+        List<T> result = new ArrayList<>(records.size());
+        for (Object record : records) {
+            if (!type.isInstance(record)) {
+                throw new MessageConversionException("MQ消息类型不匹配, expected=" + type.getSimpleName() + ", actual=" + record.getClass().getSimpleName());
+            }
+            result.add(type.cast(record));
+        }
+        return result;
+    }
+
+    private boolean isBinary(Message message) {
+        return CONTENT_TYPE_BINARY.equals(message.getMessageProperties().getContentType());
+    }
+
+    private List<Object> decodeBinary(Message message) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message.getBody()))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new MessageConversionException("不支持的MQ消息版本: " + version);
+            }
+            byte typeId = in.readByte();
+            @SuppressWarnings("unchecked")
+            MessageCodec<Object> codec = (MessageCodec<Object>) codecByTypeId.get(typeId);
+            if (codec == null) {
+                throw new MessageConversionException("未知的MQ消息类型: " + typeId);
+            }
+            int count = (int) AbstractBinaryCodec.readVarLong(in);
+            List<Object> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                records.add(codec.read(in));
+            }
+            return records;
+        } catch (IOException e) {
+            throw new MessageConversionException("MQ消息解码失败", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private MessageCodec<Object> getCodec(Class<?> type) {
+        return (MessageCodec<Object>) codecByType.get(type);
+    }
+}
@@ -0,0 +1,30 @@
+package com.easylive.mq.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 内部 MQ 消息的二进制编解码器
+ *
+ * 每种消息类型一个实现（注册为 Spring Bean 即生效），由 BinaryMessageConverter 统一调度。
+ * 字段按固定顺序读写，不带字段名；新增字段只能追加在末尾，并且读取时要兼容旧消息没有该字段的情况。
+ *
+ * @param <T> 消息类型
+ */
+public interface MessageCodec<T> {
+
+    /**
+     * 类型编号，写在消息头中，全局唯一且不可修改
+     */
+    byte getTypeId();
+
+    /**
+     * 消息类型
+     */
+    Class<T> getType();
+
+    void write(T record, DataOutputStream out) throws IOException;
+
+    T read(DataInputStream in) throws IOException;
+}
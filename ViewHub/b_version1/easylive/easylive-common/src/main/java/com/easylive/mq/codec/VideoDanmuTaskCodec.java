@@ -0,0 +1,51 @@
+package com.easylive.mq.codec;
+
+import com.easylive.entity.dto.VideoDanmuTaskDTO;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 弹幕任务编解码
+ */
+@Component
+public class VideoDanmuTaskCodec extends AbstractBinaryCodec<VideoDanmuTaskDTO> {
+
+    @Override
+    public byte getTypeId() {
+        return 1;
+    }
+
+    @Override
+    public Class<VideoDanmuTaskDTO> getType() {
+        return VideoDanmuTaskDTO.class;
+    }
+
+    @Override
+    public void write(VideoDanmuTaskDTO record, DataOutputStream out) throws IOException {
+        writeString(out, record.getVideoId());
+        writeString(out, record.getFileId());
+        writeString(out, record.getUserId());
+        writeDate(out, record.getPostTime());
+        writeString(out, record.getText());
+        writeInteger(out, record.getMode());
+        writeString(out, record.getColor());
+        writeInteger(out, record.getTime());
+    }
+
+    @Override
+    public VideoDanmuTaskDTO read(DataInputStream in) throws IOException {
+        VideoDanmuTaskDTO record = new VideoDanmuTaskDTO();
+        record.setVideoId(readString(in));
+        record.setFileId(readString(in));
+        record.setUserId(readString(in));
+        record.setPostTime(readDate(in));
+        record.setText(readString(in));
+        record.setMode(readInteger(in));
+        record.setColor(readString(in));
+        record.setTime(readInteger(in));
+        return record;
+    }
+}
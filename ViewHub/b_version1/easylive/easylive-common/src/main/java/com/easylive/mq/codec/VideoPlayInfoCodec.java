@@ -0,0 +1,41 @@
+package com.easylive.mq.codec;
+
+import com.easylive.entity.dto.VideoPlayInfoDto;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 视频播放统计任务编解码
+ */
+@Component
+public class VideoPlayInfoCodec extends AbstractBinaryCodec<VideoPlayInfoDto> {
+
+    @Override
+    public byte getTypeId() {
+        return 2;
+    }
+
+    @Override
+    public Class<VideoPlayInfoDto> getType() {
+        return VideoPlayInfoDto.class;
+    }
+
+    @Override
+    public void write(VideoPlayInfoDto record, DataOutputStream out) throws IOException {
+        writeString(out, record.getVideoId());
+        writeString(out, record.getUserId());
+        writeInteger(out, record.getFileIndex());
+    }
+
+    @Override
+    public VideoPlayInfoDto read(DataInputStream in) throws IOException {
+        VideoPlayInfoDto record = new VideoPlayInfoDto();
+        record.setVideoId(readString(in));
+        record.setUserId(readString(in));
+        record.setFileIndex(readInteger(in));
+        return record;
+    }
+}
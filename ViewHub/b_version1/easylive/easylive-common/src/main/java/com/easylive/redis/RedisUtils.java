@@ -3,7 +3,10 @@ package com.easylive.redis;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
@@ -26,6 +29,65 @@ public class RedisUtils<V> {
      */
     private static final Random RANDOM = new Random();
 
+    /**
+     * 批量 SADD：KEYS 与 ARGV[2..n] 一一对应，ARGV[1] 为过期时间（毫秒）
+     * 只在 key 还没有过期时间时设置（整个 Set 到期一起删除，不会被每次写入续期）
+     * 返回与成员一一对应的 1（首次添加）/ 0（已存在）
+     */
+    private static final DefaultRedisScript<List<Long>> SADD_BATCH_SCRIPT = listScript(
+            "local result = {} " +
+            "for i = 1, #KEYS do " +
+            "  result[i] = redis.call('SADD', KEYS[i], ARGV[i + 1]) " +
+            "  if result[i] == 1 and tonumber(ARGV[1]) > 0 and redis.call('PTTL', KEYS[i]) == -1 then " +
+            "    redis.call('PEXPIRE', KEYS[i], ARGV[1]) " +
+            "  end " +
+            "end " +
+            "return result");
+
+    /**
+     * 批量 SREM：KEYS 与 ARGV 一一对应
+     */
+    private static final DefaultRedisScript<Long> SREM_BATCH_SCRIPT = new DefaultRedisScript<>(
+            "local removed = 0 " +
+            "for i = 1, #KEYS do " +
+            "  removed = removed + redis.call('SREM', KEYS[i], ARGV[i]) " +
+            "end " +
+            "return removed", Long.class);
+
+    /**
+     * SETBIT + 计数：KEYS[1] 位图，KEYS[2] 计数器，KEYS[3..n] 只续期
+     * ARGV[1] 位偏移，ARGV[2] 首次置位时计数器增量，ARGV[3] 过期时间（毫秒），
+     * ARGV[4] 位图不存在时先置位的前几位（0..n-1），ARGV[5] 计数器不存在时的初始值
+     * 同一位重复置位不会重复计数；返回 {原来的位, 位图中 1 的个数, 计数器当前值}
+     */
+    private static final DefaultRedisScript<List<Long>> SETBIT_INCR_SCRIPT = listScript(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then " +
+            "  for i = 0, tonumber(ARGV[4]) - 1 do redis.call('SETBIT', KEYS[1], i, 1) end " +
+            "  if tonumber(ARGV[5]) > 0 then redis.call('SET', KEYS[2], ARGV[5], 'NX') end " +
+            "end " +
+            "local old = redis.call('SETBIT', KEYS[1], ARGV[1], 1) " +
+            "if old == 0 then redis.call('INCRBY', KEYS[2], ARGV[2]) end " +
+            "if tonumber(ARGV[3]) > 0 then " +
+            "  for i = 1, #KEYS do redis.call('PEXPIRE', KEYS[i], ARGV[3]) end " +
+            "end " +
+            "return {old, redis.call('BITCOUNT', KEYS[1]), tonumber(redis.call('GET', KEYS[2]) or '0')}");
+
+    /**
+     * 返回整数数组的脚本：DefaultRedisScript 只能用 List.class 声明结果类型，在这里转换一次
+     */
+    @SuppressWarnings("unchecked")
+    private static DefaultRedisScript<List<Long>> listScript(String script) {
+        return (DefaultRedisScript<List<Long>>) (DefaultRedisScript<?>) new DefaultRedisScript<>(script, List.class);
+    }
+
+    /**
+     * 脚本结果的序列化器：整数、整数数组不经过序列化器，只需要类型匹配
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> RedisSerializer<T> scriptResultSerializer() {
+        return (RedisSerializer<T>) (RedisSerializer<?>) RedisSerializer.string();
+    }
+
     /**
      * 删除缓存
      *
@@ -45,6 +107,17 @@ public class RedisUtils<V> {
         return key == null ? null : redisTemplate.opsForValue().get(key);
     }
 
+    /**
+     * 批量获取（MGET），返回值与 keys 一一对应，不存在的 key 对应 null
+     */
+    public List<V> multiGet(List<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<V> values = redisTemplate.opsForValue().multiGet(keys);
+        return values == null ? new ArrayList<>(Collections.nCopies(keys.size(), (V) null)) : values;
+    }
+
     /**
      * 普通缓存放入
      *
@@ -263,6 +336,52 @@ public class RedisUtils<V> {
         }
     }
 
+    /**
+     * 批量 Set 添加（用于批量幂等判重，一次网络往返）
+     * 成员按字符串写入，与 sAdd 的 JSON 序列化互不通用，需配合 sRemBatch 使用
+     *
+     * @param keys    每个成员所属的 Set key（与 members 一一对应，可重复）
+     * @param members 成员
+     * @param time    过期时间（毫秒），只在 Set 首次创建时设置
+     * @return 与 members 一一对应：true 首次添加；false 已存在。Redis 异常时抛出，由调用方决定是否重试
+     */
+    public List<Boolean> sAddBatch(List<String> keys, List<String> members, long time) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Object[] args = new Object[members.size() + 1];
+        args[0] = String.valueOf(time);
+        for (int i = 0; i < members.size(); i++) {
+            args[i + 1] = members.get(i);
+        }
+        List<Long> added = redisTemplate.execute(SADD_BATCH_SCRIPT, RedisSerializer.string(), scriptResultSerializer(), keys, args);
+        List<Boolean> result = new ArrayList<>(members.size());
+        for (int i = 0; i < members.size(); i++) {
+            result.add(added != null && i < added.size() && Long.valueOf(1L).equals(added.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * 批量 Set 删除成员（sAddBatch 的逆操作）
+     *
+     * @param keys    每个成员所属的 Set key（与 members 一一对应）
+     * @param members 成员
+     * @return 实际删除的数量
+     */
+    public long sRemBatch(List<String> keys, List<String> members) {
+        if (keys.isEmpty()) {
+            return 0L;
+        }
+        try {
+            Long removed = redisTemplate.execute(SREM_BATCH_SCRIPT, RedisSerializer.string(), scriptResultSerializer(), keys, members.toArray());
+            return removed == null ? 0L : removed;
+        } catch (Exception e) {
+            logger.error("sRemBatch失败, keys={}", keys.size(), e);
+            return 0L;
+        }
+    }
+
     /**
      * Hash 自增（用于写聚合）
      *
@@ -333,6 +452,37 @@ public class RedisUtils<V> {
         }
     }
 
+    /**
+     * 写入 Hash 单个字段
+     *
+     * @param time 过期时间（毫秒），大于 0 时每次写入都会续期
+     */
+    public boolean hSet(String key, String field, V value, long time) {
+        try {
+            redisTemplate.<String, V>opsForHash().put(key, field, value);
+            if (time > 0) {
+                expire(key, time);
+            }
+            return true;
+        } catch (Exception e) {
+            logger.error("hSet失败, key={}, field={}", key, field, e);
+            return false;
+        }
+    }
+
+    /**
+     * 获取 Hash 全量数据
+     */
+    public Map<String, V> hGetAll(String key) {
+        try {
+            Map<String, V> entries = redisTemplate.<String, V>opsForHash().entries(key);
+            return entries == null ? new HashMap<>() : entries;
+        } catch (Exception e) {
+            logger.error("hGetAll失败, key={}", key, e);
+            return new HashMap<>();
+        }
+    }
+
     /**
      * Set 判重：检查成员是否存在
      */
@@ -371,4 +521,69 @@ public class RedisUtils<V> {
             return 0L;
         }
     }
+
+    /**
+     * 位图置位并累加计数器（一次网络往返，用于分片上传进度等场景）
+     * 位图和计数器按字符串写入，不经过 JSON 序列化，读取使用 getRawBytes / getRawLong
+     *
+     * @param bitKey     位图 key
+     * @param offset     位偏移
+     * @param counterKey 计数器 key
+     * @param delta      该位首次置位时计数器的增量
+     * @param time       过期时间（毫秒），每次调用都会续期
+     * @param seedBits   位图不存在（第一次置位）时先把 0..seedBits-1 位置为 1
+     * @param seedValue  位图不存在且计数器不存在时计数器的初始值
+     * @param renewKeys  需要一起续期的其他 key
+     * @return {原来的位(0/1), 位图中 1 的个数, 计数器当前值}。Redis 异常时抛出
+     */
+    public List<Long> setBitAndIncr(String bitKey, long offset, String counterKey, long delta, long time, long seedBits, long seedValue,
+                                    String... renewKeys) {
+        List<String> keys = new ArrayList<>(2 + renewKeys.length);
+        keys.add(bitKey);
+        keys.add(counterKey);
+        keys.addAll(Arrays.asList(renewKeys));
+        List<Long> result = redisTemplate.execute(SETBIT_INCR_SCRIPT, RedisSerializer.string(), scriptResultSerializer(), keys,
+                String.valueOf(offset), String.valueOf(delta), String.valueOf(time), String.valueOf(seedBits), String.valueOf(seedValue));
+        return result == null ? Arrays.asList(0L, 0L, 0L) : result;
+    }
+
+    /**
+     * 读取原始字节（位图等不经过 JSON 序列化的值）
+     */
+    public byte[] getRawBytes(String key) {
+        try {
+            return redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(RedisSerializer.string().serialize(key)));
+        } catch (Exception e) {
+            logger.error("getRawBytes失败, key={}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 读取原始整数（INCRBY 写入的计数器）
+     */
+    public Long getRawLong(String key) {
+        byte[] value = getRawBytes(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(RedisSerializer.string().deserialize(value));
+        } catch (NumberFormatException e) {
+            logger.error("getRawLong值转换失败, key={}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 发布消息（字符串原样发送，不经过 JSON 序列化）
+     */
+    public void publish(String channel, String message) {
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(RedisSerializer.string().serialize(channel),
+                    RedisSerializer.string().serialize(message)));
+        } catch (Exception e) {
+            logger.error("publish失败, channel={}", channel, e);
+        }
+    }
 }
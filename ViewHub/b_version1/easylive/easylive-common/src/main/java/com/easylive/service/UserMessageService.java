@@ -1,6 +1,7 @@
 package com.easylive.service;
 
 import com.easylive.entity.dto.UserMessageCountDto;
+import com.easylive.entity.dto.UserMessageTaskDTO;
 import com.easylive.entity.enums.MessageTypeEnum;
 import com.easylive.entity.po.UserMessage;
 import com.easylive.entity.query.UserMessageQuery;
@@ -74,6 +75,9 @@ public interface UserMessageService {
     //保存用户消息.
     void saveUserMessage(String videoId, String sendUserId, MessageTypeEnum messageTypeEnum, String content, Integer replyCommentId);
 
+    //批量保存用户消息（MQ 批量消费）
+    void saveUserMessageBatch(List<UserMessageTaskDTO> taskList);
+
     //得到具体是（点赞，投币，还是收藏）的未读数量
     List<UserMessageCountDto> getMessageTypeNoReadCount(String userId);
 }
\ No newline at end of file
@@ -77,6 +77,9 @@ public interface VideoInfoPostService {
 	//转码操作
 	void transferVideoFile(VideoInfoFilePost videoInfoFilePost);
 
+	//转码任务进入死信队列后标记为转码失败
+	void markTransferFailed(VideoInfoFilePost videoInfoFilePost, String reason);
+
 	void auditVideo(String videoId, Integer status, String reason);
 
 
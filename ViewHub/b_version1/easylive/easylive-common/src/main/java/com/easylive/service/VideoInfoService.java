@@ -1,6 +1,7 @@
 package com.easylive.service;
 
 import java.util.List;
+import java.util.Map;
 
 import com.easylive.entity.query.VideoInfoQuery;
 import com.easylive.entity.po.VideoInfo;
@@ -57,6 +58,11 @@ public interface VideoInfoService {
 	 */
 	VideoInfo getVideoInfoByVideoId(String videoId);
 
+	/**
+	 * 批量根据VideoId查询（走三级缓存，未命中的一次 IN 查询），返回 videoId -> VideoInfo，不含互动计数增量
+	 */
+	Map<String, VideoInfo> getVideoInfoMapByVideoIds(List<String> videoIdList);
+
 
 	/**
 	 * 根据VideoId修改
@@ -77,6 +83,9 @@ public interface VideoInfoService {
 
 	void addReadCount(String videoId);
 
+	//批量增加播放数量（播放统计消息按视频合并后一次更新）
+	void addReadCount(String videoId, Integer count);
+
 	void recommendVideo(String videoId);
 
 	/**
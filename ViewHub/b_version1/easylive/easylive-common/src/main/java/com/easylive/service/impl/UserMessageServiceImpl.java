@@ -2,6 +2,7 @@ package com.easylive.service.impl;
 
 import com.easylive.entity.dto.UserMessageCountDto;
 import com.easylive.entity.dto.UserMessageExtendDto;
+import com.easylive.entity.dto.UserMessageTaskDTO;
 import com.easylive.entity.enums.MessageReadTypeEnum;
 import com.easylive.entity.enums.MessageTypeEnum;
 import com.easylive.entity.enums.PageSize;
@@ -18,14 +19,15 @@ import com.easylive.mappers.UserMessageMapper;
 import com.easylive.mappers.VideoCommentMapper;
 import com.easylive.mappers.VideoInfoPostMapper;
 import com.easylive.service.UserMessageService;
+import com.easylive.service.VideoInfoService;
 import lombok.RequiredArgsConstructor;
 import com.easylive.utils.JsonUtils;
 import com.easylive.utils.StringTools;
-import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.stereotype.Service;
 
-import java.util.Date;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 /**
@@ -41,6 +43,8 @@ public class UserMessageServiceImpl implements UserMessageService {
 
     private final VideoCommentMapper<VideoComment, VideoCommentQuery> videoCommentMapper;
 
+    private final VideoInfoService videoInfoService;
+
     /**
      * 根据条件查询列表
      */
@@ -148,61 +152,97 @@ public class UserMessageServiceImpl implements UserMessageService {
     // 注意：此方法由RabbitMQ消费者异步调用，无需再使用@Async注解
     @Override
     public void saveUserMessage(String videoId, String sendUserId, MessageTypeEnum messageTypeEnum, String content, Integer replyCommentId) {
-        VideoInfo videoInfo = this.videoInfoPostMapper.selectByVideoId(videoId);   //获取指定的用户信息
-        if (videoInfo == null) {
-            return;
-        }
+        UserMessageTaskDTO taskDTO = new UserMessageTaskDTO();
+        taskDTO.setVideoId(videoId);
+        taskDTO.setSendUserId(sendUserId);
+        taskDTO.setMessageType(messageTypeEnum.getType());
+        taskDTO.setContent(content);
+        taskDTO.setReplyCommentId(replyCommentId);
+        saveUserMessageBatch(Collections.singletonList(taskDTO));
+    }
 
-        UserMessageExtendDto extendDto = new UserMessageExtendDto();
-        extendDto.setMessageContent(content);
-
-        String userId = videoInfo.getUserId();
-
-        //收藏，点赞 已经记录过消息不再记录
-        if (ArrayUtils.contains(new Integer[]{MessageTypeEnum.LIKE.getType(), MessageTypeEnum.COLLECTION.getType()}, messageTypeEnum.getType())) {
-            // 构造查询条件：同一个用户、同一个视频、同一种消息类型
-            UserMessageQuery userMessageQuery = new UserMessageQuery();
-            userMessageQuery.setSendUserId(sendUserId);
-            userMessageQuery.setVideoId(videoId);
-            userMessageQuery.setMessageType(messageTypeEnum.getType());
-            Integer count = userMessageMapper.selectCount(userMessageQuery);
-            //如果找到有相同的记录，则终止
-            if (count > 0) {
-                return;
+    /**
+     * 批量保存用户消息
+     * 1. 视频作者：一次走三级缓存批量获取（未命中的一次 IN 查询）；系统消息和缓存中没有的视频（未发布）查一次投稿表
+     * 2. 被回复的评论：一次 IN 查询
+     * 3. 点赞、收藏去重交给唯一索引，一条多行 INSERT IGNORE 写入
+     */
+    @Override
+    public void saveUserMessageBatch(List<UserMessageTaskDTO> taskList) {
+        List<String> videoIdList = taskList.stream().map(UserMessageTaskDTO::getVideoId).distinct().collect(Collectors.toList());
+        Map<String, VideoInfo> videoInfoMap = videoInfoService.getVideoInfoMapByVideoIds(videoIdList);
+
+        //系统消息需要审核状态，只能查投稿表
+        Set<String> postVideoIdSet = new HashSet<>();
+        for (UserMessageTaskDTO task : taskList) {
+            if (MessageTypeEnum.SYS.getType().equals(task.getMessageType()) || !videoInfoMap.containsKey(task.getVideoId())) {
+                postVideoIdSet.add(task.getVideoId());
             }
         }
-
-        UserMessage userMessage = new UserMessage();
-        userMessage.setUserId(userId);
-        userMessage.setVideoId(videoId);
-        userMessage.setReadType(MessageReadTypeEnum.NO_READ.getType());
-        userMessage.setCreateTime(new Date());
-        userMessage.setMessageType(messageTypeEnum.getType());
-        userMessage.setSendUserId(sendUserId);
-
-        // 如果replyCommentId不为空，说明这是一条回复评论的操作。如果存在的话，则会保存到扩展信息中，用于消息展示
-        if (replyCommentId != null) {
-            VideoComment commentInfo = videoCommentMapper.selectByCommentId(replyCommentId);
-            if (commentInfo!=null) {
-                userId = commentInfo.getUserId();
-                extendDto.setMessageContentReply(commentInfo.getContent());
-            }
+        Map<String, VideoInfoPost> videoInfoPostMap = new HashMap<>();
+        if (!postVideoIdSet.isEmpty()) {
+            VideoInfoPostQuery videoInfoPostQuery = new VideoInfoPostQuery();
+            videoInfoPostQuery.setVideoIdArray(postVideoIdSet.toArray(new String[0]));
+            List<VideoInfoPost> videoInfoPostList = this.videoInfoPostMapper.selectList(videoInfoPostQuery);
+            videoInfoPostMap = videoInfoPostList.stream().collect(Collectors.toMap(VideoInfoPost::getVideoId, Function.identity(), (a, b) -> a));
         }
-        // 如果操作发起者和消息接收者是同一人，则不发送消息
-        if (userId.equals(sendUserId)) {
-            return;
+
+        Integer[] replyCommentIds = taskList.stream().map(UserMessageTaskDTO::getReplyCommentId).filter(Objects::nonNull).distinct().toArray(Integer[]::new);
+        Map<Integer, VideoComment> commentMap = new HashMap<>();
+        if (replyCommentIds.length > 0) {
+            VideoCommentQuery videoCommentQuery = new VideoCommentQuery();
+            videoCommentQuery.setCommentIdArray(replyCommentIds);
+            List<VideoComment> commentList = this.videoCommentMapper.selectList(videoCommentQuery);
+            commentMap = commentList.stream().collect(Collectors.toMap(VideoComment::getCommentId, Function.identity(), (a, b) -> a));
         }
 
-        //系统消息特殊处理。。。也就是管理员审核的消息。
-        if (messageTypeEnum == MessageTypeEnum.SYS) {
-            VideoInfoPost videoInfoPost = videoInfoPostMapper.selectByVideoId(videoId);
-            extendDto.setAuditStatus(videoInfoPost.getStatus());  //保存审核状态
+        List<UserMessage> userMessageList = new ArrayList<>(taskList.size());
+        Date curDate = new Date();
+        for (UserMessageTaskDTO task : taskList) {
+            VideoInfoPost videoInfoPost = videoInfoPostMap.get(task.getVideoId());
+            VideoInfo videoInfo = videoInfoMap.get(task.getVideoId());
+            String userId = videoInfo != null ? videoInfo.getUserId() : videoInfoPost != null ? videoInfoPost.getUserId() : null;
+            if (userId == null) {
+                continue;
+            }
+
+            UserMessageExtendDto extendDto = new UserMessageExtendDto();
+            extendDto.setMessageContent(task.getContent());
+
+            // 如果replyCommentId不为空，说明这是一条回复评论的操作。如果存在的话，则会保存到扩展信息中，用于消息展示
+            if (task.getReplyCommentId() != null) {
+                VideoComment commentInfo = commentMap.get(task.getReplyCommentId());
+                if (commentInfo != null) {
+                    userId = commentInfo.getUserId();
+                    extendDto.setMessageContentReply(commentInfo.getContent());
+                }
+            }
+            // 如果操作发起者和消息接收者是同一人，则不发送消息
+            if (userId.equals(task.getSendUserId())) {
+                continue;
+            }
+
+            //系统消息特殊处理。。。也就是管理员审核的消息。
+            if (MessageTypeEnum.SYS.getType().equals(task.getMessageType()) && videoInfoPost != null) {
+                extendDto.setAuditStatus(videoInfoPost.getStatus());  //保存审核状态
+            }
+
+            UserMessage userMessage = new UserMessage();
+            userMessage.setUserId(userId);
+            userMessage.setVideoId(task.getVideoId());
+            userMessage.setReadType(MessageReadTypeEnum.NO_READ.getType());
+            userMessage.setCreateTime(curDate);
+            userMessage.setMessageType(task.getMessageType());
+            userMessage.setSendUserId(task.getSendUserId());
+            userMessage.setExtendJson(JsonUtils.convertObj2Json(extendDto));  //将extendDto转化成json字符串保存到数据库中
+            userMessageList.add(userMessage);
         }
-        userMessage.setUserId(userId);
-        userMessage.setExtendJson(JsonUtils.convertObj2Json(extendDto));  //将extendDto转化成json字符串保存到数据库中
 
-        //保存到数据库中
-        this.userMessageMapper.insert(userMessage);
+        if (userMessageList.isEmpty()) {
+            return;
+        }
+        //收藏，点赞 已经记录过消息不再记录（由唯一索引 uk_dedupe_key 保证）
+        this.userMessageMapper.insertIgnoreBatch(userMessageList);
     }
 
     @Override
@@ -1,21 +1,34 @@
 package com.easylive.service.impl;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import com.easylive.cache.VideoFilePathResolver;
 import com.easylive.component.EsSearchComponent;
+import com.easylive.component.MediaDeleteQueue;
 import com.easylive.component.RedisComponent;
+import com.easylive.component.TransferCanceller;
 import com.easylive.entity.config.AppConfig;
 import com.easylive.mq.VideoTransferProducer;
 import com.easylive.entity.constant.Constants;
+import com.easylive.entity.dto.HlsRenditionDto;
 import com.easylive.entity.dto.SysSettingDto;
+import com.easylive.entity.dto.TransferProgressDto;
 import com.easylive.entity.dto.UploadingFileDto;
+import com.easylive.entity.dto.VideoProbeDto;
 import com.easylive.entity.enums.*;
 import com.easylive.entity.po.*;
 import com.easylive.entity.query.*;
@@ -24,11 +37,11 @@ import com.easylive.mappers.*;
 import com.easylive.utils.CopyTools;
 import com.easylive.utils.FFmpegUtils;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
 import org.springframework.stereotype.Service;
 
 import com.easylive.entity.vo.PaginationResultVO;
 import com.easylive.service.VideoInfoPostService;
+import com.easylive.storage.FileStorage;
 import com.easylive.utils.StringTools;
 import org.apache.commons.lang3.ArrayUtils;
 import lombok.RequiredArgsConstructor;
@@ -62,6 +75,12 @@ public class VideoInfoPostServiceImpl implements VideoInfoPostService {
 
 	private final VideoTransferProducer videoTransferProducer;
 
+	private final FileStorage fileStorage;
+
+	private final MediaDeleteQueue mediaDeleteQueue;
+
+	private final VideoFilePathResolver videoFilePathResolver;
+
 	/**
 	 * 根据条件查询列表
 	 */
@@ -253,6 +272,13 @@ public class VideoInfoPostServiceImpl implements VideoInfoPostService {
 			videoInfoPostMapper.updateByVideoId(videoInfoPost, videoId);
 		}
 
+		//新增的分P必须所有分片都已上传，否则合并出来的视频不完整
+		for (VideoInfoFilePost addFile : addFileList) {
+			if (!redisComponent.isVideoUploadComplete(videoInfoPost.getUserId(), addFile.getUploadId())) {
+				throw new BusinessException("视频" + addFile.getFileName() + "还没有上传完成");
+			}
+		}
+
 		if(deleteFileList.isEmpty()==false){
 			List<String> delFileIdList = deleteFileList.stream().map(VideoInfoFilePost::getFileId).collect(Collectors.toList());
 			//MYSQL数据库删除文件信息
@@ -306,75 +332,307 @@ public class VideoInfoPostServiceImpl implements VideoInfoPostService {
 	@Override
 	@Transactional(rollbackFor = Exception.class)
 	public void transferVideoFile(VideoInfoFilePost videoInfoFile) {
+		VideoInfoFilePost dbFile = videoInfoFilePostMapper.selectByUploadIdAndUserId(videoInfoFile.getUploadId(), videoInfoFile.getUserId());
+		if (dbFile == null || !VideoFileTransferResultEnum.TRANSFER.getStatus().equals(dbFile.getTransferResult())) {
+			//文件已删除或已经转码完成（例如 ACK 丢失导致重复投递），不再处理
+			log.info("文件不在转码中状态，跳过, uploadId={}, fileId={}", videoInfoFile.getUploadId(), videoInfoFile.getFileId());
+			return;
+		}
 		VideoInfoFilePost updateFilePost = new VideoInfoFilePost();
 		try {
-			UploadingFileDto fileDto = redisComponent.getUploadingVideoFile(videoInfoFile.getUserId(), videoInfoFile.getUploadId());
 			/**
-			 * 拷贝文件到正式目录
+			 * 拷贝文件到正式目录（重试时可能已经拷贝过）
 			 */
-			String tempFilePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER + Constants.FILE_TEMP + fileDto.getFilePath();
-
-			File tempFile = new File(tempFilePath);
-
-			String targetFilePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER + Constants.FILE_VIDEO + fileDto.getFilePath();
-			File taregetFile = new File(targetFilePath);
-			if (!taregetFile.exists()) {
-				taregetFile.mkdirs();
-			}
-			FileUtils.copyDirectory(tempFile, taregetFile);
+			String filePath = prepareTransferFolder(videoInfoFile, dbFile);
+			updateFilePost.setFilePath(filePath);
+			//本机转码目录（ffmpeg 只能读写本地文件）
+			String targetFilePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER + filePath;
 
 			/**
-			 * 删除临时目录
+			 * 相同内容的文件已经转码成功过（重复上传、多个稿件用同一个视频），直接复用转码结果，不再合并和转码
 			 */
-			FileUtils.forceDelete(tempFile);
-			redisComponent.delVideoFileInfo(videoInfoFile.getUserId(), videoInfoFile.getUploadId());
+			String contentHash = StringTools.isEmpty(dbFile.getContentHash())
+					? redisComponent.getUploadContentHash(videoInfoFile.getUserId(), videoInfoFile.getUploadId()) : dbFile.getContentHash();
+			updateFilePost.setContentHash(contentHash);
+			if (reuseTransferredFile(contentHash, dbFile.getFileId(), filePath, updateFilePost)) {
+				updateFilePost.setTransferResult(VideoFileTransferResultEnum.SUCCESS.getStatus());
+				redisComponent.delVideoFileInfo(videoInfoFile.getUserId(), videoInfoFile.getUploadId());
+				return;
+			}
 
 			/**
-			 * 合并文件
+			 * 合并文件（上次失败前已经合并完成则跳过）
 			 */
+			fetchChunkFiles(filePath, new File(targetFilePath));
 			String completeVideo = targetFilePath + Constants.TEMP_VIDEO_NAME;
-			this.union(targetFilePath, completeVideo, true);
+			if (new File(targetFilePath + File.separator + 0).exists()) {
+				new File(completeVideo).delete();
+				this.union(targetFilePath, completeVideo, true);
+			} else {
+				//旧版本转码流程在 HEVC 转码中途失败：原始视频还在临时文件中，恢复后重新转码
+				File hevcTempFile = new File(completeVideo + Constants.VIDEO_CODE_TEMP_FILE_SUFFIX);
+				if (hevcTempFile.exists()) {
+					new File(completeVideo).delete();
+					hevcTempFile.renameTo(new File(completeVideo));
+				}
+				if (!new File(completeVideo).exists()) {
+					throw new FileNotFoundException("分片文件不存在: " + targetFilePath);
+				}
+			}
 
 			/**
-			 * 获取播放时长
+			 * 一次探测获取编码、播放时长、分辨率等信息
 			 */
-			Integer duration = ffmpegUtils.getVideoInfoDuration(completeVideo);
-			updateFilePost.setDuration(duration);
+			VideoProbeDto probe = ffmpegUtils.probeVideo(completeVideo);
+			updateFilePost.setDuration(probe.getDuration());
 			updateFilePost.setFileSize(new File(completeVideo).length());
-			updateFilePost.setFilePath(Constants.FILE_VIDEO + fileDto.getFilePath());
-			updateFilePost.setTransferResult(VideoFileTransferResultEnum.SUCCESS.getStatus());
 
 			/**
-			 * ffmpeg切割文件
+			 * ffmpeg转码并切片
+			 */
+			this.convertVideo2Ts(completeVideo, probe, videoInfoFile);
+
+			/**
+			 * 转码结果存入存储（本地存储时就是当前目录，不需要处理），再删除存储中的分片
 			 */
-			this.convertVideo2Ts(completeVideo);
+			fileStorage.putDirectory(filePath, new File(targetFilePath));
+			for (String chunkKey : getChunkKeys(filePath)) {
+				fileStorage.delete(chunkKey);
+			}
+			updateFilePost.setTransferResult(VideoFileTransferResultEnum.SUCCESS.getStatus());
+
+			//转码成功后再删除上传信息，失败重试时还要用到
+			redisComponent.delVideoFileInfo(videoInfoFile.getUserId(), videoInfoFile.getUploadId());
 		} catch (Exception e) {
-			log.error("文件转码失败", e);
-			updateFilePost.setTransferResult(VideoFileTransferResultEnum.FAIL.getStatus());
+			int retryCount = dbFile.getTransferRetryCount() == null ? 0 : dbFile.getTransferRetryCount();
+			handleTransferFailure(videoInfoFile, retryCount, updateFilePost, e);
 		} finally {
 			//更新文件状态
 			videoInfoFilePostMapper.updateByUploadIdAndUserId(updateFilePost, videoInfoFile.getUploadId(), videoInfoFile.getUserId());
 			//更新视频信息
-			VideoInfoFilePostQuery fileQuery = new VideoInfoFilePostQuery();
-			fileQuery.setVideoId(videoInfoFile.getVideoId());
-			fileQuery.setTransferResult(VideoFileTransferResultEnum.FAIL.getStatus());
-			Integer failCount = videoInfoFilePostMapper.selectCount(fileQuery);
-			if (failCount > 0) {
-				VideoInfoPost videoUpdate = new VideoInfoPost();
-				videoUpdate.setStatus(VideoStatusEnum.STATUS1.getStatus());
-				videoInfoPostMapper.updateByVideoId(videoUpdate, videoInfoFile.getVideoId());
+			updateVideoTransferStatus(videoInfoFile.getVideoId());
+			//推送最终状态（等待重试时仍是转码中）
+			publishTransferResult(videoInfoFile, updateFilePost.getTransferResult());
+		}
+	}
+
+	/**
+	 * 转码进度回调：按 TRANSFER_PROGRESS_PUBLISH_INTERVAL 节流后写入 Redis 并推送给创作中心
+	 * 回调在单个输出读取线程中执行，不需要同步
+	 */
+	private Consumer<TransferProgressDto> createProgressListener(VideoInfoFilePost videoInfoFile) {
+		long[] lastPublishTime = {0L};
+		return progressDto -> {
+			long now = System.currentTimeMillis();
+			if (now - lastPublishTime[0] < Constants.TRANSFER_PROGRESS_PUBLISH_INTERVAL) {
 				return;
 			}
-			fileQuery.setTransferResult(VideoFileTransferResultEnum.TRANSFER.getStatus());
-			Integer transferCount = videoInfoFilePostMapper.selectCount(fileQuery);
-			if (transferCount == 0) {
-				Integer duration = videoInfoFilePostMapper.sumDuration(videoInfoFile.getVideoId());
-				VideoInfoPost videoUpdate = new VideoInfoPost();
-				videoUpdate.setStatus(VideoStatusEnum.STATUS2.getStatus());
-				videoUpdate.setDuration(duration);
-				videoInfoPostMapper.updateByVideoId(videoUpdate, videoInfoFile.getVideoId());
+			lastPublishTime[0] = now;
+			progressDto.setFileId(videoInfoFile.getFileId());
+			progressDto.setUploadId(videoInfoFile.getUploadId());
+			progressDto.setVideoId(videoInfoFile.getVideoId());
+			progressDto.setTransferResult(VideoFileTransferResultEnum.TRANSFER.getStatus());
+			redisComponent.saveTransferProgress(videoInfoFile.getUserId(), progressDto);
+		};
+	}
+
+	private void publishTransferResult(VideoInfoFilePost videoInfoFile, Integer transferResult) {
+		try {
+			redisComponent.delTransferProgress(videoInfoFile.getFileId());
+			TransferProgressDto progressDto = new TransferProgressDto();
+			progressDto.setFileId(videoInfoFile.getFileId());
+			progressDto.setUploadId(videoInfoFile.getUploadId());
+			progressDto.setVideoId(videoInfoFile.getVideoId());
+			progressDto.setTransferResult(transferResult == null ? VideoFileTransferResultEnum.TRANSFER.getStatus() : transferResult);
+			if (VideoFileTransferResultEnum.SUCCESS.getStatus().equals(transferResult)) {
+				progressDto.setPercent(100);
 			}
+			redisComponent.publishTransferProgress(videoInfoFile.getUserId(), progressDto);
+		} catch (Exception e) {
+			log.error("推送转码结果失败, fileId={}", videoInfoFile.getFileId(), e);
+		}
+	}
+
+	/**
+	 * 把上传的分片从临时目录移动到正式目录，返回文件路径（video/...）
+	 * 重试时上传信息可能已过期、分片已移动过，此时使用上次记录在文件上的路径
+	 */
+	private String prepareTransferFolder(VideoInfoFilePost videoInfoFile, VideoInfoFilePost dbFile) throws IOException {
+		UploadingFileDto fileDto = redisComponent.getUploadingVideoFile(videoInfoFile.getUserId(), videoInfoFile.getUploadId());
+		String filePath;
+		if (fileDto != null) {
+			filePath = Constants.FILE_VIDEO + fileDto.getFilePath();
+		} else if (!StringTools.isEmpty(dbFile.getFilePath())) {
+			filePath = dbFile.getFilePath();
+		} else {
+			throw new FileNotFoundException("上传文件信息不存在, uploadId=" + videoInfoFile.getUploadId());
+		}
+
+		String tempPath = Constants.FILE_TEMP + filePath.substring(Constants.FILE_VIDEO.length());
+		if (!fileStorage.list(tempPath).isEmpty()) {
+			fileStorage.move(tempPath, filePath);
 		}
+		return filePath;
+	}
+
+	/**
+	 * 存储中该文件目录下的分片（0、1、2...）
+	 */
+	private List<String> getChunkKeys(String filePath) throws IOException {
+		List<String> chunkKeys = new ArrayList<>();
+		for (String key : fileStorage.list(filePath)) {
+			if (key.substring(filePath.length() + 1).matches("\\d+")) {
+				chunkKeys.add(key);
+			}
+		}
+		return chunkKeys;
+	}
+
+	/**
+	 * 对象存储：把分片下载到本机转码目录（重试时已下载完整的分片跳过）；本地存储分片就在转码目录，不需要处理
+	 */
+	private void fetchChunkFiles(String filePath, File workFolder) throws IOException {
+		if (fileStorage.getLocalFile(filePath) != null) {
+			return;
+		}
+		workFolder.mkdirs();
+		for (String chunkKey : getChunkKeys(filePath)) {
+			File chunkFile = new File(workFolder, chunkKey.substring(filePath.length() + 1));
+			Long size = fileStorage.getSize(chunkKey);
+			if (size == null || (chunkFile.exists() && chunkFile.length() == size)) {
+				continue;
+			}
+			try (InputStream in = fileStorage.get(chunkKey, 0, -1)) {
+				if (in == null) {
+					throw new FileNotFoundException("分片文件不存在: " + chunkKey);
+				}
+				Files.copy(in, chunkFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	/**
+	 * 按内容哈希查找已转码成功的文件，把它的 HLS 输出复制到当前文件目录
+	 * 本地存储使用硬链接，对象存储使用服务端复制，原文件删除后复制出来的文件仍然有效
+	 *
+	 * @return 是否复用成功；没有可复用的文件时返回 false，按正常流程转码
+	 */
+	private boolean reuseTransferredFile(String contentHash, String fileId, String filePath, VideoInfoFilePost updateFilePost) throws IOException {
+		if (StringTools.isEmpty(contentHash)) {
+			return false;
+		}
+		List<String> chunkKeys = getChunkKeys(filePath);
+		if (chunkKeys.isEmpty()) {
+			return false;
+		}
+		long uploadSize = 0;
+		for (String chunkKey : chunkKeys) {
+			Long size = fileStorage.getSize(chunkKey);
+			uploadSize += size == null ? 0 : size;
+		}
+
+		VideoInfoFilePostQuery sourceQuery = new VideoInfoFilePostQuery();
+		sourceQuery.setContentHash(contentHash);
+		sourceQuery.setTransferResult(VideoFileTransferResultEnum.SUCCESS.getStatus());
+		for (VideoInfoFilePost sourceFile : videoInfoFilePostMapper.selectList(sourceQuery)) {
+			//文件大小再校验一次，防止分片 MD5 与存储中的分片不一致
+			if (fileId.equals(sourceFile.getFileId()) || StringTools.isEmpty(sourceFile.getFilePath()) || sourceFile.getFileSize() == null
+					|| sourceFile.getFileSize() != uploadSize) {
+				continue;
+			}
+			String sourcePath = sourceFile.getFilePath();
+			if (fileStorage.getSize(sourcePath + "/" + Constants.M3U8_NAME) == null && fileStorage.getSize(sourcePath + "/" + Constants.M3U8_MASTER_NAME) == null) {
+				//源稿件已删除
+				continue;
+			}
+			try {
+				fileStorage.copy(sourcePath, filePath);
+			} catch (IOException e) {
+				//源文件在复用过程中被删除等，清理已复制的文件后尝试下一个
+				log.warn("复用转码结果失败, source={}, target={}", sourcePath, filePath, e);
+				for (String key : fileStorage.list(filePath)) {
+					if (!chunkKeys.contains(key)) {
+						fileStorage.delete(key);
+					}
+				}
+				continue;
+			}
+			for (String chunkKey : chunkKeys) {
+				fileStorage.delete(chunkKey);
+			}
+			updateFilePost.setDuration(sourceFile.getDuration());
+			updateFilePost.setFileSize(sourceFile.getFileSize());
+			log.info("文件内容与已转码文件相同，复用转码结果, fileId={}, sourceFileId={}, contentHash={}", fileId, sourceFile.getFileId(), contentHash);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 转码失败：可重试的错误进入延迟重试队列（状态保持转码中），不可重试或重试耗尽则标记为转码失败
+	 */
+	private void handleTransferFailure(VideoInfoFilePost videoInfoFile, int retryCount, VideoInfoFilePost updateFilePost, Exception e) {
+		TransferErrorTypeEnum errorType = TransferErrorTypeEnum.classify(e);
+		String error = StringTools.isEmpty(e.getMessage()) ? e.getClass().getSimpleName() : e.getMessage();
+		if (error.length() > Constants.TRANSFER_ERROR_MAX_LENGTH) {
+			error = error.substring(0, Constants.TRANSFER_ERROR_MAX_LENGTH);
+		}
+		updateFilePost.setTransferError(error);
+
+		if (errorType == TransferErrorTypeEnum.RETRYABLE && retryCount < Constants.RABBITMQ_TRANSFER_RETRY_DELAYS.length) {
+			int nextRetryCount = retryCount + 1;
+			try {
+				videoInfoFile.setTransferRetryCount(nextRetryCount);
+				videoTransferProducer.sendTransferRetryTask(videoInfoFile, nextRetryCount);
+				updateFilePost.setTransferRetryCount(nextRetryCount);
+				log.warn("文件转码失败，稍后重试, uploadId={}, fileId={}, retryCount={}", videoInfoFile.getUploadId(), videoInfoFile.getFileId(), nextRetryCount, e);
+				return;
+			} catch (Exception sendException) {
+				log.error("发送转码重试任务失败, uploadId={}, fileId={}", videoInfoFile.getUploadId(), videoInfoFile.getFileId(), sendException);
+			}
+		}
+		log.error("文件转码失败, uploadId={}, fileId={}, errorType={}, retryCount={}", videoInfoFile.getUploadId(), videoInfoFile.getFileId(), errorType, retryCount, e);
+		updateFilePost.setTransferResult(VideoFileTransferResultEnum.FAIL.getStatus());
+	}
+
+	/**
+	 * 根据各分P的转码状态更新稿件状态：有失败则转码失败，全部完成则进入待审核
+	 */
+	private void updateVideoTransferStatus(String videoId) {
+		VideoInfoFilePostQuery fileQuery = new VideoInfoFilePostQuery();
+		fileQuery.setVideoId(videoId);
+		fileQuery.setTransferResult(VideoFileTransferResultEnum.FAIL.getStatus());
+		Integer failCount = videoInfoFilePostMapper.selectCount(fileQuery);
+		if (failCount > 0) {
+			VideoInfoPost videoUpdate = new VideoInfoPost();
+			videoUpdate.setStatus(VideoStatusEnum.STATUS1.getStatus());
+			videoInfoPostMapper.updateByVideoId(videoUpdate, videoId);
+			return;
+		}
+		fileQuery.setTransferResult(VideoFileTransferResultEnum.TRANSFER.getStatus());
+		Integer transferCount = videoInfoFilePostMapper.selectCount(fileQuery);
+		if (transferCount == 0) {
+			Integer duration = videoInfoFilePostMapper.sumDuration(videoId);
+			VideoInfoPost videoUpdate = new VideoInfoPost();
+			videoUpdate.setStatus(VideoStatusEnum.STATUS2.getStatus());
+			videoUpdate.setDuration(duration);
+			videoInfoPostMapper.updateByVideoId(videoUpdate, videoId);
+		}
+	}
+
+	//死信队列中的转码任务：仍在转码中的文件标记为转码失败
+	@Override
+	@Transactional(rollbackFor = Exception.class)
+	public void markTransferFailed(VideoInfoFilePost videoInfoFile, String reason) {
+		VideoInfoFilePost dbFile = videoInfoFilePostMapper.selectByUploadIdAndUserId(videoInfoFile.getUploadId(), videoInfoFile.getUserId());
+		if (dbFile == null || !VideoFileTransferResultEnum.TRANSFER.getStatus().equals(dbFile.getTransferResult())) {
+			return;
+		}
+		VideoInfoFilePost updateFilePost = new VideoInfoFilePost();
+		updateFilePost.setTransferResult(VideoFileTransferResultEnum.FAIL.getStatus());
+		updateFilePost.setTransferError(reason);
+		videoInfoFilePostMapper.updateByUploadIdAndUserId(updateFilePost, videoInfoFile.getUploadId(), videoInfoFile.getUserId());
+		updateVideoTransferStatus(videoInfoFile.getVideoId());
 	}
 
 	//审核视频
@@ -430,6 +688,9 @@ public class VideoInfoPostServiceImpl implements VideoInfoPostService {
 		 */
 		VideoInfoFileQuery videoInfoFileQuery = new VideoInfoFileQuery();
 		videoInfoFileQuery.setVideoId(videoId);
+		//被删除的分P不能再通过缓存的路径播放
+		List<VideoInfoFile> oldFileList = this.videoInfoFileMapper.selectList(videoInfoFileQuery);
+		videoFilePathResolver.evict(oldFileList.stream().map(VideoInfoFile::getFileId).collect(Collectors.toList()));
 		this.videoInfoFileMapper.deleteByParam(videoInfoFileQuery);
 
 		VideoInfoFilePostQuery videoInfoFilePostQuery = new VideoInfoFilePostQuery();
@@ -439,19 +700,9 @@ public class VideoInfoPostServiceImpl implements VideoInfoPostService {
 		List<VideoInfoFile> videoInfoFileList = CopyTools.copyList(videoInfoFilePostList, VideoInfoFile.class);
 		this.videoInfoFileMapper.insertBatch(videoInfoFileList);
 
+		//被替换的分P文件加入删除队列，由后台限速删除
 		List<String> filePathList = redisComponent.getDelFileList(videoId);
-		if (filePathList != null) {
-			for (String path : filePathList) {
-				File file = new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER + path);
-				if (file.exists()) {
-					try {
-						FileUtils.deleteDirectory(file);
-					} catch (IOException e) {
-						log.error("删除文件失败", e);
-					}
-				}
-			}
-		}
+		mediaDeleteQueue.enqueue(filePathList);
 
 		redisComponent.cleanDelFileList(videoId);
 
@@ -466,63 +717,75 @@ public class VideoInfoPostServiceImpl implements VideoInfoPostService {
 
 	}
 
-	private void convertVideo2Ts(String videoFilePath) {
+	private void convertVideo2Ts(String videoFilePath, VideoProbeDto probe, VideoInfoFilePost videoInfoFile) {
 		File videoFile = new File(videoFilePath);
-		//创建同名切片目录
+		//切片输出到视频所在目录
 		File tsFolder = videoFile.getParentFile();
-		String codec = ffmpegUtils.getVideoCodec(videoFilePath);
-		//转码
-		if (Constants.VIDEO_CODE_HEVC.equals(codec)) {
-			String tempFileName = videoFilePath + Constants.VIDEO_CODE_TEMP_FILE_SUFFIX;
-			new File(videoFilePath).renameTo(new File(tempFileName));
-			ffmpegUtils.convertHevc2Mp4(tempFileName, videoFilePath);
-			new File(tempFileName).delete();
+		List<HlsRenditionDto> ladder = ffmpegUtils.getHlsLadder(probe);
+		String taskKey = TransferCanceller.getTaskKey(videoInfoFile.getUserId(), videoInfoFile.getUploadId());
+		if (!ladder.isEmpty()) {
+			//多码率：一次 ffmpeg 调用完成转码（HEVC 也在这里转成 H.264）和全部档位切片
+			ffmpegUtils.convertVideo2HlsLadder(tsFolder, videoFilePath, ladder, probe, taskKey, createProgressListener(videoInfoFile));
+		} else {
+			//单码率：一次 ffmpeg 调用完成（必要时）转码和切片，不再生成中间文件
+			ffmpegUtils.convertVideo2Hls(tsFolder, videoFilePath, probe, taskKey, createProgressListener(videoInfoFile));
 		}
 
-		//视频转为ts
-		ffmpegUtils.convertVideo2Ts(tsFolder, videoFilePath);
-
 		//删除视频文件
 		videoFile.delete();
 	}
 
 
+	/**
+	 * 按序号合并分片（0、1、2...）到目标文件
+	 * 目标文件先按总大小预分配，分片通过 FileChannel.transferTo 写入，由内核完成拷贝，不经过用户态缓冲区
+	 */
 	public static void union(String dirPath, String toFilePath, boolean delSource) throws BusinessException {
 		File dir = new File(dirPath);
 		if (!dir.exists()) {
 			throw new BusinessException("目录不存在");
 		}
-		File fileList[] = dir.listFiles();
-		File targetFile = new File(toFilePath);
-		try (RandomAccessFile writeFile = new RandomAccessFile(targetFile, "rw")) {
-			byte[] b = new byte[1024 * 10];
-			for (int i = 0; i < fileList.length; i++) {
-				int len = -1;
-				//创建读块文件的对象
-				File chunkFile = new File(dirPath + File.separator + i);
-				RandomAccessFile readFile = null;
-				try {
-					readFile = new RandomAccessFile(chunkFile, "r");
-					while ((len = readFile.read(b)) != -1) {
-						writeFile.write(b, 0, len);
+		List<File> chunkList = new ArrayList<>();
+		long totalSize = 0;
+		for (File chunkFile = new File(dirPath + File.separator + 0); chunkFile.exists(); chunkFile = new File(dirPath + File.separator + chunkList.size())) {
+			chunkList.add(chunkFile);
+			totalSize += chunkFile.length();
+		}
+		long startTime = System.currentTimeMillis();
+		try (RandomAccessFile writeFile = new RandomAccessFile(new File(toFilePath), "rw");
+			 FileChannel writeChannel = writeFile.getChannel()) {
+			writeFile.setLength(totalSize);
+			for (File chunkFile : chunkList) {
+				try (FileChannel readChannel = FileChannel.open(chunkFile.toPath(), StandardOpenOption.READ)) {
+					long size = readChannel.size();
+					long position = 0;
+					//transferTo 单次可能只传输一部分，循环直到写完；分片在合并过程中被截断时返回 0，直接失败，不能一直循环
+					while (position < size) {
+						long count = readChannel.transferTo(position, size - position, writeChannel);
+						if (count <= 0) {
+							throw new BusinessException("分片" + chunkFile.getName() + "被截断, size=" + size + ", position=" + position);
+						}
+						position += count;
 					}
 				} catch (Exception e) {
 					log.error("合并分片失败", e);
-					throw new BusinessException("合并文件失败");
-				} finally {
-					readFile.close();
+					throw new BusinessException("合并文件失败", e);
 				}
 			}
 		} catch (Exception e) {
-			throw new BusinessException("合并文件" + dirPath + "出错了");
-		} finally {
-			if (delSource) {
-				for (int i = 0; i < fileList.length; i++) {
-					fileList[i].delete();
-				}
+			throw new BusinessException("合并文件" + dirPath + "出错了", e);
+		}
+		long costTime = Math.max(System.currentTimeMillis() - startTime, 1);
+		log.info("合并分片完成, chunks={}, size={}MB, cost={}ms, speed={}MB/s", chunkList.size(), totalSize / Constants.MB_SIZE, costTime,
+				totalSize * 1000 / costTime / Constants.MB_SIZE);
+		//合并成功后再删除分片，合并失败时保留分片以便重试
+		if (delSource) {
+			for (File chunkFile : chunkList) {
+				chunkFile.delete();
 			}
 		}
 	}
 
 
+
 }
\ No newline at end of file
@@ -1,22 +1,27 @@
 package com.easylive.service.impl;
 
-import java.io.File;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import lombok.RequiredArgsConstructor;
 import com.easylive.cache.ThreeLevelCacheManager;
+import com.easylive.cache.VideoFilePathResolver;
 import com.easylive.component.EsSearchComponent;
+import com.easylive.component.MediaDeleteQueue;
 import com.easylive.component.RedisComponent;
+import com.easylive.component.TransferCanceller;
 import com.easylive.entity.config.AppConfig;
 import com.easylive.entity.constant.Constants;
 import com.easylive.entity.dto.SysSettingDto;
 import com.easylive.entity.enums.ResponseCodeEnum;
 import com.easylive.entity.enums.SearchOrderTypeEnum;
 import com.easylive.entity.enums.UserActionTypeEnum;
+import com.easylive.entity.enums.VideoFileTransferResultEnum;
 import com.easylive.entity.enums.VideoRecommendTypeEnum;
 import com.easylive.entity.po.*;
 import com.easylive.entity.query.*;
@@ -26,7 +31,6 @@ import com.easylive.service.UserInfoService;
 import com.easylive.redis.RedisUtils;
 import com.easylive.redis.BloomFilterComponent;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
 import org.springframework.stereotype.Service;
 
 import com.easylive.entity.enums.PageSize;
@@ -88,6 +92,12 @@ public class VideoInfoServiceImpl implements VideoInfoService {
 
 	private final ThreeLevelCacheManager threeLevelCacheManager;
 
+	private final MediaDeleteQueue mediaDeleteQueue;
+
+	private final VideoFilePathResolver videoFilePathResolver;
+
+	private final TransferCanceller transferCanceller;
+
 	/**
 	 * 缓存键前缀
 	 */
@@ -196,6 +206,27 @@ public class VideoInfoServiceImpl implements VideoInfoService {
 		return videoInfo;
 	}
 	
+	@Override
+	public Map<String, VideoInfo> getVideoInfoMapByVideoIds(List<String> videoIdList) {
+		List<String> cacheKeys = videoIdList.stream().distinct().map(videoId -> CACHE_KEY_PREFIX + videoId).collect(Collectors.toList());
+		Map<String, VideoInfo> cacheMap = threeLevelCacheManager.getAll(cacheKeys, missKeys -> {
+			VideoInfoQuery videoInfoQuery = new VideoInfoQuery();
+			videoInfoQuery.setVideoIdArray(missKeys.stream().map(key -> key.substring(CACHE_KEY_PREFIX.length())).toArray(String[]::new));
+			List<VideoInfo> dbList = this.videoInfoMapper.selectList(videoInfoQuery);
+			Map<String, VideoInfo> dbMap = new HashMap<>();
+			for (VideoInfo info : dbList) {
+				bloomFilterComponent.addVideo(info.getVideoId());
+				dbMap.put(CACHE_KEY_PREFIX + info.getVideoId(), info);
+			}
+			return dbMap;
+		});
+		Map<String, VideoInfo> result = new HashMap<>();
+		for (Map.Entry<String, VideoInfo> entry : cacheMap.entrySet()) {
+			result.put(entry.getKey().substring(CACHE_KEY_PREFIX.length()), entry.getValue());
+		}
+		return result;
+	}
+
 	/**
 	 * 加上Redis中的增量值，实现实时显示最新计数
 	 */
@@ -288,9 +319,20 @@ public class VideoInfoServiceImpl implements VideoInfoService {
 			throw new BusinessException(ResponseCodeEnum.CODE_404);
 		}
 
-		this.videoInfoMapper.deleteByVideoId(videoId);
-
-		this.videoInfoPostMapper.deleteByVideoId(videoId);
+		//视频文件加入删除队列（必须在删除分P记录之前查询），与删除记录在同一事务中提交
+		VideoInfoFilePostQuery filePostQuery = new VideoInfoFilePostQuery();
+		filePostQuery.setVideoId(videoId);
+		List<VideoInfoFilePost> filePostList = this.videoInfoFilePostMapper.selectList(filePostQuery);
+		List<String> filePathList = new ArrayList<>();
+		for (VideoInfoFilePost item : filePostList) {
+			filePathList.add(item.getFilePath());
+		}
+		mediaDeleteQueue.enqueue(filePathList);
+		//还在转码的分P结束 ffmpeg 进程，避免继续向已删除的目录写切片
+		transferCanceller.cancel(filePostList.stream()
+				.filter(item -> VideoFileTransferResultEnum.TRANSFER.getStatus().equals(item.getTransferResult()))
+				.map(item -> TransferCanceller.getTaskKey(item.getUserId(), item.getUploadId())).collect(Collectors.toList()));
+		videoFilePathResolver.evict(filePostList.stream().map(VideoInfoFilePost::getFileId).collect(Collectors.toList()));
 
 		//删除videoinfo表
 		videoInfoMapper.deleteByVideoId(videoId);
@@ -331,18 +373,6 @@ public class VideoInfoServiceImpl implements VideoInfoService {
 			VideoCommentQuery videoCommentQuery = new VideoCommentQuery();
 			videoCommentQuery.setVideoId(videoId);
 			videoCommentMapper.deleteByParam(videoCommentQuery);
-
-			//删除本地视频文件
-			List<VideoInfoFile> videoInfoFileList = this.videoInfoFileMapper.selectList(videoInfoFileQuery);
-
-			for(VideoInfoFile item:videoInfoFileList){
-				try {
-					FileUtils.deleteDirectory(new File(appConfig.getProjectFolder()+item.getFilePath()));
-				} catch (IOException e) {
-					log.error("删除文件失败", e);
-				}
-			}
-
 		});
 
 	}
@@ -350,7 +380,12 @@ public class VideoInfoServiceImpl implements VideoInfoService {
 	//增加播放数量
 	@Override
 	public void addReadCount(String videoId) {
-		videoInfoMapper.updateCountInfo(videoId, UserActionTypeEnum.VIDEO_PLAY.getField(), 1);
+		addReadCount(videoId, 1);
+	}
+
+	@Override
+	public void addReadCount(String videoId, Integer count) {
+		videoInfoMapper.updateCountInfo(videoId, UserActionTypeEnum.VIDEO_PLAY.getField(), count);
 	}
 
 
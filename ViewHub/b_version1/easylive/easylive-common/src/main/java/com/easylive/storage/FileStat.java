@@ -0,0 +1,25 @@
+package com.easylive.storage;
+
+/**
+ * 文件元信息（用于 Content-Length、ETag、Last-Modified）
+ */
+public class FileStat {
+
+    private final long size;
+
+    // 最后修改时间（毫秒）
+    private final long lastModified;
+
+    public FileStat(long size, long lastModified) {
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,80 @@
+package com.easylive.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 媒体文件存储（视频切片、封面、上传分片）
+ *
+ * key 为相对 项目目录/file/ 的路径，用 / 分隔，例如 video/20240101/xxx/index.m3u8；
+ * 目录同样用 key 表示（不带结尾的 /），list、delete、move、copy 对目录下的所有文件生效
+ *
+ * 转码、生成缩略图仍然在本机 项目目录/file/ 下进行（ffmpeg 只能读写本地文件），
+ * 处理完成后通过 put / putDirectory 存入；本地存储时两者是同一个目录，不会产生额外拷贝
+ *
+ * 实现：
+ * - LocalFileStorage：本地文件系统（storage.type=local，默认）
+ * - S3FileStorage：S3 兼容的对象存储（storage.type=s3，AWS S3、MinIO 等）
+ */
+public interface FileStorage {
+
+    /**
+     * 把本地文件存入 key（移动语义：调用后本地文件不再保留，本地文件就是 key 对应的文件时不做任何事）
+     */
+    void put(String key, File localFile) throws IOException;
+
+    /**
+     * 把本地目录下的所有文件存入 prefix，保持相对路径（移动语义，同 put）
+     */
+    void putDirectory(String prefix, File localDir) throws IOException;
+
+    /**
+     * 读取文件的一段
+     *
+     * @param offset 起始位置
+     * @param length 长度，小于 0 表示读到文件末尾
+     * @return 文件不存在返回 null；调用方负责关闭
+     */
+    InputStream get(String key, long offset, long length) throws IOException;
+
+    /**
+     * 文件大小
+     *
+     * @return 文件不存在返回 null
+     */
+    Long getSize(String key) throws IOException;
+
+    /**
+     * 文件大小和最后修改时间
+     *
+     * @return 文件不存在（或 key 是目录）返回 null
+     */
+    FileStat stat(String key) throws IOException;
+
+    /**
+     * 目录下的所有文件（包含子目录），返回完整 key
+     */
+    List<String> list(String prefix) throws IOException;
+
+    /**
+     * 删除文件，key 为目录时删除目录下的所有文件；不存在时不报错
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * 移动文件或目录
+     */
+    void move(String sourceKey, String targetKey) throws IOException;
+
+    /**
+     * 复制文件或目录（本地存储使用硬链接，对象存储使用服务端复制，数据都不经过应用）
+     */
+    void copy(String sourceKey, String targetKey) throws IOException;
+
+    /**
+     * 本地存储返回 key 对应的本地文件，可以直接读写；其他存储返回 null
+     */
+    File getLocalFile(String key);
+}
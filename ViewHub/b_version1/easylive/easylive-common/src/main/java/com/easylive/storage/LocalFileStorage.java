@@ -0,0 +1,209 @@
+package com.easylive.storage;
+
+import com.easylive.entity.config.AppConfig;
+import com.easylive.entity.constant.Constants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 本地文件系统存储，key 对应 项目目录/file/{key}
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalFileStorage implements FileStorage {
+
+    private final AppConfig appConfig;
+
+    @Override
+    public File getLocalFile(String key) {
+        return new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER + key);
+    }
+
+    @Override
+    public void put(String key, File localFile) throws IOException {
+        File targetFile = getLocalFile(key);
+        if (isSameFile(localFile, targetFile)) {
+            return;
+        }
+        targetFile.getParentFile().mkdirs();
+        try {
+            //改名是原子的，读取方不会看到写了一半的文件
+            Files.move(localFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(localFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void putDirectory(String prefix, File localDir) throws IOException {
+        File targetDir = getLocalFile(prefix);
+        if (isSameFile(localDir, targetDir)) {
+            return;
+        }
+        moveLocal(localDir, targetDir);
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        File file = getLocalFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        InputStream in = Channels.newInputStream(channel);
+        return length < 0 ? in : new BoundedInputStream(in, length);
+    }
+
+    @Override
+    public Long getSize(String key) {
+        File file = getLocalFile(key);
+        return file.isFile() ? file.length() : null;
+    }
+
+    @Override
+    public FileStat stat(String key) {
+        File file = getLocalFile(key);
+        return file.isFile() ? new FileStat(file.length(), file.lastModified()) : null;
+    }
+
+    @Override
+    public List<String> list(String prefix) {
+        List<String> keys = new ArrayList<>();
+        File dir = getLocalFile(prefix);
+        if (!dir.isDirectory()) {
+            return keys;
+        }
+        String dirPath = dir.getAbsolutePath();
+        Collection<File> files = FileUtils.listFiles(dir, null, true);
+        for (File file : files) {
+            keys.add(prefix + file.getAbsolutePath().substring(dirPath.length()).replace(File.separatorChar, '/'));
+        }
+        return keys;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        File file = getLocalFile(key);
+        if (file.isDirectory()) {
+            FileUtils.deleteDirectory(file);
+        } else {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) throws IOException {
+        File sourceFile = getLocalFile(sourceKey);
+        if (!sourceFile.exists()) {
+            throw new FileNotFoundException("文件不存在: " + sourceKey);
+        }
+        moveLocal(sourceFile, getLocalFile(targetKey));
+    }
+
+    /**
+     * 目标不存在且在同一文件系统时直接原子移动（只改目录项，不拷贝数据）
+     * 目标已存在（重试时可能拷贝了一半）或跨文件系统时拷贝后删除源文件
+     */
+    private void moveLocal(File source, File target) throws IOException {
+        if (!target.exists()) {
+            target.getParentFile().mkdirs();
+            try {
+                Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                return;
+            } catch (AtomicMoveNotSupportedException e) {
+                log.info("源文件与目标不在同一文件系统，改为拷贝, source={}", source.getPath());
+            }
+        }
+        if (source.isDirectory()) {
+            FileUtils.copyDirectory(source, target);
+        } else {
+            FileUtils.copyFile(source, target);
+        }
+        FileUtils.forceDelete(source);
+    }
+
+    /**
+     * 硬链接不占额外磁盘空间，源文件删除后链接出来的文件仍然有效；不支持硬链接（跨文件系统）时退化为拷贝
+     * 失败时删除已经创建的文件
+     */
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        File source = getLocalFile(sourceKey);
+        File target = getLocalFile(targetKey);
+        List<File> createdFiles = new ArrayList<>();
+        try {
+            if (source.isDirectory()) {
+                target.mkdirs();
+                linkDirectory(source, target, createdFiles);
+            } else {
+                target.getParentFile().mkdirs();
+                linkFile(source, target);
+            }
+        } catch (IOException e) {
+            for (int i = createdFiles.size() - 1; i >= 0; i--) {
+                FileUtils.deleteQuietly(createdFiles.get(i));
+            }
+            throw e;
+        }
+    }
+
+    private void linkDirectory(File sourceDir, File targetDir, List<File> createdFiles) throws IOException {
+        File[] files = sourceDir.listFiles();
+        if (files == null) {
+            throw new FileNotFoundException("目录不存在: " + sourceDir.getPath());
+        }
+        for (File sourceFile : files) {
+            File targetFile = new File(targetDir, sourceFile.getName());
+            if (sourceFile.isDirectory()) {
+                if (!targetFile.exists()) {
+                    targetFile.mkdirs();
+                    createdFiles.add(targetFile);
+                }
+                linkDirectory(sourceFile, targetFile, createdFiles);
+                continue;
+            }
+            linkFile(sourceFile, targetFile);
+            createdFiles.add(targetFile);
+        }
+    }
+
+    private void linkFile(File sourceFile, File targetFile) throws IOException {
+        Files.deleteIfExists(targetFile.toPath());
+        try {
+            Files.createLink(targetFile.toPath(), sourceFile.toPath());
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(sourceFile.toPath(), targetFile.toPath());
+        }
+    }
+
+    private boolean isSameFile(File file, File other) throws IOException {
+        return file.getCanonicalPath().equals(other.getCanonicalPath());
+    }
+}
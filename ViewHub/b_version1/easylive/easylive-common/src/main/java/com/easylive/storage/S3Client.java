@@ -0,0 +1,426 @@
+package com.easylive.storage;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * S3 兼容对象存储的 REST 客户端（AWS Signature V4 签名，路径风格 endpoint/bucket/key）
+ *
+ * 只实现存储需要的几个接口：PutObject、分片上传、GetObject（Range）、HeadObject、ListObjectsV2、CopyObject、DeleteObjects
+ * 上传的文件内容不参与签名（UNSIGNED-PAYLOAD），不用为了签名先把文件读一遍
+ */
+class S3Client {
+
+    private static final String SERVICE = "s3";
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
+    private static final String EMPTY_PAYLOAD_HASH = DigestUtils.sha256Hex("");
+
+    private static final DateTimeFormatter AMZ_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private static final int CONNECT_TIMEOUT = 10000;
+
+    private static final int READ_TIMEOUT = 60000;
+
+    // 错误信息中保留的响应内容长度
+    private static final int ERROR_BODY_LENGTH = 300;
+
+    // DeleteObjects 一次最多删除的文件数
+    static final int DELETE_BATCH_SIZE = 1000;
+
+    private final String endpoint;
+
+    private final String region;
+
+    private final String bucket;
+
+    private final String accessKey;
+
+    private final String secretKey;
+
+    S3Client(String endpoint, String region, String bucket, String accessKey, String secretKey) {
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    /**
+     * 上传整个文件（适合小文件，大文件使用分片上传）
+     */
+    void putObject(String key, File file) throws IOException {
+        HttpURLConnection conn = open("PUT", key, Collections.emptyMap(), Collections.emptyMap(), UNSIGNED_PAYLOAD);
+        writeFileRange(conn, file, 0, file.length());
+        checkResponse(conn, "PutObject " + key);
+        drainAndClose(conn);
+    }
+
+    /**
+     * 创建分片上传，返回 uploadId
+     */
+    String createMultipartUpload(String key) throws IOException {
+        Map<String, String> query = new TreeMap<>();
+        query.put("uploads", "");
+        HttpURLConnection conn = open("POST", key, query, Collections.emptyMap(), EMPTY_PAYLOAD_HASH);
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(0);
+        conn.getOutputStream().close();
+        checkResponse(conn, "CreateMultipartUpload " + key);
+        Document document = readXml(conn);
+        return getText(document.getDocumentElement(), "UploadId");
+    }
+
+    /**
+     * 上传文件的一段作为一个分片，返回 ETag
+     *
+     * @param partNumber 从 1 开始
+     */
+    String uploadPart(String key, String uploadId, int partNumber, File file, long offset, long length) throws IOException {
+        Map<String, String> query = new TreeMap<>();
+        query.put("partNumber", String.valueOf(partNumber));
+        query.put("uploadId", uploadId);
+        HttpURLConnection conn = open("PUT", key, query, Collections.emptyMap(), UNSIGNED_PAYLOAD);
+        writeFileRange(conn, file, offset, length);
+        checkResponse(conn, "UploadPart " + key + " #" + partNumber);
+        String etag = conn.getHeaderField("ETag");
+        drainAndClose(conn);
+        if (etag == null) {
+            throw new IOException("UploadPart 没有返回 ETag, key=" + key + ", partNumber=" + partNumber);
+        }
+        return etag;
+    }
+
+    /**
+     * 完成分片上传
+     *
+     * @param etags 按分片序号排列
+     */
+    void completeMultipartUpload(String key, String uploadId, List<String> etags) throws IOException {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>").append(escapeXml(etags.get(i))).append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+        Map<String, String> query = new TreeMap<>();
+        query.put("uploadId", uploadId);
+        byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection conn = open("POST", key, query, Collections.emptyMap(), DigestUtils.sha256Hex(body));
+        writeBody(conn, body, "application/xml");
+        checkResponse(conn, "CompleteMultipartUpload " + key);
+        //请求成功也可能在响应内容中返回错误
+        Document document = readXml(conn);
+        if ("Error".equals(document.getDocumentElement().getTagName())) {
+            throw new IOException("CompleteMultipartUpload 失败, key=" + key + ", " + getText(document.getDocumentElement(), "Message"));
+        }
+    }
+
+    void abortMultipartUpload(String key, String uploadId) throws IOException {
+        Map<String, String> query = new TreeMap<>();
+        query.put("uploadId", uploadId);
+        HttpURLConnection conn = open("DELETE", key, query, Collections.emptyMap(), EMPTY_PAYLOAD_HASH);
+        checkResponse(conn, "AbortMultipartUpload " + key);
+        drainAndClose(conn);
+    }
+
+    /**
+     * 读取文件，range 为 HTTP Range 头（bytes=起始-结束），为 null 时读取整个文件
+     *
+     * @return 文件不存在返回 null
+     */
+    InputStream getObject(String key, String range) throws IOException {
+        HttpURLConnection conn = open("GET", key, Collections.emptyMap(), Collections.emptyMap(), EMPTY_PAYLOAD_HASH);
+        if (range != null) {
+            conn.setRequestProperty("Range", range);
+        }
+        if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+            drainAndClose(conn);
+            return null;
+        }
+        checkResponse(conn, "GetObject " + key);
+        return conn.getInputStream();
+    }
+
+    /**
+     * 文件大小
+     *
+     * @return 文件不存在返回 null
+     */
+    Long headObject(String key) throws IOException {
+        FileStat stat = statObject(key);
+        return stat == null ? null : stat.getSize();
+    }
+
+    /**
+     * 文件大小和最后修改时间，不存在返回 null
+     */
+    FileStat statObject(String key) throws IOException {
+        HttpURLConnection conn = open("HEAD", key, Collections.emptyMap(), Collections.emptyMap(), EMPTY_PAYLOAD_HASH);
+        if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+            conn.disconnect();
+            return null;
+        }
+        checkResponse(conn, "HeadObject " + key);
+        long length = conn.getContentLengthLong();
+        long lastModified = conn.getLastModified();
+        return length < 0 ? null : new FileStat(length, lastModified);
+    }
+
+    /**
+     * 列出前缀下的所有文件（自动翻页）
+     */
+    List<String> listObjects(String prefix) throws IOException {
+        List<String> keys = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            Map<String, String> query = new TreeMap<>();
+            query.put("list-type", "2");
+            query.put("prefix", prefix);
+            if (continuationToken != null) {
+                query.put("continuation-token", continuationToken);
+            }
+            HttpURLConnection conn = open("GET", null, query, Collections.emptyMap(), EMPTY_PAYLOAD_HASH);
+            checkResponse(conn, "ListObjectsV2 " + prefix);
+            Element root = readXml(conn).getDocumentElement();
+            NodeList contents = root.getElementsByTagName("Contents");
+            for (int i = 0; i < contents.getLength(); i++) {
+                keys.add(getText((Element) contents.item(i), "Key"));
+            }
+            continuationToken = "true".equals(getText(root, "IsTruncated")) ? getText(root, "NextContinuationToken") : null;
+        } while (continuationToken != null);
+        return keys;
+    }
+
+    /**
+     * 服务端复制（数据不经过应用，单个文件不超过 5GB）
+     */
+    void copyObject(String sourceKey, String targetKey) throws IOException {
+        Map<String, String> headers = new TreeMap<>();
+        headers.put("x-amz-copy-source", "/" + bucket + "/" + uriEncode(sourceKey, true));
+        HttpURLConnection conn = open("PUT", targetKey, Collections.emptyMap(), headers, EMPTY_PAYLOAD_HASH);
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(0);
+        conn.getOutputStream().close();
+        checkResponse(conn, "CopyObject " + sourceKey + " -> " + targetKey);
+        Document document = readXml(conn);
+        if ("Error".equals(document.getDocumentElement().getTagName())) {
+            throw new IOException("CopyObject 失败, key=" + sourceKey + ", " + getText(document.getDocumentElement(), "Message"));
+        }
+    }
+
+    /**
+     * 批量删除（一次不超过 DELETE_BATCH_SIZE 个），不存在的文件不报错
+     */
+    void deleteObjects(List<String> keys) throws IOException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        StringBuilder xml = new StringBuilder("<Delete><Quiet>true</Quiet>");
+        for (String key : keys) {
+            xml.append("<Object><Key>").append(escapeXml(key)).append("</Key></Object>");
+        }
+        xml.append("</Delete>");
+        byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+        Map<String, String> query = new TreeMap<>();
+        query.put("delete", "");
+        HttpURLConnection conn = open("POST", null, query, Collections.emptyMap(), DigestUtils.sha256Hex(body));
+        //DeleteObjects 必须带 Content-MD5
+        conn.setRequestProperty("Content-MD5", Base64.getEncoder().encodeToString(DigestUtils.md5(body)));
+        writeBody(conn, body, "application/xml");
+        checkResponse(conn, "DeleteObjects");
+        Element root = readXml(conn).getDocumentElement();
+        NodeList errors = root.getElementsByTagName("Error");
+        if (errors.getLength() > 0) {
+            Element error = (Element) errors.item(0);
+            throw new IOException("DeleteObjects 失败, key=" + getText(error, "Key") + ", " + getText(error, "Message"));
+        }
+    }
+
+    /**
+     * 创建已签名的请求
+     *
+     * @param key         为 null 时请求 bucket 本身（列表、批量删除）
+     * @param amzHeaders  需要参与签名的 x-amz-* 请求头
+     * @param payloadHash 请求体的 SHA-256（十六进制），或 UNSIGNED-PAYLOAD
+     */
+    private HttpURLConnection open(String method, String key, Map<String, String> query, Map<String, String> amzHeaders, String payloadHash)
+            throws IOException {
+        String canonicalUri = "/" + uriEncode(bucket, false) + (key == null ? "" : "/" + uriEncode(key, true));
+        StringBuilder canonicalQuery = new StringBuilder();
+        //参数名都是 ASCII 字母，按原始名称排序与按编码后排序一致
+        for (Map.Entry<String, String> entry : new TreeMap<>(query).entrySet()) {
+            if (canonicalQuery.length() > 0) {
+                canonicalQuery.append('&');
+            }
+            canonicalQuery.append(uriEncode(entry.getKey(), false)).append('=').append(uriEncode(entry.getValue(), false));
+        }
+        URL url = new URL(endpoint + canonicalUri + (canonicalQuery.length() == 0 ? "" : "?" + canonicalQuery));
+
+        String amzDate = AMZ_DATE_FORMAT.format(ZonedDateTime.now(ZoneOffset.UTC));
+        String dateStamp = amzDate.substring(0, 8);
+        Map<String, String> signedHeaders = new TreeMap<>();
+        signedHeaders.put("host", url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort());
+        signedHeaders.put("x-amz-content-sha256", payloadHash);
+        signedHeaders.put("x-amz-date", amzDate);
+        for (Map.Entry<String, String> header : amzHeaders.entrySet()) {
+            signedHeaders.put(header.getKey().toLowerCase(), header.getValue());
+        }
+        StringBuilder canonicalHeaders = new StringBuilder();
+        StringBuilder signedHeaderNames = new StringBuilder();
+        for (Map.Entry<String, String> header : signedHeaders.entrySet()) {
+            canonicalHeaders.append(header.getKey()).append(':').append(header.getValue().trim()).append('\n');
+            signedHeaderNames.append(signedHeaderNames.length() == 0 ? "" : ";").append(header.getKey());
+        }
+        String canonicalRequest = method + "\n" + canonicalUri + "\n" + canonicalQuery + "\n" + canonicalHeaders + "\n" + signedHeaderNames + "\n" + payloadHash;
+        String scope = dateStamp + "/" + region + "/" + SERVICE + "/aws4_request";
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n" + DigestUtils.sha256Hex(canonicalRequest);
+        byte[] signingKey = hmac(hmac(hmac(hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), dateStamp), region), SERVICE), "aws4_request");
+        String signature = Hex.encodeHexString(hmac(signingKey, stringToSign));
+
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        conn.setConnectTimeout(CONNECT_TIMEOUT);
+        conn.setReadTimeout(READ_TIMEOUT);
+        for (Map.Entry<String, String> header : signedHeaders.entrySet()) {
+            if (!"host".equals(header.getKey())) {
+                conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        conn.setRequestProperty("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope + ", SignedHeaders=" + signedHeaderNames
+                + ", Signature=" + signature);
+        return conn;
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 不可用", e);
+        }
+    }
+
+    /**
+     * S3 要求的 URI 编码：只保留 A-Z a-z 0-9 - _ . ~，其他字节编码为 %XX（大写）
+     */
+    static String uriEncode(String value, boolean keepSlash) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.' || c == '~'
+                    || (keepSlash && c == '/')) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    //把文件的一段作为请求体发送，不整体读入内存
+    private void writeFileRange(HttpURLConnection conn, File file, long offset, long length) throws IOException {
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "application/octet-stream");
+        conn.setFixedLengthStreamingMode(length);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             InputStream in = new BoundedInputStream(Channels.newInputStream(channel.position(offset)), length);
+             OutputStream out = conn.getOutputStream()) {
+            IOUtils.copyLarge(in, out);
+        }
+    }
+
+    private void writeBody(HttpURLConnection conn, byte[] body, String contentType) throws IOException {
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", contentType);
+        conn.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(body);
+        }
+    }
+
+    private void checkResponse(HttpURLConnection conn, String action) throws IOException {
+        int status = conn.getResponseCode();
+        if (status / 100 == 2) {
+            return;
+        }
+        String body = "";
+        InputStream errorStream = conn.getErrorStream();
+        if (errorStream != null) {
+            try (InputStream in = errorStream) {
+                body = IOUtils.toString(in, StandardCharsets.UTF_8);
+            }
+        }
+        conn.disconnect();
+        if (body.length() > ERROR_BODY_LENGTH) {
+            body = body.substring(0, ERROR_BODY_LENGTH);
+        }
+        throw new IOException("对象存储请求失败, " + action + ", status=" + status + ", " + body);
+    }
+
+    //读完响应内容，连接可以被复用
+    private void drainAndClose(HttpURLConnection conn) throws IOException {
+        InputStream in = conn.getResponseCode() / 100 == 2 ? conn.getInputStream() : conn.getErrorStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                IOUtils.skip(stream, Long.MAX_VALUE);
+            }
+        }
+    }
+
+    private Document readXml(HttpURLConnection conn) throws IOException {
+        try (InputStream in = conn.getInputStream()) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            //响应内容不需要 DTD，禁用外部实体
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setExpandEntityReferences(false);
+            return factory.newDocumentBuilder().parse(in);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("解析对象存储响应失败", e);
+        }
+    }
+
+    private String getText(Element parent, String tagName) {
+        NodeList nodes = parent.getElementsByTagName(tagName);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    private static String escapeXml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;").replace("'", "&apos;");
+    }
+}
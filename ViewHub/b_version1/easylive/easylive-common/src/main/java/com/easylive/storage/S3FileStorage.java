@@ -0,0 +1,252 @@
+package com.easylive.storage;
+
+import com.easylive.entity.config.AppConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * S3 兼容的对象存储（AWS S3、MinIO 等），bucket 中的对象名即 key
+ *
+ * - 目录下的文件（HLS 切片等）由上传线程池并发上传
+ * - 超过 storage.s3.partSizeMb 的文件使用分片上传
+ * - 移动、复制使用服务端复制，数据不经过应用
+ *
+ * 本地联调可以用 MinIO：storage.s3.endpoint=http://127.0.0.1:9000，region 任意（默认 us-east-1）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.type", havingValue = "s3")
+public class S3FileStorage implements FileStorage {
+
+    private static final long MB_SIZE = 1024 * 1024L;
+
+    private final AppConfig appConfig;
+
+    private S3Client s3Client;
+
+    private ExecutorService uploadPool;
+
+    @PostConstruct
+    public void init() {
+        s3Client = new S3Client(appConfig.getStorageS3Endpoint(), appConfig.getStorageS3Region(), appConfig.getStorageS3Bucket(),
+                appConfig.getStorageS3AccessKey(), appConfig.getStorageS3SecretKey());
+        AtomicInteger threadIndex = new AtomicInteger();
+        uploadPool = Executors.newFixedThreadPool(appConfig.getStorageS3UploadThreads(), r -> {
+            Thread thread = new Thread(r, "storage-upload-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        uploadPool.shutdownNow();
+    }
+
+    @Override
+    public File getLocalFile(String key) {
+        return null;
+    }
+
+    @Override
+    public void put(String key, File localFile) throws IOException {
+        //单个大文件的各个分片并发上传
+        uploadFile(key, localFile, true);
+        Files.deleteIfExists(localFile.toPath());
+    }
+
+    /**
+     * 各文件并发上传，全部成功后删除本地目录；有文件失败时抛出第一个异常，本地目录保留（重试时重新上传）
+     */
+    @Override
+    public void putDirectory(String prefix, File localDir) throws IOException {
+        if (!localDir.isDirectory()) {
+            throw new FileNotFoundException("目录不存在: " + localDir.getPath());
+        }
+        long startTime = System.currentTimeMillis();
+        String dirPath = localDir.getAbsolutePath();
+        Collection<File> files = FileUtils.listFiles(localDir, null, true);
+        List<Future<?>> futures = new ArrayList<>(files.size());
+        long totalSize = 0;
+        for (File file : files) {
+            String key = prefix + file.getAbsolutePath().substring(dirPath.length()).replace(File.separatorChar, '/');
+            totalSize += file.length();
+            //在上传线程中执行，分片不能再提交到同一个线程池（会互相等待），按顺序上传
+            futures.add(uploadPool.submit(() -> {
+                uploadFile(key, file, false);
+                return null;
+            }));
+        }
+        waitAll(futures, "上传目录失败: " + prefix);
+        FileUtils.deleteDirectory(localDir);
+        log.info("目录上传完成, prefix={}, files={}, size={}MB, cost={}ms", prefix, files.size(), totalSize / MB_SIZE,
+                System.currentTimeMillis() - startTime);
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        String range = null;
+        if (offset > 0 || length >= 0) {
+            range = "bytes=" + offset + "-" + (length >= 0 ? String.valueOf(offset + length - 1) : "");
+        }
+        return s3Client.getObject(key, range);
+    }
+
+    @Override
+    public Long getSize(String key) throws IOException {
+        return s3Client.headObject(key);
+    }
+
+    @Override
+    public FileStat stat(String key) throws IOException {
+        return s3Client.statObject(key);
+    }
+
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        return s3Client.listObjects(prefix + "/");
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        List<String> keys = new ArrayList<>(list(key));
+        keys.add(key);
+        for (int i = 0; i < keys.size(); i += S3Client.DELETE_BATCH_SIZE) {
+            s3Client.deleteObjects(keys.subList(i, Math.min(keys.size(), i + S3Client.DELETE_BATCH_SIZE)));
+        }
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) throws IOException {
+        List<String> sourceKeys = copyObjects(sourceKey, targetKey);
+        for (int i = 0; i < sourceKeys.size(); i += S3Client.DELETE_BATCH_SIZE) {
+            s3Client.deleteObjects(sourceKeys.subList(i, Math.min(sourceKeys.size(), i + S3Client.DELETE_BATCH_SIZE)));
+        }
+    }
+
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        copyObjects(sourceKey, targetKey);
+    }
+
+    /**
+     * sourceKey 是文件时复制文件，否则复制目录下的所有文件（并发服务端复制）
+     *
+     * @return 复制的源文件 key
+     */
+    private List<String> copyObjects(String sourceKey, String targetKey) throws IOException {
+        List<String> sourceKeys = new ArrayList<>();
+        if (s3Client.headObject(sourceKey) != null) {
+            sourceKeys.add(sourceKey);
+        } else {
+            sourceKeys.addAll(list(sourceKey));
+        }
+        if (sourceKeys.isEmpty()) {
+            throw new FileNotFoundException("文件不存在: " + sourceKey);
+        }
+        List<Future<?>> futures = new ArrayList<>(sourceKeys.size());
+        for (String key : sourceKeys) {
+            String target = targetKey + key.substring(sourceKey.length());
+            futures.add(uploadPool.submit(() -> {
+                s3Client.copyObject(key, target);
+                return null;
+            }));
+        }
+        waitAll(futures, "复制失败: " + sourceKey + " -> " + targetKey);
+        return sourceKeys;
+    }
+
+    /**
+     * 小文件直接上传，大文件分片上传（失败时取消分片上传，不留下未完成的分片）
+     *
+     * @param parallelParts 分片是否提交到上传线程池并发上传
+     */
+    private void uploadFile(String key, File file, boolean parallelParts) throws IOException {
+        long partSize = appConfig.getStorageS3PartSizeMb() * MB_SIZE;
+        long fileSize = file.length();
+        if (fileSize <= partSize) {
+            s3Client.putObject(key, file);
+            return;
+        }
+        String uploadId = s3Client.createMultipartUpload(key);
+        try {
+            int partCount = (int) ((fileSize + partSize - 1) / partSize);
+            List<String> etags = new ArrayList<>(partCount);
+            if (parallelParts) {
+                List<Future<String>> futures = new ArrayList<>(partCount);
+                for (int i = 0; i < partCount; i++) {
+                    int partNumber = i + 1;
+                    long offset = i * partSize;
+                    long length = Math.min(partSize, fileSize - offset);
+                    futures.add(uploadPool.submit(() -> s3Client.uploadPart(key, uploadId, partNumber, file, offset, length)));
+                }
+                for (Future<String> future : futures) {
+                    etags.add(getResult(future, "分片上传失败: " + key));
+                }
+            } else {
+                for (int i = 0; i < partCount; i++) {
+                    long offset = i * partSize;
+                    etags.add(s3Client.uploadPart(key, uploadId, i + 1, file, offset, Math.min(partSize, fileSize - offset)));
+                }
+            }
+            s3Client.completeMultipartUpload(key, uploadId, etags);
+        } catch (IOException | RuntimeException e) {
+            try {
+                s3Client.abortMultipartUpload(key, uploadId);
+            } catch (IOException abortException) {
+                log.warn("取消分片上传失败, key={}, uploadId={}", key, uploadId, abortException);
+            }
+            throw e;
+        }
+    }
+
+    private void waitAll(List<? extends Future<?>> futures, String errorMessage) throws IOException {
+        IOException firstError = null;
+        for (Future<?> future : futures) {
+            try {
+                getResult(future, errorMessage);
+            } catch (IOException e) {
+                if (firstError == null) {
+                    firstError = e;
+                }
+            }
+        }
+        if (firstError != null) {
+            throw firstError;
+        }
+    }
+
+    private <T> T getResult(Future<T> future, String errorMessage) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(errorMessage, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(errorMessage, e.getCause());
+        }
+    }
+}
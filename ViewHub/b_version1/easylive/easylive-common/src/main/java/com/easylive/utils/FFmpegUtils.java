@@ -3,77 +3,399 @@ package com.easylive.utils;
 import com.easylive.entity.config.AppConfig;
 import com.easylive.entity.constant.Constants;
 
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.easylive.component.ProcessExecutor;
+import com.easylive.entity.dto.HlsRenditionDto;
+import com.easylive.entity.dto.TransferProgressDto;
+import com.easylive.entity.dto.VideoProbeDto;
+import com.easylive.exception.BusinessException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
 import org.springframework.stereotype.Component;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class FFmpegUtils {
 
     private final AppConfig appConfig;
 
+    private final ProcessExecutor processExecutor;
+
 
     /**
-     * 生成图片缩略图
+     * 生成图片缩略图（ImageProcessor 无法解码或编码的格式才会走到这里）
      *
-     * @param filePath
-     * @return
+     * @param filePath   原图
+     * @param width      缩略图宽度，高度按比例
+     * @param targetPath 输出文件，格式由扩展名决定
      */
-    public void createImageThumbnail(String filePath) {
-        final String CMD_CREATE_IMAGE_THUMBNAIL = "ffmpeg -i \"%s\" -vf scale=200:-1 \"%s\"";
-        String cmd = String.format(CMD_CREATE_IMAGE_THUMBNAIL, filePath, filePath + Constants.IMAGE_THUMBNAIL_SUFFIX);
-        ProcessUtils.executeCommand(cmd, appConfig.getShowFFmpegLog());
+    public void createImageThumbnail(String filePath, int width, String targetPath) {
+        List<String> cmd = Arrays.asList("ffmpeg", "-nostdin", "-y", "-i", filePath, "-vf", "scale=" + width + ":-1", "-frames:v", "1", targetPath);
+        processExecutor.execute(cmd, appConfig.getProcessProbeTimeoutSeconds(), null);
     }
 
 
     /**
-     * 获取视频编码
+     * 一次 ffprobe 获取编码、时长、分辨率、帧率、码率
      *
      * @param videoFilePath
      * @return
      */
-    public String getVideoCodec(String videoFilePath) {
-        final String CMD_GET_CODE = "ffprobe -v error -select_streams v:0 -show_entries stream=codec_name \"%s\"";
-        String cmd = String.format(CMD_GET_CODE, videoFilePath);
-        String result = ProcessUtils.executeCommand(cmd, appConfig.getShowFFmpegLog());
-        result = result.replace("\n", "");
-        result = result.substring(result.indexOf("=") + 1);
-        String codec = result.substring(0, result.indexOf("["));
-        return codec;
-    }
-
-    public void convertHevc2Mp4(String newFileName, String videoFilePath) {
-        String CMD_HEVC_264 = "ffmpeg -i %s -c:v libx264 -crf 20 %s";
-        String cmd = String.format(CMD_HEVC_264, newFileName, videoFilePath);
-        ProcessUtils.executeCommand(cmd, appConfig.getShowFFmpegLog());
-    }
-
-    public void convertVideo2Ts(File tsFolder, String videoFilePath) {
-        final String CMD_TRANSFER_2TS = "ffmpeg -y -i \"%s\"  -vcodec copy -acodec copy -bsf:v h264_mp4toannexb \"%s\"";
-        final String CMD_CUT_TS = "ffmpeg -i \"%s\" -c copy -map 0 -f segment -segment_list \"%s\" -segment_time 10 %s/%%4d.ts";
-        String tsPath = tsFolder + "/" + Constants.TS_NAME;
-        //生成.ts
-        String cmd = String.format(CMD_TRANSFER_2TS, videoFilePath, tsPath);
-        ProcessUtils.executeCommand(cmd, appConfig.getShowFFmpegLog());
-        //生成索引文件.m3u8 和切片.ts
-        cmd = String.format(CMD_CUT_TS, tsPath, tsFolder.getPath() + "/" + Constants.M3U8_NAME, tsFolder.getPath());
-        ProcessUtils.executeCommand(cmd, appConfig.getShowFFmpegLog());
-        //删除index.ts
-        new File(tsPath).delete();
-    }
-
-
-    public Integer getVideoInfoDuration(String completeVideo) {
-        final String CMD_GET_CODE = "ffprobe -v error -show_entries format=duration -of default=noprint_wrappers=1:nokey=1 \"%s\"";
-        String cmd = String.format(CMD_GET_CODE, completeVideo);
-        String result = ProcessUtils.executeCommand(cmd, appConfig.getShowFFmpegLog());
-        if (StringTools.isEmpty(result)) {
-            return 0;
-        }
-        result = result.replace("\n", "");
-        return new BigDecimal(result).intValue();
+    public VideoProbeDto probeVideo(String videoFilePath) {
+        List<String> cmd = Arrays.asList("ffprobe", "-v", "error",
+                "-show_entries", "format=duration,bit_rate:stream=codec_type,codec_name,width,height,avg_frame_rate", "-of", "json", videoFilePath);
+        String result = processExecutor.execute(cmd, appConfig.getProcessProbeTimeoutSeconds(), null);
+        VideoProbeDto probe = new VideoProbeDto();
+        probe.setDuration(0);
+        if (StringTools.isEmpty(result) || result.indexOf("{") < 0) {
+            return probe;
+        }
+        JSONObject json = JsonUtils.convertJson2Obj(result.substring(result.indexOf("{"), result.lastIndexOf("}") + 1), JSONObject.class);
+        JSONArray streams = json.getJSONArray("streams");
+        if (streams != null) {
+            for (int i = 0; i < streams.size(); i++) {
+                JSONObject stream = streams.getJSONObject(i);
+                String codecType = stream.getString("codec_type");
+                if ("video".equals(codecType) && probe.getVideoCodec() == null) {
+                    probe.setVideoCodec(stream.getString("codec_name"));
+                    probe.setWidth(stream.getInteger("width"));
+                    probe.setHeight(stream.getInteger("height"));
+                    probe.setFps(parseFrameRate(stream.getString("avg_frame_rate")));
+                } else if ("audio".equals(codecType) && probe.getAudioCodec() == null) {
+                    probe.setAudioCodec(stream.getString("codec_name"));
+                }
+            }
+        }
+        JSONObject format = json.getJSONObject("format");
+        if (format != null) {
+            String duration = format.getString("duration");
+            if (!StringTools.isEmpty(duration)) {
+                probe.setDuration(new BigDecimal(duration).intValue());
+            }
+            String bitrate = format.getString("bit_rate");
+            if (!StringTools.isEmpty(bitrate)) {
+                probe.setBitrate(Long.parseLong(bitrate));
+            }
+        }
+        return probe;
+    }
+
+    //帧率格式为 30000/1001，未知时为 0/0
+    private Double parseFrameRate(String frameRate) {
+        if (StringTools.isEmpty(frameRate) || !frameRate.contains("/")) {
+            return null;
+        }
+        String[] values = frameRate.split("/");
+        double denominator = Double.parseDouble(values[1]);
+        return denominator == 0 ? null : Double.parseDouble(values[0]) / denominator;
+    }
+
+    /**
+     * 单码率：一次 ffmpeg 调用直接输出 HLS 切片和 index.m3u8
+     * H.264 直接拷贝视频流，HEVC 在同一次调用中转成 H.264；开启预览图时同一次调用输出雪碧图
+     * progressListener 不为 null 时解析转码进度（每组进度回调一次）
+     * taskKey 见 TransferCanceller.getTaskKey，删除稿件、删除上传时通过 TransferCanceller 取消
+     */
+    public void convertVideo2Hls(File tsFolder, String videoFilePath, VideoProbeDto probe, String taskKey, Consumer<TransferProgressDto> progressListener) {
+        String folder = tsFolder.getPath().replace("\\", "/");
+        List<String> cmd = new ArrayList<>(Arrays.asList("ffmpeg", "-nostdin", "-y"));
+        addProgressArgs(cmd, progressListener);
+        cmd.addAll(Arrays.asList("-i", videoFilePath, "-map", "0:v:0", "-map", "0:a:0?"));
+        if (Constants.VIDEO_CODE_HEVC.equals(probe.getVideoCodec())) {
+            cmd.addAll(Arrays.asList("-c:v", "libx264", "-crf", "20"));
+        } else {
+            cmd.addAll(Arrays.asList("-c:v", "copy"));
+        }
+        cmd.addAll(Arrays.asList("-c:a", "copy", "-f", "hls", "-hls_time", String.valueOf(Constants.HLS_SEGMENT_SECONDS), "-hls_playlist_type", "vod",
+                "-hls_segment_filename", folder + "/%04d.ts", folder + "/" + Constants.M3U8_NAME));
+        String previewFilter = getPreviewFilter();
+        if (previewFilter != null) {
+            //同一次调用的第二个输出：只解码视频生成预览图，不影响切片的流拷贝
+            cmd.addAll(Arrays.asList("-map", "0:v:0", "-vf", previewFilter));
+            addPreviewOutput(cmd, folder);
+        }
+        processExecutor.execute(cmd, getTranscodeTimeoutSeconds(), taskKey, toProgressCallback(probe, progressListener));
+
+        writePreviewTrack(tsFolder, probe.getDuration());
+    }
+
+    private long getTranscodeTimeoutSeconds() {
+        return appConfig.getProcessTranscodeTimeoutMinutes() * 60L;
+    }
+
+    //进度以 key=value 形式输出到 stdout，关闭默认的统计行
+    private void addProgressArgs(List<String> cmd, Consumer<TransferProgressDto> progressListener) {
+        if (progressListener != null) {
+            cmd.addAll(Arrays.asList("-progress", "pipe:1", "-nostats"));
+        }
+    }
+
+    /**
+     * 把 ffmpeg 的进度字段（out_time_us、fps、speed）换算成百分比和剩余时间
+     */
+    private Consumer<Map<String, String>> toProgressCallback(VideoProbeDto probe, Consumer<TransferProgressDto> progressListener) {
+        if (progressListener == null) {
+            return null;
+        }
+        int duration = probe.getDuration() == null ? 0 : probe.getDuration();
+        return values -> {
+            TransferProgressDto progressDto = new TransferProgressDto();
+            //旧版本 ffmpeg 只有 out_time_ms（单位实际也是微秒）
+            Double outTimeUs = parseProgressNumber(values.containsKey("out_time_us") ? values.get("out_time_us") : values.get("out_time_ms"));
+            double outSeconds = outTimeUs == null ? 0 : outTimeUs / 1000000;
+            Double speed = parseProgressNumber(values.get("speed"));
+            progressDto.setFps(parseProgressNumber(values.get("fps")));
+            progressDto.setSpeed(speed);
+            if ("end".equals(values.get("progress"))) {
+                progressDto.setPercent(100);
+                progressDto.setEtaSeconds(0L);
+            } else if (duration > 0) {
+                //100 只在真正结束时出现
+                progressDto.setPercent((int) Math.min(99, Math.max(0, outSeconds * 100 / duration)));
+                if (speed != null && speed > 0) {
+                    progressDto.setEtaSeconds((long) Math.max(0, (duration - outSeconds) / speed));
+                }
+            }
+            progressListener.accept(progressDto);
+        };
+    }
+
+    //进度值可能是 N/A 或带单位（speed=1.5x）
+    private Double parseProgressNumber(String value) {
+        if (StringTools.isEmpty(value)) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.endsWith("x") ? value.substring(0, value.length() - 1) : value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 根据配置和原视频分辨率计算要输出的码率档位（不放大：高于原视频的档位跳过，至少保留一档）
+     *
+     * @param probe 原视频信息，分辨率未知时使用全部档位
+     * @return 按高度从低到高排序；未配置多码率时返回空列表
+     */
+    public List<HlsRenditionDto> getHlsLadder(VideoProbeDto probe) {
+        List<HlsRenditionDto> configLadder = new ArrayList<>();
+        String ladderConfig = appConfig.getTransferHlsLadder();
+        if (StringTools.isEmpty(ladderConfig)) {
+            return configLadder;
+        }
+        for (String item : ladderConfig.split(",")) {
+            String[] values = item.trim().split(":");
+            if (values.length != 2) {
+                throw new BusinessException("多码率档位配置错误: " + item);
+            }
+            configLadder.add(new HlsRenditionDto(Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim())));
+        }
+        configLadder.sort(Comparator.comparing(HlsRenditionDto::getHeight));
+
+        List<HlsRenditionDto> ladder = new ArrayList<>();
+        for (HlsRenditionDto rendition : configLadder) {
+            if (!probe.hasResolution() || rendition.getHeight() <= probe.getHeight()) {
+                ladder.add(rendition);
+            }
+        }
+        if (ladder.isEmpty()) {
+            //原视频比最低档还小，按原高度输出最低档码率
+            HlsRenditionDto lowest = configLadder.get(0);
+            ladder.add(new HlsRenditionDto(probe.getHeight() - probe.getHeight() % 2, lowest.getVideoBitrate()));
+        }
+        if (probe.hasResolution()) {
+            for (HlsRenditionDto rendition : ladder) {
+                //与 scale=-2:高度 的计算一致，宽度取偶数
+                int width = (int) Math.round((double) probe.getWidth() * rendition.getHeight() / probe.getHeight());
+                rendition.setWidth(width - width % 2);
+            }
+        }
+        return ladder;
+    }
+
+    /**
+     * 一次 ffmpeg 调用输出全部码率档位的 HLS 切片，并生成主播放列表
+     * 各档位关键帧按切片时长对齐，播放器切换码率时切片边界一致
+     *
+     * taskKey 见 TransferCanceller.getTaskKey，删除稿件、删除上传时通过 TransferCanceller 取消
+     *
+     * 目录结构：tsFolder/master.m3u8、tsFolder/{档位}/index.m3u8、tsFolder/{档位}/0000.ts ...
+     * 开启预览图时还有 tsFolder/thumbnails.vtt、tsFolder/sprite_000.jpg ...
+     */
+    public void convertVideo2HlsLadder(File tsFolder, String videoFilePath, List<HlsRenditionDto> ladder, VideoProbeDto probe, String taskKey,
+                                       Consumer<TransferProgressDto> progressListener) {
+        boolean hasAudio = probe.hasAudio();
+        String folder = tsFolder.getPath().replace("\\", "/");
+        for (HlsRenditionDto rendition : ladder) {
+            new File(tsFolder, rendition.getName()).mkdirs();
+        }
+        Integer audioBitrate = appConfig.getTransferHlsAudioBitrate();
+        String previewFilter = getPreviewFilter();
+        //预览图作为 split 的最后一路，与各档位共用一次解码
+        int splitCount = previewFilter == null ? ladder.size() : ladder.size() + 1;
+        StringBuilder filter = new StringBuilder("[0:v]split=").append(splitCount);
+        for (int i = 0; i < splitCount; i++) {
+            filter.append("[s").append(i).append("]");
+        }
+        List<String> maps = new ArrayList<>();
+        StringBuilder streamMap = new StringBuilder();
+        for (int i = 0; i < ladder.size(); i++) {
+            HlsRenditionDto rendition = ladder.get(i);
+            int bitrate = rendition.getVideoBitrate();
+            filter.append(";[s").append(i).append("]scale=-2:").append(rendition.getHeight()).append("[v").append(i).append("]");
+            maps.addAll(Arrays.asList("-map", "[v" + i + "]",
+                    "-b:v:" + i, bitrate + "k",
+                    "-maxrate:v:" + i, bitrate * 107 / 100 + "k",
+                    "-bufsize:v:" + i, bitrate * 3 / 2 + "k"));
+            if (hasAudio) {
+                maps.addAll(Arrays.asList("-map", "0:a:0"));
+            }
+            streamMap.append(i == 0 ? "" : " ").append("v:").append(i);
+            if (hasAudio) {
+                streamMap.append(",a:").append(i);
+            }
+            streamMap.append(",name:").append(rendition.getName());
+        }
+        if (previewFilter != null) {
+            filter.append(";[s").append(ladder.size()).append("]").append(previewFilter).append("[preview]");
+        }
+
+        List<String> cmd = new ArrayList<>(Arrays.asList("ffmpeg", "-nostdin", "-y"));
+        addProgressArgs(cmd, progressListener);
+        cmd.addAll(Arrays.asList("-i", videoFilePath, "-filter_complex", filter.toString()));
+        cmd.addAll(maps);
+        cmd.addAll(Arrays.asList("-c:v", "libx264", "-preset", "veryfast", "-profile:v", "main", "-pix_fmt", "yuv420p",
+                "-sc_threshold", "0", "-force_key_frames", "expr:gte(t,n_forced*" + Constants.HLS_SEGMENT_SECONDS + ")"));
+        if (hasAudio) {
+            cmd.addAll(Arrays.asList("-c:a", "aac", "-b:a", audioBitrate + "k", "-ac", "2"));
+        }
+        cmd.addAll(Arrays.asList("-f", "hls", "-hls_time", String.valueOf(Constants.HLS_SEGMENT_SECONDS),
+                "-hls_playlist_type", "vod", "-hls_flags", "independent_segments",
+                "-hls_segment_filename", folder + "/%v/%04d.ts",
+                "-var_stream_map", streamMap.toString(),
+                folder + "/%v/" + Constants.M3U8_NAME));
+        if (previewFilter != null) {
+            cmd.addAll(Arrays.asList("-map", "[preview]"));
+            addPreviewOutput(cmd, folder);
+        }
+        processExecutor.execute(cmd, getTranscodeTimeoutSeconds(), taskKey, toProgressCallback(probe, progressListener));
+
+        writeHlsMasterPlaylist(tsFolder, ladder, hasAudio ? audioBitrate : 0);
+        writePreviewTrack(tsFolder, probe.getDuration());
+    }
+
+    /**
+     * 预览图滤镜：按间隔截帧、缩放，每 列数x行数 帧拼成一张雪碧图
+     *
+     * @return 未开启预览图时返回 null
+     */
+    private String getPreviewFilter() {
+        Integer interval = appConfig.getTransferPreviewIntervalSeconds();
+        if (interval == null || interval <= 0) {
+            return null;
+        }
+        return "fps=1/" + interval + ",scale=" + appConfig.getTransferPreviewWidth() + ":-2,tile="
+                + Constants.PREVIEW_SPRITE_COLUMNS + "x" + Constants.PREVIEW_SPRITE_ROWS;
+    }
+
+    //雪碧图输出（前面需要先加好 -map）
+    private void addPreviewOutput(List<String> cmd, String folder) {
+        cmd.addAll(Arrays.asList("-c:v", "mjpeg", "-q:v", "5", "-f", "image2", "-start_number", "0",
+                folder + "/" + Constants.PREVIEW_SPRITE_NAME_PATTERN));
+    }
+
+    /**
+     * 根据生成的雪碧图写 WebVTT 缩略图轨道，每个时间段指向雪碧图中的一格（#xywh=x,y,宽,高）
+     * 播放器拖动进度条时只需要加载几张小图，不用去拉视频切片
+     * 预览图不影响播放，生成失败只记录日志
+     */
+    private void writePreviewTrack(File tsFolder, Integer duration) {
+        Integer interval = appConfig.getTransferPreviewIntervalSeconds();
+        File[] sprites = tsFolder.listFiles((dir, name) -> name.startsWith(Constants.PREVIEW_SPRITE_PREFIX));
+        if (interval == null || interval <= 0 || duration == null || duration <= 0 || sprites == null || sprites.length == 0) {
+            return;
+        }
+        try {
+            //每张雪碧图尺寸相同（最后一张不满时用黑色补齐），读第一张的尺寸算出每格大小
+            int[] spriteSize = readImageSize(new File(tsFolder, String.format(Constants.PREVIEW_SPRITE_NAME_PATTERN, 0)));
+            int tileWidth = spriteSize[0] / Constants.PREVIEW_SPRITE_COLUMNS;
+            int tileHeight = spriteSize[1] / Constants.PREVIEW_SPRITE_ROWS;
+            int tilesPerSprite = Constants.PREVIEW_SPRITE_COLUMNS * Constants.PREVIEW_SPRITE_ROWS;
+            int frameCount = Math.min((duration + interval - 1) / interval, sprites.length * tilesPerSprite);
+
+            StringBuilder vtt = new StringBuilder("WEBVTT\n\n");
+            for (int i = 0; i < frameCount; i++) {
+                int tile = i % tilesPerSprite;
+                vtt.append(formatVttTime(i * interval)).append(" --> ").append(formatVttTime(Math.min((i + 1) * interval, duration))).append("\n")
+                        .append(String.format(Constants.PREVIEW_SPRITE_NAME_PATTERN, i / tilesPerSprite))
+                        .append("#xywh=").append(tile % Constants.PREVIEW_SPRITE_COLUMNS * tileWidth).append(",")
+                        .append(tile / Constants.PREVIEW_SPRITE_COLUMNS * tileHeight).append(",")
+                        .append(tileWidth).append(",").append(tileHeight).append("\n\n");
+            }
+            FileUtils.writeStringToFile(new File(tsFolder, Constants.PREVIEW_VTT_NAME), vtt.toString(), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            log.error("生成预览缩略图轨道失败, folder={}", tsFolder.getPath(), e);
+        }
+    }
+
+    //只读取图片头部的宽高，不解码整张图片
+    private int[] readImageSize(File imageFile) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(imageFile)) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("无法读取图片: " + imageFile.getPath());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    //WebVTT 时间格式 HH:MM:SS.mmm
+    private String formatVttTime(int seconds) {
+        return String.format("%02d:%02d:%02d.000", seconds / 3600, seconds % 3600 / 60, seconds % 60);
+    }
+
+    /**
+     * 生成主播放列表，低码率档位在前：播放器先用小切片起播，再按带宽向上切换
+     */
+    private void writeHlsMasterPlaylist(File tsFolder, List<HlsRenditionDto> ladder, int audioBitrate) {
+        StringBuilder master = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-INDEPENDENT-SEGMENTS\n");
+        for (HlsRenditionDto rendition : ladder) {
+            long bandwidth = (rendition.getVideoBitrate() * 107L / 100 + audioBitrate) * 1000;
+            master.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(bandwidth);
+            if (rendition.getWidth() != null) {
+                master.append(",RESOLUTION=").append(rendition.getWidth()).append("x").append(rendition.getHeight());
+            }
+            master.append("\n").append(rendition.getName()).append("/").append(Constants.M3U8_NAME).append("\n");
+        }
+        try {
+            FileUtils.writeStringToFile(new File(tsFolder, Constants.M3U8_MASTER_NAME), master.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new BusinessException("生成主播放列表失败", e);
+        }
     }
 }
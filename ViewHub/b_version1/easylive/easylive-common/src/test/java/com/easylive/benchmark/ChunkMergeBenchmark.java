@@ -0,0 +1,103 @@
+package com.easylive.benchmark;
+
+import com.easylive.service.impl.VideoInfoPostServiceImpl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+ * 分片合并吞吐量对比：原来的 10KB byte[] 循环 与 VideoInfoPostServiceImpl.union（预分配 + FileChannel.transferTo）
+ *
+ * 不是单元测试，不会被 mvn test 执行，需要手动运行：
+ * mvn -pl easylive-common test-compile
+ * java -cp easylive-common/target/classes:easylive-common/target/test-classes:依赖 com.easylive.benchmark.ChunkMergeBenchmark [目录] [大小GB,逗号分隔] [分片KB]
+ *
+ * 默认在系统临时目录生成 1、2、4 GB 的分片，分片大小和前端一致（512KB）；每个大小两种方式各跑两轮，取第二轮
+ * 分片刚写入，大部分在页缓存中，测的是合并本身的开销，不是磁盘读速度
+ */
+public class ChunkMergeBenchmark {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    private static final int ROUNDS = 2;
+
+    public static void main(String[] args) throws Exception {
+        File baseDir = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"), "chunk-merge-benchmark");
+        String sizes = args.length > 1 ? args[1] : "1,2,4";
+        int chunkSize = (args.length > 2 ? Integer.parseInt(args[2]) : 512) * 1024;
+
+        for (String size : sizes.split(",")) {
+            long totalSize = Long.parseLong(size.trim()) * GB;
+            File chunkDir = new File(baseDir, "chunks");
+            File targetFile = new File(baseDir, "merged");
+            int chunks = createChunks(chunkDir, totalSize, chunkSize);
+            try {
+                long legacyCost = 0;
+                long unionCost = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    targetFile.delete();
+                    long start = System.nanoTime();
+                    legacyUnion(chunkDir, targetFile, chunks);
+                    legacyCost = System.nanoTime() - start;
+
+                    targetFile.delete();
+                    start = System.nanoTime();
+                    VideoInfoPostServiceImpl.union(chunkDir.getAbsolutePath(), targetFile.getAbsolutePath(), false);
+                    unionCost = System.nanoTime() - start;
+                    if (targetFile.length() != totalSize) {
+                        throw new IllegalStateException("合并后大小不一致: " + targetFile.length());
+                    }
+                }
+                System.out.printf("size=%sGB chunks=%d byte[]=%dms (%dMB/s) transferTo=%dms (%dMB/s)%n", size.trim(), chunks,
+                        legacyCost / 1000000, speed(totalSize, legacyCost), unionCost / 1000000, speed(totalSize, unionCost));
+            } finally {
+                targetFile.delete();
+                deleteChunks(chunkDir, chunks);
+            }
+        }
+    }
+
+    private static int createChunks(File chunkDir, long totalSize, int chunkSize) throws IOException {
+        chunkDir.mkdirs();
+        byte[] buffer = new byte[chunkSize];
+        new Random(0).nextBytes(buffer);
+        int chunks = 0;
+        for (long written = 0; written < totalSize; written += chunkSize) {
+            try (FileOutputStream out = new FileOutputStream(new File(chunkDir, String.valueOf(chunks++)))) {
+                out.write(buffer, 0, (int) Math.min(chunkSize, totalSize - written));
+            }
+        }
+        return chunks;
+    }
+
+    private static void deleteChunks(File chunkDir, int chunks) {
+        for (int i = 0; i < chunks; i++) {
+            new File(chunkDir, String.valueOf(i)).delete();
+        }
+        chunkDir.delete();
+    }
+
+    /**
+     * 优化前的合并方式
+     */
+    private static void legacyUnion(File chunkDir, File targetFile, int chunks) throws IOException {
+        try (RandomAccessFile writeFile = new RandomAccessFile(targetFile, "rw")) {
+            byte[] b = new byte[1024 * 10];
+            for (int i = 0; i < chunks; i++) {
+                int len;
+                try (RandomAccessFile readFile = new RandomAccessFile(new File(chunkDir, String.valueOf(i)), "r")) {
+                    while ((len = readFile.read(b)) != -1) {
+                        writeFile.write(b, 0, len);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long speed(long size, long costNanos) {
+        return size * 1000000000L / Math.max(costNanos, 1) / (1024 * 1024);
+    }
+}
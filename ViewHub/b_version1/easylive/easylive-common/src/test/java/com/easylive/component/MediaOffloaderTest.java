@@ -0,0 +1,42 @@
+package com.easylive.component;
+
+import com.easylive.entity.config.AppConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * MediaOffloader 签名和 nginx secure_link_md5 "$secure_link_expires$uri 密钥" 一致
+ *
+ * 期望值由 openssl 独立计算（和 nginx 的计算方式相同）：
+ * echo -n "1893456009/media-internal/cover/202610/abc.jpg test-secret" | openssl md5 -binary | base64 | tr +/ -_ | tr -d =
+ */
+public class MediaOffloaderTest {
+
+    private static final long EXPIRES = 1893456009L;
+
+    private MediaOffloader mediaOffloader;
+
+    @BeforeEach
+    public void setUp() {
+        AppConfig appConfig = new AppConfig();
+        ReflectionTestUtils.setField(appConfig, "mediaOffloadPrefix", "/media-internal/");
+        ReflectionTestUtils.setField(appConfig, "mediaOffloadSecret", "test-secret");
+        mediaOffloader = new MediaOffloader(appConfig, null);
+    }
+
+    @Test
+    public void signMatchesNginx() {
+        //base64 结果 FeLiQqzTMWCMTcr+of/Uag==，包含 + 和 /，同时校验 base64url 替换和去掉填充
+        assertEquals("/media-internal/cover/202610/abc.jpg?md5=FeLiQqzTMWCMTcr-of_Uag&expires=1893456009",
+                mediaOffloader.getSignedUri("cover/202610/abc.jpg", EXPIRES));
+    }
+
+    @Test
+    public void signHlsSegment() {
+        assertEquals("/media-internal/video/20261019/abc/720p/0001.ts?md5=B0YMRMRF5NAg3TvAs5LZ7A&expires=1893456000",
+                mediaOffloader.getSignedUri("video/20261019/abc/720p/0001.ts", 1893456000L));
+    }
+}
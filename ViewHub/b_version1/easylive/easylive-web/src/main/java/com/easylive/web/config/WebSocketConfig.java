@@ -1,7 +1,10 @@
 package com.easylive.web.config;
 
+import com.easylive.entity.config.AppConfig;
 import com.easylive.web.websocket.DanmuWebSocketHandler;
 import com.easylive.web.websocket.OnlineCountWebSocketHandler;
+import com.easylive.web.websocket.TransferProgressHandshakeInterceptor;
+import com.easylive.web.websocket.TransferProgressWebSocketHandler;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import lombok.RequiredArgsConstructor;
@@ -14,8 +17,10 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
  * 功能：
  * 1. 配置弹幕实时推送的WebSocket端点
  * 2. 配置在线人数实时推送的WebSocket端点
- * 3. 支持SockJS降级（兼容性更好）
- * 4. 允许跨域访问
+ * 3. 配置转码进度实时推送的WebSocket端点（需要登录）
+ * 4. 支持SockJS降级（兼容性更好）
+ * 5. 弹幕、在线人数不需要登录，允许任意来源；转码进度用 cookie 校验登录，只允许 ws.allowedOrigins 中的前端来源，
+ *    否则其他网站的页面可以带着用户的 cookie 连接，读取上传、转码事件
  */
 @Configuration
 @EnableWebSocket
@@ -26,6 +31,12 @@ public class WebSocketConfig implements WebSocketConfigurer {
 
     private final OnlineCountWebSocketHandler onlineCountWebSocketHandler;
 
+    private final TransferProgressWebSocketHandler transferProgressWebSocketHandler;
+
+    private final TransferProgressHandshakeInterceptor transferProgressHandshakeInterceptor;
+
+    private final AppConfig appConfig;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         // 注册弹幕WebSocket处理器
@@ -41,6 +52,13 @@ public class WebSocketConfig implements WebSocketConfigurer {
         registry.addHandler(onlineCountWebSocketHandler, "/ws/online/{fileId}")
                 .setAllowedOrigins("*")  // 允许跨域
                 .withSockJS();  // 支持SockJS降级
+
+        // 注册转码进度WebSocket处理器
+        // 路径：/ws/transferProgress，握手时校验来源和登录（cookie 中的 token），来源不允许时返回 403
+        registry.addHandler(transferProgressWebSocketHandler, "/ws/transferProgress")
+                .addInterceptors(transferProgressHandshakeInterceptor)
+                .setAllowedOriginPatterns(appConfig.getWsAllowedOrigins())
+                .withSockJS();
     }
 }
 
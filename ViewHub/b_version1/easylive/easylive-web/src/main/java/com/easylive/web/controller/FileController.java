@@ -1,6 +1,12 @@
 package com.easylive.web.controller;
 
+import com.easylive.cache.VideoFilePathResolver;
+import com.easylive.component.ImageProcessor;
+import com.easylive.component.ImageVariantCache;
+import com.easylive.component.MediaOffloader;
+import com.easylive.component.MediaResourceWriter;
 import com.easylive.component.RedisComponent;
+import com.easylive.component.TransferCanceller;
 import com.easylive.entity.config.AppConfig;
 import com.easylive.entity.constant.Constants;
 import com.easylive.entity.dto.SysSettingDto;
@@ -12,28 +18,43 @@ import com.easylive.entity.enums.DateTimePatternEnum;
 import com.easylive.entity.enums.ResponseCodeEnum;
 import com.easylive.entity.po.VideoInfoFile;
 import com.easylive.entity.vo.ResponseVO;
+import com.easylive.entity.vo.UploadChunkStatusVO;
 import com.easylive.exception.BusinessException;
 import com.easylive.service.VideoInfoFileService;
+import com.easylive.storage.FileStorage;
 import com.easylive.utils.DateUtil;
-import com.easylive.utils.FFmpegUtils;
 import com.easylive.utils.StringTools;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.tomcat.util.http.fileupload.FileUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 @RestController
 @RequestMapping("/file")
@@ -46,15 +67,30 @@ public class FileController extends ABaseController {
 
     private final RedisComponent redisComponent;
 
-    private final FFmpegUtils ffmpegUtils;
+    private final ImageProcessor imageProcessor;
+
+    private final FileStorage fileStorage;
+
+    private final MediaResourceWriter mediaResourceWriter;
+
+    private final MediaOffloader mediaOffloader;
+
+    private final ImageVariantCache imageVariantCache;
+
+    private final TransferCanceller transferCanceller;
 
     private final VideoInfoFileService videoInfoFileService;
 
+    private final VideoFilePathResolver videoFilePathResolver;
+
     private final VideoPlayProducer videoPlayProducer;
 
-    //获取资源
+    //原始请求体上传使用的直接内存缓冲区，每个请求线程复用一个
+    private static final ThreadLocal<ByteBuffer> CHUNK_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(Constants.UPLOAD_CHUNK_BUFFER_SIZE));
+
+    //获取资源；传 width 时返回按宽度缩小的图片（第一次请求时生成），列表页不用下载原图
     @RequestMapping("/getResource")
-    public void getResource(HttpServletResponse response, @NotNull String sourceName) {
+    public void getResource(HttpServletRequest request, HttpServletResponse response, @NotNull String sourceName, Integer width) {
         if (StringTools.pathIsOk(sourceName) == false) {
             throw new BusinessException(ResponseCodeEnum.CODE_600);
         }
@@ -68,26 +104,20 @@ public class FileController extends ABaseController {
             response.setContentType("image/jpeg");
         }
         response.setHeader("Cache-Control", "max-age=2592000");
-        readFile(response, sourceName);
+        File variantFile = imageVariantCache.getVariant(sourceName, width);
+        if (variantFile != null && mediaResourceWriter.write(request, response, variantFile)) {
+            return;
+        }
+        readFile(request, response, sourceName);
 
     }
 
-    //读文件
-    protected void readFile(HttpServletResponse response, String filePath) {
-        File file = new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER + filePath);
-        if (!file.exists()) {
+    //读文件：开启反向代理输出时只返回 X-Accel-Redirect，否则由应用输出（支持 Range、304，本地文件走 sendfile）
+    protected void readFile(HttpServletRequest request, HttpServletResponse response, String filePath) {
+        if (mediaOffloader.offload(response, filePath)) {
             return;
         }
-        try (OutputStream out = response.getOutputStream(); FileInputStream in = new FileInputStream(file)) {
-            byte[] byteData = new byte[1024];
-            int len = 0;
-            while ((len = in.read(byteData)) != -1) {
-                out.write(byteData, 0, len);
-            }
-            out.flush();
-        } catch (Exception e) {
-            log.error("读取文件异常", e);
-        }
+        mediaResourceWriter.write(request, response, filePath);
     }
 
     //预上传
@@ -100,41 +130,140 @@ public class FileController extends ABaseController {
 
     }
 
-    //正式上传
+    //正式上传（分片可以乱序、并发上传，重复上传同一分片会覆盖）
     @RequestMapping("/uploadVideo")
-    public ResponseVO uploadVideo(@NotNull MultipartFile chunkFile, @NotNull Integer chunkIndex, @NotEmpty String uploadId) throws IOException {
+    public ResponseVO uploadVideo(@NotNull MultipartFile chunkFile, @NotNull Integer chunkIndex, @NotEmpty String uploadId, String chunkMd5) throws IOException {
         //从缓存中获取当前用户信息
         TokenUserInfoDto tokenUserInfoDto = getTokenUserInfoDto();
+        UploadingFileDto fileDto = checkUploadChunk(tokenUserInfoDto.getUserId(), uploadId, chunkIndex, chunkFile.getSize());
+
+        //先写临时文件，校验通过后再改名，合并时不会读到写了一半的分片
+        File partFile = getChunkPartFile(fileDto, chunkIndex);
+        String actualMd5;
+        try {
+            //边写边计算 MD5（客户端传了 chunkMd5 时用于校验，同时用于转码前计算文件内容哈希）
+            MessageDigest digest = DigestUtils.getMd5Digest();
+            try (InputStream in = new DigestInputStream(chunkFile.getInputStream(), digest)) {
+                Files.copy(in, partFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            actualMd5 = checkChunkMd5(chunkMd5, digest);
+            moveChunkFile(partFile, fileDto, chunkIndex);
+        } finally {
+            partFile.delete();
+        }
+
+        //记录分片已上传（位图 + 已上传大小 + 分片 MD5），不再回写整个上传信息
+        redisComponent.saveUploadedChunk(tokenUserInfoDto.getUserId(), fileDto, chunkIndex, chunkFile.getSize(), actualMd5);
+
+        return getSuccessResponseVO(uploadId);
+
+    }
+
+    /**
+     * 正式上传（请求体直接是分片内容，Content-Type: application/octet-stream）
+     * 不经过 multipart 解析，也不会先落 Tomcat 临时文件再拷贝一次，请求体直接写入分片文件
+     */
+    @PostMapping("/uploadVideoChunk")
+    public ResponseVO uploadVideoChunk(HttpServletRequest request, @NotNull Integer chunkIndex, @NotEmpty String uploadId, String chunkMd5) throws IOException {
+        TokenUserInfoDto tokenUserInfoDto = getTokenUserInfoDto();
+        long contentLength = request.getContentLengthLong();
+        if (contentLength <= 0) {
+            //需要 Content-Length 做大小校验
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+        UploadingFileDto fileDto = checkUploadChunk(tokenUserInfoDto.getUserId(), uploadId, chunkIndex, contentLength);
+
+        File partFile = getChunkPartFile(fileDto, chunkIndex);
+        String actualMd5;
+        try {
+            MessageDigest digest = DigestUtils.getMd5Digest();
+            ByteBuffer buffer = CHUNK_BUFFER.get();
+            long written = 0;
+            try (ReadableByteChannel in = Channels.newChannel(request.getInputStream());
+                 FileChannel out = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                buffer.clear();
+                while (in.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        written += out.write(buffer);
+                    }
+                    buffer.clear();
+                    if (written > contentLength) {
+                        throw new BusinessException(ResponseCodeEnum.CODE_600);
+                    }
+                }
+            }
+            if (written != contentLength) {
+                //客户端中途断开
+                throw new BusinessException("分片不完整，请重新上传");
+            }
+            actualMd5 = checkChunkMd5(chunkMd5, digest);
+            moveChunkFile(partFile, fileDto, chunkIndex);
+        } finally {
+            partFile.delete();
+        }
+
+        redisComponent.saveUploadedChunk(tokenUserInfoDto.getUserId(), fileDto, chunkIndex, contentLength, actualMd5);
+
+        return getSuccessResponseVO(uploadId);
+    }
+
+    //校验上传信息、分片序号和文件大小
+    private UploadingFileDto checkUploadChunk(String userId, String uploadId, Integer chunkIndex, long chunkSize) {
         //从redis中获取上传信息
-        UploadingFileDto fileDto = redisComponent.getUploadingVideoFile(tokenUserInfoDto.getUserId(), uploadId);
+        UploadingFileDto fileDto = redisComponent.getUploadingVideoFile(userId, uploadId);
         if(fileDto==null){
             throw new BusinessException("文件不存在，请重新上传");
         }
         //检查文件大小是否超过系统限制
         SysSettingDto sysSettingDto = redisComponent.getSysSettingDto();
-        if(fileDto.getFileSize()>sysSettingDto.getVideoSize()*Constants.MB_SIZE){
+        if(fileDto.getFileSize()+chunkSize>sysSettingDto.getVideoSize()*Constants.MB_SIZE){
             throw  new BusinessException("文件超过大小限制");
         }
 
-        //确保分片索引不超过总分片数，并且是按顺序上传（不能跳过未上传的分片）
-        if(chunkIndex>fileDto.getChunkIndex()||chunkIndex>fileDto.getChunks()-1){
+        //确保分片索引在总分片数范围内
+        if(chunkIndex<0||chunkIndex>fileDto.getChunks()-1){
             throw new BusinessException(ResponseCodeEnum.CODE_600);
         }
+        return fileDto;
+    }
 
-        //构造分片文件的存储路径
+    //分片先写到这个临时文件（同一分片并发重传互不影响）
+    private File getChunkPartFile(UploadingFileDto fileDto, Integer chunkIndex) {
         String folder = appConfig.getProjectFolder()+Constants.FILE_FOLDER+Constants.FILE_TEMP+fileDto.getFilePath();
-        File targetFile = new File(folder+"/"+chunkIndex);
-
-        //将上传的分片保存到指定位置
-        chunkFile.transferTo(targetFile);
+        return new File(folder+"/"+chunkIndex+"_"+StringTools.getRandomString(Constants.length_10)+Constants.UPLOAD_CHUNK_PART_SUFFIX);
+    }
 
-        //更新上传进度信息
-        fileDto.setChunkIndex(chunkIndex+1); // 设置下一个需要上传的分片索引
-        fileDto.setFileSize(fileDto.getFileSize()+chunkFile.getSize());  //之前文件大小+一个现在分片大小    主要是用于更新传输的文件大小
-        redisComponent.updateVideoFileInfo(tokenUserInfoDto.getUserId(),fileDto);
+    //返回实际的分片 MD5；客户端传了 chunkMd5 时校验是否一致
+    private String checkChunkMd5(String chunkMd5, MessageDigest digest) {
+        String actualMd5 = Hex.encodeHexString(digest.digest());
+        if (!StringTools.isEmpty(chunkMd5) && !chunkMd5.equalsIgnoreCase(actualMd5)) {
+            throw new BusinessException("分片校验失败，请重新上传");
+        }
+        return actualMd5;
+    }
 
-        return getSuccessResponseVO(uploadId);
+    //临时文件存为正式分片文件（本地存储时原子改名，对象存储时上传后删除临时文件）
+    private void moveChunkFile(File partFile, UploadingFileDto fileDto, Integer chunkIndex) throws IOException {
+        fileStorage.put(Constants.FILE_TEMP + fileDto.getFilePath() + "/" + chunkIndex, partFile);
+    }
 
+    //查询分片上传进度，断点续传时只补传缺失的分片
+    @RequestMapping("/getUploadedChunks")
+    public ResponseVO getUploadedChunks(@NotEmpty String uploadId) {
+        TokenUserInfoDto tokenUserInfoDto = getTokenUserInfoDto();
+        UploadingFileDto fileDto = redisComponent.getUploadingVideoFile(tokenUserInfoDto.getUserId(), uploadId);
+        if(fileDto==null){
+            throw new BusinessException("文件不存在，请重新上传");
+        }
+        List<Integer> missingChunks = redisComponent.getMissingChunks(tokenUserInfoDto.getUserId(), fileDto);
+        UploadChunkStatusVO statusVO = new UploadChunkStatusVO();
+        statusVO.setUploadId(uploadId);
+        statusVO.setChunks(fileDto.getChunks());
+        statusVO.setUploadedCount(fileDto.getChunks() - missingChunks.size());
+        statusVO.setMissingChunks(missingChunks);
+        return getSuccessResponseVO(statusVO);
     }
 
 
@@ -151,8 +280,11 @@ public class FileController extends ABaseController {
 
         //redis中删除视频信息
         redisComponent.delVideoFileInfo(tokenUserInfoDto.getUserId(),uploadId);
+        //已提交的上传可能正在转码，结束 ffmpeg 进程
+        transferCanceller.cancel(Collections.singletonList(TransferCanceller.getTaskKey(tokenUserInfoDto.getUserId(), uploadId)));
 
-        //本地删除文件
+        //删除已上传的分片，以及本地残留的临时文件
+        fileStorage.delete(Constants.FILE_TEMP + fileDto.getFilePath());
         FileUtils.deleteDirectory(new File(appConfig.getProjectFolder()+Constants.FILE_FOLDER+Constants.FILE_TEMP+fileDto.getFilePath()));
 
         return getSuccessResponseVO(uploadId);
@@ -174,16 +306,23 @@ public class FileController extends ABaseController {
         file.transferTo(new File(filePath));
         if (createThumbnail) {
             //生成缩略图
-            ffmpegUtils.createImageThumbnail(filePath);
+            imageProcessor.createThumbnails(filePath);
+        }
+        //原图和缩略图存入存储（本地存储时就是当前目录）
+        File[] imageFiles = folderFile.listFiles((dir, name) -> name.startsWith(realFileName));
+        if (imageFiles != null) {
+            for (File imageFile : imageFiles) {
+                fileStorage.put(Constants.FILE_COVER + day + "/" + imageFile.getName(), imageFile);
+            }
         }
         return getSuccessResponseVO(Constants.FILE_COVER + day + "/" + realFileName);
     }
 
     @RequestMapping("/videoResource/{fileId}")
-    public void VideoResource(HttpServletResponse response, @PathVariable @NotEmpty String fileId){
+    public void VideoResource(HttpServletRequest request, HttpServletResponse response, @PathVariable @NotEmpty String fileId){
         VideoInfoFile videoInfoFile = videoInfoFileService.getVideoInfoFileByFileId(fileId);
         String filePath = videoInfoFile.getFilePath();
-        readFile(response, filePath+"/"+Constants.M3U8_NAME);
+        readFile(request, response, filePath + "/" + getPlaylistName(filePath));
 
         //更新视频的阅读信息等等
         VideoPlayInfoDto videoPlayInfoDto = new VideoPlayInfoDto();
@@ -209,10 +348,40 @@ public class FileController extends ABaseController {
     }
 
     @RequestMapping("/videoResource/{fileId}/{ts}")
-    public void VideoResourceTs(HttpServletResponse response, @PathVariable @NotEmpty String fileId, @PathVariable @NotNull String ts) {
-        VideoInfoFile videoInfoFile = videoInfoFileService.getVideoInfoFileByFileId(fileId);
-        String filePath = videoInfoFile.getFilePath();
-        readFile(response, filePath + "/" + ts);
+    public void VideoResourceTs(HttpServletRequest request, HttpServletResponse response, @PathVariable @NotEmpty String fileId, @PathVariable @NotNull String ts) {
+        if (!StringTools.pathIsOk(ts)) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+        readFile(request, response, resolveFilePath(fileId) + "/" + ts);
+    }
+
+    //多码率档位的子播放列表和切片
+    @RequestMapping("/videoResource/{fileId}/{rendition}/{ts}")
+    public void VideoResourceRenditionTs(HttpServletRequest request, HttpServletResponse response, @PathVariable @NotEmpty String fileId, @PathVariable @NotEmpty String rendition,
+                                         @PathVariable @NotNull String ts) {
+        if (!StringTools.pathIsOk(rendition) || !StringTools.pathIsOk(ts)) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+        readFile(request, response, resolveFilePath(fileId) + "/" + rendition + "/" + ts);
+    }
+
+    //切片请求量大，fileId 对应的目录走本地缓存，不查询数据库
+    private String resolveFilePath(String fileId) {
+        String filePath = videoFilePathResolver.resolve(fileId);
+        if (filePath == null) {
+            throw new BusinessException(ResponseCodeEnum.CODE_404);
+        }
+        return filePath;
+    }
+
+    //多码率转码的视频返回主播放列表，旧视频（单码率）返回原来的播放列表
+    private String getPlaylistName(String filePath) {
+        try {
+            return fileStorage.getSize(filePath + "/" + Constants.M3U8_MASTER_NAME) != null ? Constants.M3U8_MASTER_NAME : Constants.M3U8_NAME;
+        } catch (IOException e) {
+            log.error("读取播放列表失败, filePath={}", filePath, e);
+            return Constants.M3U8_NAME;
+        }
     }
 
 
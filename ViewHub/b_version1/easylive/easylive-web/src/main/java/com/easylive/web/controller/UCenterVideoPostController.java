@@ -1,7 +1,10 @@
 package com.easylive.web.controller;
 
 
+import com.easylive.component.RedisComponent;
 import com.easylive.entity.dto.TokenUserInfoDto;
+import com.easylive.entity.dto.TransferProgressDto;
+import com.easylive.entity.dto.TransferQueueInfoDto;
 import com.easylive.entity.enums.ResponseCodeEnum;
 import com.easylive.entity.enums.VideoStatusEnum;
 import com.easylive.entity.po.VideoInfoFilePost;
@@ -41,6 +44,8 @@ public class UCenterVideoPostController extends ABaseController{
 
     private final VideoInfoService videoInfoService;
 
+    private final RedisComponent redisComponent;
+
     @GlobalInterceptor(checkLogin = true)
     @RequestMapping("/postVideo")
     public ResponseVO postVideo(String videoId, @NotEmpty String videoCover, @NotEmpty @Size(max = 100) String videoName, @NotNull Integer pCategoryId,
@@ -169,4 +174,46 @@ public class UCenterVideoPostController extends ABaseController{
         return getSuccessResponseVO(null);
     }
 
+    //转码排队信息（排队位置、预计完成时间），已转码完成的分P不返回
+    @GlobalInterceptor(checkLogin = true)
+    @RequestMapping("/getTransferQueueInfo")
+    public ResponseVO getTransferQueueInfo(@NotEmpty String videoId) {
+        TokenUserInfoDto tokenUserInfoDto = getTokenUserInfoDto();
+        VideoInfoFilePostQuery videoInfoFilePostQuery = new VideoInfoFilePostQuery();
+        videoInfoFilePostQuery.setVideoId(videoId);
+        videoInfoFilePostQuery.setUserId(tokenUserInfoDto.getUserId());
+        videoInfoFilePostQuery.setOrderBy("file_index asc");
+        List<VideoInfoFilePost> videoInfoFilePostList = this.videoInfoFilePostService.findListByParam(videoInfoFilePostQuery);
+
+        List<TransferQueueInfoDto> queueInfoList = new ArrayList<>();
+        for (VideoInfoFilePost filePost : videoInfoFilePostList) {
+            TransferQueueInfoDto queueInfo = redisComponent.getTransferQueueInfo(filePost.getFileId());
+            if (queueInfo != null) {
+                queueInfoList.add(queueInfo);
+            }
+        }
+        return getSuccessResponseVO(queueInfoList);
+    }
+
+    //转码进度（百分比、帧率、剩余时间），WebSocket 连接建立前或断线重连后获取一次当前进度
+    @GlobalInterceptor(checkLogin = true)
+    @RequestMapping("/getTransferProgress")
+    public ResponseVO getTransferProgress(@NotEmpty String videoId) {
+        TokenUserInfoDto tokenUserInfoDto = getTokenUserInfoDto();
+        VideoInfoFilePostQuery videoInfoFilePostQuery = new VideoInfoFilePostQuery();
+        videoInfoFilePostQuery.setVideoId(videoId);
+        videoInfoFilePostQuery.setUserId(tokenUserInfoDto.getUserId());
+        videoInfoFilePostQuery.setOrderBy("file_index asc");
+        List<VideoInfoFilePost> videoInfoFilePostList = this.videoInfoFilePostService.findListByParam(videoInfoFilePostQuery);
+
+        List<TransferProgressDto> progressList = new ArrayList<>();
+        for (VideoInfoFilePost filePost : videoInfoFilePostList) {
+            TransferProgressDto progress = redisComponent.getTransferProgress(filePost.getFileId());
+            if (progress != null) {
+                progressList.add(progress);
+            }
+        }
+        return getSuccessResponseVO(progressList);
+    }
+
 }
@@ -0,0 +1,60 @@
+package com.easylive.web.websocket;
+
+import com.easylive.component.RedisComponent;
+import com.easylive.entity.constant.Constants;
+import com.easylive.entity.dto.TokenUserInfoDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import javax.servlet.http.Cookie;
+import java.util.Map;
+
+/**
+ * 转码进度 WebSocket 握手校验：从 cookie 中的 token 取出登录用户，未登录拒绝连接
+ */
+@Component
+@RequiredArgsConstructor
+public class TransferProgressHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String ATTR_USER_ID = "userId";
+
+    private final RedisComponent redisComponent;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler,
+                                   Map<String, Object> attributes) {
+        TokenUserInfoDto tokenUserInfoDto = getTokenUserInfo(request);
+        if (tokenUserInfoDto == null || tokenUserInfoDto.getExpireAt() < System.currentTimeMillis()) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(ATTR_USER_ID, tokenUserInfoDto.getUserId());
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private TokenUserInfoDto getTokenUserInfo(ServerHttpRequest request) {
+        if (!(request instanceof ServletServerHttpRequest)) {
+            return null;
+        }
+        Cookie[] cookies = ((ServletServerHttpRequest) request).getServletRequest().getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (cookie.getName().equalsIgnoreCase(Constants.TOKEN_WEB)) {
+                return redisComponent.getTokenInfo(cookie.getValue());
+            }
+        }
+        return null;
+    }
+}
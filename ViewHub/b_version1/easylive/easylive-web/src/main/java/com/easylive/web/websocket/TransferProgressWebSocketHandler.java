@@ -0,0 +1,152 @@
+package com.easylive.web.websocket;
+
+import com.easylive.entity.constant.Constants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 转码进度WebSocket处理器
+ *
+ * 功能：
+ * 1. 按登录用户管理连接（握手时由 TransferProgressHandshakeInterceptor 校验登录）
+ * 2. 转码进程（可能在任意实例上）通过 Redis Pub/Sub 发布进度，本实例转发给该用户的所有连接
+ * 3. 创作中心稿件列表（easylive-front-web VideoList.vue）连接后不再轮询，断线期间才回退到轮询
+ *
+ * 推送格式：{"type":"transferProgress","data":TransferProgressDto}
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TransferProgressWebSocketHandler extends TextWebSocketHandler {
+
+    // 单条消息发送超时（毫秒）和缓冲上限（字节），慢连接不会拖住推送线程
+    private static final int SEND_TIME_LIMIT = 5000;
+    private static final int SEND_BUFFER_LIMIT = 64 * 1024;
+
+    // Key: userId, Value: 该用户的所有连接（一个用户可能开了多个页面）
+    private final ConcurrentHashMap<String, Set<WebSocketSession>> userSessions = new ConcurrentHashMap<>();
+
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private MessageListener progressListener;
+
+    private PatternTopic progressTopic;
+
+    /**
+     * 订阅所有用户的转码进度频道（一个模式订阅，不按用户增减订阅）
+     */
+    @PostConstruct
+    public void init() {
+        progressTopic = new PatternTopic(Constants.REDIS_CHANNEL_TRANSFER_PROGRESS + "*");
+        progressListener = (message, pattern) -> {
+            String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+            String userId = channel.substring(Constants.REDIS_CHANNEL_TRANSFER_PROGRESS.length());
+            Set<WebSocketSession> sessions = userSessions.get(userId);
+            if (sessions == null || sessions.isEmpty()) {
+                return;
+            }
+            String progressJson = new String(message.getBody(), StandardCharsets.UTF_8);
+            sendToSessions(sessions, String.format("{\"type\":\"transferProgress\",\"data\":%s}", progressJson));
+        };
+        redisMessageListenerContainer.addMessageListener(progressListener, progressTopic);
+        log.info("转码进度WebSocket处理器初始化完成");
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        String userId = getUserId(session);
+        if (userId == null) {
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        //进度推送线程和心跳回复可能同时发送，包装成线程安全的会话
+        WebSocketSession concurrentSession = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT, SEND_BUFFER_LIMIT);
+        userSessions.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(concurrentSession);
+        log.debug("转码进度WebSocket连接建立, userId={}, sessionId={}", userId, session.getId());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        removeSession(session);
+        log.debug("转码进度WebSocket连接关闭, sessionId={}, 状态={}", session.getId(), status);
+    }
+
+    /**
+     * 心跳检测：前端发送 {"type":"ping"}
+     */
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        String payload = message.getPayload();
+        if (payload != null && payload.contains("\"type\":\"ping\"")) {
+            Set<WebSocketSession> sessions = userSessions.get(getUserId(session));
+            if (sessions != null) {
+                for (WebSocketSession userSession : sessions) {
+                    if (userSession.getId().equals(session.getId())) {
+                        userSession.sendMessage(new TextMessage("{\"type\":\"pong\"}"));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        log.warn("转码进度WebSocket传输错误, sessionId={}", session.getId(), exception);
+        removeSession(session);
+    }
+
+    private void sendToSessions(Set<WebSocketSession> sessions, String message) {
+        sessions.removeIf(session -> {
+            try {
+                if (!session.isOpen()) {
+                    return true;
+                }
+                session.sendMessage(new TextMessage(message));
+                return false;
+            } catch (IOException | IllegalStateException e) {
+                log.warn("推送转码进度失败, sessionId={}", session.getId(), e);
+                return true;
+            }
+        });
+    }
+
+    private void removeSession(WebSocketSession session) {
+        String userId = getUserId(session);
+        if (userId == null) {
+            return;
+        }
+        Set<WebSocketSession> sessions = userSessions.get(userId);
+        if (sessions != null) {
+            sessions.removeIf(userSession -> userSession.getId().equals(session.getId()));
+            if (sessions.isEmpty()) {
+                userSessions.remove(userId, sessions);
+            }
+        }
+    }
+
+    private String getUserId(WebSocketSession session) {
+        Object userId = session.getAttributes().get(TransferProgressHandshakeInterceptor.ATTR_USER_ID);
+        return userId == null ? null : userId.toString();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        redisMessageListenerContainer.removeMessageListener(progressListener, progressTopic);
+    }
+}
@@ -0,0 +1,124 @@
+package com.easylive.web.controller;
+
+import com.easylive.component.ImageVariantCache;
+import com.easylive.component.MediaOffloader;
+import com.easylive.component.MediaResourceWriter;
+import com.easylive.entity.config.AppConfig;
+import com.easylive.entity.constant.Constants;
+import com.easylive.exception.BusinessException;
+import com.easylive.storage.LocalFileStorage;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * FileController.getResource 开启 media.offload.enabled 后只返回 X-Accel-Redirect / X-Sendfile 响应头，不输出文件内容
+ *
+ * 只校验应用返回的响应头；nginx 按 nginx/easylive.conf 校验签名的部分没有在这里运行，
+ * 签名算法和 nginx secure_link_md5 的一致性由 MediaOffloaderTest 的固定向量保证
+ */
+public class FileControllerOffloadTest {
+
+    private static final String SOURCE_NAME = "cover/202610/abc.jpg";
+
+    private static final String SECRET = "test-secret";
+
+    @TempDir
+    Path projectDir;
+
+    private AppConfig appConfig;
+
+    private MediaResourceWriter mediaResourceWriter;
+
+    private FileController fileController;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        appConfig = new AppConfig();
+        ReflectionTestUtils.setField(appConfig, "projectFolder", projectDir.toString() + File.separator);
+        ReflectionTestUtils.setField(appConfig, "mediaOffloadEnabled", true);
+        ReflectionTestUtils.setField(appConfig, "mediaOffloadHeader", "X-Accel-Redirect");
+        ReflectionTestUtils.setField(appConfig, "mediaOffloadPrefix", "/media-internal/");
+        ReflectionTestUtils.setField(appConfig, "mediaOffloadSecret", SECRET);
+
+        File sourceFile = projectDir.resolve(Constants.FILE_FOLDER + SOURCE_NAME).toFile();
+        sourceFile.getParentFile().mkdirs();
+        Files.write(sourceFile.toPath(), new byte[]{1, 2, 3});
+
+        LocalFileStorage fileStorage = new LocalFileStorage(appConfig);
+        mediaResourceWriter = mock(MediaResourceWriter.class);
+        fileController = new FileController(appConfig, null, null, fileStorage, mediaResourceWriter, new MediaOffloader(appConfig, fileStorage),
+                new ImageVariantCache(appConfig, fileStorage, null), null, null, null, null);
+    }
+
+    @Test
+    public void offloadWithSignedAccelRedirect() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        long now = System.currentTimeMillis() / 1000;
+
+        fileController.getResource(new MockHttpServletRequest("GET", "/file/getResource"), response, SOURCE_NAME, null);
+
+        String redirect = response.getHeader("X-Accel-Redirect");
+        String uri = "/media-internal/" + SOURCE_NAME;
+        assertTrue(redirect.startsWith(uri + "?md5="), redirect);
+        long expires = Long.parseLong(redirect.substring(redirect.indexOf("&expires=") + "&expires=".length()));
+        assertTrue(expires >= now + Constants.MEDIA_OFFLOAD_SIGN_EXPIRE_SECONDS && expires <= now + Constants.MEDIA_OFFLOAD_SIGN_EXPIRE_SECONDS + 5);
+        //按 nginx secure_link_md5 "$secure_link_expires$uri 密钥" 重新计算
+        String sign = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(DigestUtils.md5((expires + uri + " " + SECRET).getBytes(StandardCharsets.UTF_8)));
+        assertEquals(uri + "?md5=" + sign + "&expires=" + expires, redirect);
+        assertEquals("max-age=2592000", response.getHeader("Cache-Control"));
+        assertEquals(0, response.getContentAsByteArray().length);
+        verify(mediaResourceWriter, never()).write(any(), any(), anyString());
+    }
+
+    @Test
+    public void offloadWithSendfile() {
+        ReflectionTestUtils.setField(appConfig, "mediaOffloadHeader", "X-Sendfile");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        fileController.getResource(new MockHttpServletRequest("GET", "/file/getResource"), response, SOURCE_NAME, null);
+
+        assertEquals(projectDir.resolve(Constants.FILE_FOLDER + SOURCE_NAME).toFile().getAbsolutePath(), response.getHeader("X-Sendfile"));
+        assertNull(response.getHeader("X-Accel-Redirect"));
+    }
+
+    @Test
+    public void writeByApplicationWhenDisabled() {
+        ReflectionTestUtils.setField(appConfig, "mediaOffloadEnabled", false);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/getResource");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        fileController.getResource(request, response, SOURCE_NAME, null);
+
+        assertNull(response.getHeader("X-Accel-Redirect"));
+        verify(mediaResourceWriter).write(request, response, SOURCE_NAME);
+    }
+
+    @Test
+    public void rejectPathTraversal() {
+        assertThrows(BusinessException.class, () -> fileController.getResource(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                "../application.yml", null));
+    }
+}
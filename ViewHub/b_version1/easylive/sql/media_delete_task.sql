@@ -0,0 +1,13 @@
+-- 媒体文件删除队列：删除视频、审核通过替换分P时，要删除的文件先在同一事务中写入本表，
+-- 由后台 MediaDeleteQueue 限速分批删除；失败按指数退避重试，重试耗尽置为 1:失败，保留记录待人工处理
+CREATE TABLE media_delete_task (
+    task_id       BIGINT       NOT NULL AUTO_INCREMENT COMMENT '任务ID',
+    file_path     VARCHAR(200) NOT NULL COMMENT '要删除的文件或目录（相对 file/ 目录）',
+    status        TINYINT      NOT NULL DEFAULT 0 COMMENT '0:待删除 1:失败',
+    retry_count   INT          NOT NULL DEFAULT 0 COMMENT '已重试次数',
+    last_error    VARCHAR(500) NULL COMMENT '最近一次失败原因',
+    next_run_time DATETIME     NOT NULL COMMENT '下次执行时间（执行中时为租约到期时间）',
+    create_time   DATETIME     NOT NULL COMMENT '入队时间',
+    PRIMARY KEY (task_id),
+    KEY idx_status_next_run_time (status, next_run_time)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '媒体文件删除队列';
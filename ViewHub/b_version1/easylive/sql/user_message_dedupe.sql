@@ -0,0 +1,19 @@
+-- 用户消息去重：点赞(2)、收藏(3) 同一用户对同一视频只保留一条消息
+-- 配合 UserMessageMapper.insertIgnoreBatch（INSERT IGNORE）使用，代替原来的先 count 再 insert
+-- 其余消息类型 dedupe_key 为 NULL，唯一索引不限制（MySQL 唯一索引允许多个 NULL）
+
+-- 1. 清理历史重复数据（保留最早的一条）
+DELETE m1 FROM user_message m1
+INNER JOIN user_message m2
+    ON m1.send_user_id = m2.send_user_id
+    AND m1.video_id = m2.video_id
+    AND m1.message_type = m2.message_type
+    AND m1.message_id > m2.message_id
+WHERE m1.message_type IN (2, 3);
+
+-- 2. 增加去重生成列与唯一索引
+ALTER TABLE user_message
+    ADD COLUMN dedupe_key VARCHAR(64)
+        GENERATED ALWAYS AS (IF(message_type IN (2, 3), CONCAT(send_user_id, '_', video_id, '_', message_type), NULL)) STORED
+        COMMENT '去重键（点赞、收藏）',
+    ADD UNIQUE KEY uk_dedupe_key (dedupe_key);
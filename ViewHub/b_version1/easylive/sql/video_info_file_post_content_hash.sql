@@ -0,0 +1,5 @@
+-- 相同内容复用转码结果：记录分P文件的内容哈希（SHA-256，按分片顺序对各分片 MD5 计算）
+-- 转码前先按哈希查找已转码成功的文件，命中时直接硬链接其 HLS 输出，跳过合并和 ffmpeg
+ALTER TABLE video_info_file_post
+    ADD COLUMN content_hash VARCHAR(64) NULL COMMENT '文件内容哈希',
+    ADD INDEX idx_content_hash (content_hash);
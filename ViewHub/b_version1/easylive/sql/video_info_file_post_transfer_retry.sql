@@ -0,0 +1,6 @@
+-- 转码失败重试：在分P文件上记录重试次数和最近一次失败原因
+-- 可重试的失败（磁盘、内存、进程被杀等）转码状态保持 0:转码中，按 1分钟/5分钟/30分钟 延迟重试，
+-- 重试耗尽或不可重试（源文件损坏等）才置为 2:转码失败
+ALTER TABLE video_info_file_post
+    ADD COLUMN transfer_retry_count INT NOT NULL DEFAULT 0 COMMENT '转码失败后已重试次数',
+    ADD COLUMN transfer_error VARCHAR(500) NULL COMMENT '最近一次转码失败原因';